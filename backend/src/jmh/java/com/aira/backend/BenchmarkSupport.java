@@ -0,0 +1,21 @@
+package com.aira.backend;
+
+import java.lang.reflect.Field;
+
+// Fills @Value fields on beans built outside Spring, using the same defaults as application.properties
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static <T> T set(T target, String fieldName, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+            return target;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + fieldName, e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.aira.backend;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// API key encryption on save and decryption on every provider call
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyMaterialBenchmark {
+
+    private static final String API_KEY = "sk-proj-3f9c2a7d1e8b4c6a9f0e2d4b6a8c0e1f3a5b7c9d";
+
+    private KeyMaterialService keyMaterialService;
+    private String gcmCiphertext;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        keyMaterialService = new KeyMaterialService(1000);
+        BenchmarkSupport.set(keyMaterialService, "encryptionKey", "YourSecretKey12345");
+        BenchmarkSupport.set(keyMaterialService, "keyCacheTtlSeconds", 300L);
+        keyMaterialService.deriveKeys();
+        gcmCiphertext = keyMaterialService.encrypt(API_KEY);
+    }
+
+    @Benchmark
+    public String encrypt() throws GeneralSecurityException {
+        return keyMaterialService.encrypt(API_KEY);
+    }
+
+    @Benchmark
+    public String decrypt() throws GeneralSecurityException {
+        return keyMaterialService.decrypt(gcmCiphertext);
+    }
+
+    // Repeat calls within one session hit the decrypted-key cache
+    @Benchmark
+    public String decryptForSession() throws GeneralSecurityException {
+        return keyMaterialService.decryptForSession("session-1", "openai", gcmCiphertext);
+    }
+}
@@ -0,0 +1,32 @@
+package com.aira.backend;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Parsing of the frontend's "provider-model-suffix" identifiers, done several times per request
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelIdentifierBenchmark {
+
+    @Param({ "openai-gpt-4o-17342870000000k3j9x", "claude-claude-3-5-sonnet-20241022-17342870000002x8q1b" })
+    public String modelIdentifier;
+
+    @Benchmark
+    public String provider() {
+        return ModelIdentifiers.provider(modelIdentifier);
+    }
+
+    @Benchmark
+    public String modelName() {
+        return ModelIdentifiers.modelName(modelIdentifier);
+    }
+
+    @Benchmark
+    public String modelKey() {
+        return ModelIdentifiers.modelKey(modelIdentifier);
+    }
+}
@@ -0,0 +1,138 @@
+package com.aira.backend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+// Request body building and reply extraction, once per provider response shape.
+// buildRequestBody/extractReply are the original Map.of + readTree path; writeRequestBody/decodeReply are ProviderJson.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProviderJsonBenchmark {
+
+    @Param({ "openai", "claude", "gemini", "cohere", "qwen" })
+    public String provider;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ProviderJson providerJson = new ProviderJson();
+
+    private String prompt;
+    private String responseBody;
+    private String replyPointer;
+    private byte[] responseBytes;
+    private ProviderJson.Schema schema;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        prompt = "Explain the difference between optimistic and pessimistic locking, with an example for each.";
+        String reply = "Optimistic locking assumes conflicts are rare. ".repeat(40);
+
+        Object response;
+        switch (provider) {
+            case "claude" -> {
+                response = Map.of(
+                    "id", "msg_01", "type", "message", "role", "assistant", "model", "claude-3-5-sonnet-20241022",
+                    "content", List.of(Map.of("type", "text", "text", reply)),
+                    "stop_reason", "end_turn",
+                    "usage", Map.of("input_tokens", 25, "output_tokens", 420));
+                replyPointer = "/content/0/text";
+            }
+            case "gemini" -> {
+                response = Map.of(
+                    "candidates", List.of(Map.of(
+                        "content", Map.of("parts", List.of(Map.of("text", reply)), "role", "model"),
+                        "finishReason", "STOP", "index", 0)),
+                    "usageMetadata", Map.of("promptTokenCount", 25, "candidatesTokenCount", 420));
+                replyPointer = "/candidates/0/content/parts/0/text";
+            }
+            case "cohere" -> {
+                response = Map.of(
+                    "response_id", "c0", "text", reply, "generation_id", "g0",
+                    "finish_reason", "COMPLETE",
+                    "meta", Map.of("billed_units", Map.of("input_tokens", 25, "output_tokens", 420)));
+                replyPointer = "/text";
+            }
+            case "qwen" -> {
+                response = Map.of(
+                    "output", Map.of("text", reply, "finish_reason", "stop"),
+                    "usage", Map.of("input_tokens", 25, "output_tokens", 420),
+                    "request_id", "r0");
+                replyPointer = "/output/text";
+            }
+            default -> {
+                response = Map.of(
+                    "id", "chatcmpl-0", "object", "chat.completion", "created", 1734287000, "model", "gpt-4o",
+                    "choices", List.of(Map.of(
+                        "index", 0,
+                        "message", Map.of("role", "assistant", "content", reply),
+                        "finish_reason", "stop")),
+                    "usage", Map.of("prompt_tokens", 25, "completion_tokens", 420, "total_tokens", 445));
+                replyPointer = "/choices/0/message/content";
+            }
+        }
+        responseBody = objectMapper.writeValueAsString(response);
+        responseBytes = objectMapper.writeValueAsBytes(response);
+        schema = switch (provider) {
+            case "claude" -> ProviderJson.Schema.CLAUDE;
+            case "gemini" -> ProviderJson.Schema.GEMINI;
+            case "cohere" -> ProviderJson.Schema.COHERE;
+            case "qwen" -> ProviderJson.Schema.QWEN;
+            default -> ProviderJson.Schema.CHAT_COMPLETIONS;
+        };
+    }
+
+    @Benchmark
+    public String buildRequestBody() throws JsonProcessingException {
+        Map<String, Object> requestBody = switch (provider) {
+            case "claude" -> Map.of(
+                "model", "claude-3-5-sonnet-20241022",
+                "max_tokens", 1000,
+                "messages", List.of(Map.of("role", "user", "content", prompt)));
+            case "gemini" -> Map.of(
+                "contents", List.of(Map.of("parts", List.of(Map.of("text", prompt)))));
+            case "cohere" -> Map.of(
+                "model", "command-r-plus-08-2024",
+                "message", prompt,
+                "max_tokens", 1000);
+            case "qwen" -> Map.of(
+                "model", "qwen-plus",
+                "input", Map.of("prompt", prompt),
+                "parameters", Map.of("max_tokens", 1000));
+            default -> Map.of(
+                "model", "gpt-4o",
+                "messages", List.of(Map.of("role", "user", "content", prompt)),
+                "max_tokens", 1000);
+        };
+        return objectMapper.writeValueAsString(requestBody);
+    }
+
+    @Benchmark
+    public String extractReply() throws JsonProcessingException {
+        return objectMapper.readTree(responseBody).at(replyPointer).asText();
+    }
+
+    @Benchmark
+    public byte[] writeRequestBody() throws JsonProcessingException {
+        return switch (provider) {
+            case "claude" -> providerJson.chatRequest("claude-3-5-sonnet-20241022", List.of(), prompt, false);
+            case "gemini" -> providerJson.geminiRequest(List.of(), prompt);
+            case "cohere" -> providerJson.cohereRequest("command-r-plus-08-2024", List.of(), prompt, false);
+            case "qwen" -> providerJson.qwenRequest("qwen-plus", List.of(), prompt, false);
+            default -> providerJson.chatRequest("gpt-4o", List.of(), prompt, false);
+        };
+    }
+
+    // Fed from bytes, as the HTTP client hands the body over, instead of a String copy of it
+    @Benchmark
+    public ProviderJson.Reply decodeReply() throws IOException {
+        return providerJson.decode(new ByteArrayInputStream(responseBytes), schema);
+    }
+}
@@ -0,0 +1,61 @@
+package com.aira.backend;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The in-memory part of /api/select-winner: competitor keys, the WinnerSelection row,
+// the leaderboard counters and the incremental Elo update. Persistence is write-behind and not measured.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SelectWinnerBenchmark {
+
+    private static final String WINNER = "openai-gpt-4o-17342870000000k3j9x";
+    private static final List<String> COMPETITORS = List.of(
+        "openai-gpt-4o-17342870000000k3j9x",
+        "claude-claude-3-5-sonnet-20241022-17342870000001x8q1b",
+        "gemini-gemini-1.5-pro-17342870000002p2m7c",
+        "mistral-mistral-large-latest-17342870000003z0c4d");
+
+    private Leaderboard leaderboard;
+    private RatingEngine ratingEngine;
+
+    @Setup
+    public void setUp() {
+        leaderboard = new Leaderboard();
+        ratingEngine = new RatingEngine(1);
+        BenchmarkSupport.set(ratingEngine, "initialRating", 1000.0);
+        BenchmarkSupport.set(ratingEngine, "kFactor", 32.0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ratingEngine.shutdown();
+    }
+
+    @Benchmark
+    public void selectWinner(Blackhole blackhole) {
+        String winnerKey = ModelIdentifiers.modelKey(WINNER);
+        Set<String> competitorKeys = new LinkedHashSet<>();
+        competitorKeys.add(winnerKey);
+        for (String competitor : COMPETITORS) {
+            competitorKeys.add(ModelIdentifiers.modelKey(competitor));
+        }
+
+        WinnerSelection winner = new WinnerSelection();
+        winner.setModelIdentifier(WINNER);
+        winner.setPrompt("prompt");
+        winner.setResponse("response");
+        winner.setSessionId("session-1");
+        winner.setCompetitors(competitorKeys.toArray(String[]::new));
+        blackhole.consume(winner);
+
+        leaderboard.recordWin(WINNER);
+        ratingEngine.recordMatch(winnerKey, competitorKeys, winner);
+    }
+}
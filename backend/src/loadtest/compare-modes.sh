@@ -0,0 +1,32 @@
+#!/usr/bin/env bash
+# Runs the same load against the blocking, async and virtual-thread execution modes.
+# Needs PostgreSQL from compose.yaml and a jar packaged with the mock providers (mvn -Ploadtest package -DskipTests).
+# Usage: src/loadtest/compare-modes.sh [extra LoadTest options, e.g. --rps=100 --endpoint=arena]
+set -euo pipefail
+cd "$(dirname "$0")/../.."
+
+JAR=$(ls target/*.jar | grep -v original | head -n 1)
+BASE_URL=http://localhost:8080
+
+declare -A MODES=(
+  [blocking]="--app.process.async=false --spring.threads.virtual.enabled=false"
+  [async]="--app.process.async=true --spring.threads.virtual.enabled=false"
+  [virtual]="--app.process.async=false --spring.threads.virtual.enabled=true"
+)
+
+for mode in blocking async virtual; do
+  echo "### $mode"
+  # shellcheck disable=SC2086
+  java -jar "$JAR" --spring.profiles.active=mock-providers ${MODES[$mode]} > "target/loadtest-$mode.log" 2>&1 &
+  APP_PID=$!
+  trap 'kill $APP_PID 2>/dev/null || true' EXIT
+
+  until curl -sf "$BASE_URL/actuator/health" > /dev/null; do
+    sleep 1
+  done
+
+  mvn -q -Ploadtest compile exec:java -Dexec.args="--base-url=$BASE_URL --label=$mode $*"
+
+  kill "$APP_PID"
+  wait "$APP_PID" 2>/dev/null || true
+done
@@ -0,0 +1,218 @@
+package com.aira.backend;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Open-loop load generator for /api/process and /api/arena/process.
+// Requests are scheduled at a fixed rate regardless of how fast the server answers, and latency is measured
+// from each request's scheduled start, so a stalled server shows up in the percentiles instead of hiding.
+// Point the backend at the mock provider server first (spring profile "mock-providers").
+//
+//   mvn -Ploadtest compile exec:java -Dexec.args="--rps=50 --duration-seconds=60 --endpoint=arena"
+public class LoadTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String baseUrl;
+    private final String endpoint;
+    private final double rps;
+    private final long durationSeconds;
+    private final long warmupSeconds;
+    private final List<String> models;
+    private final boolean uniquePrompts;
+    private final int maxInFlight;
+    private final String label;
+
+    private final HttpClient client;
+    private final Map<String, String> encryptedKeys = new HashMap<>();
+
+    private final ConcurrentLinkedQueue<Long> latenciesMicros = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong completed = new AtomicLong();
+
+    LoadTest(Map<String, String> options) {
+        this.baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        this.endpoint = options.getOrDefault("endpoint", "process");
+        this.rps = Double.parseDouble(options.getOrDefault("rps", "20"));
+        this.durationSeconds = Long.parseLong(options.getOrDefault("duration-seconds", "60"));
+        this.warmupSeconds = Long.parseLong(options.getOrDefault("warmup-seconds", "10"));
+        this.models = List.of(options.getOrDefault("models",
+            "openai-gpt-4o,claude-claude-3-5-sonnet-20241022,gemini-gemini-1.5-pro,mistral-mistral-large-latest").split(","));
+        this.uniquePrompts = Boolean.parseBoolean(options.getOrDefault("unique-prompts", "true"));
+        this.maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "5000"));
+        this.label = options.getOrDefault("label", endpoint);
+
+        this.client = HttpClient.newBuilder()
+            .cookieHandler(new CookieManager())
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (arg.startsWith("--") && separator > 2) {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        new LoadTest(options).run();
+    }
+
+    void run() throws Exception {
+        saveKeys();
+
+        System.out.printf("Warming up for %ds at %.1f rps%n", warmupSeconds, rps);
+        drive(warmupSeconds, false);
+
+        System.out.printf("Measuring %s for %ds at %.1f rps%n", label, durationSeconds, rps);
+        long startedAt = System.nanoTime();
+        drive(durationSeconds, true);
+        long elapsedNanos = System.nanoTime() - startedAt;
+
+        report(elapsedNanos);
+    }
+
+    // The harness session stores one dummy key per provider; the mock server accepts any key
+    private void saveKeys() throws Exception {
+        for (String model : models) {
+            String provider = model.split("-")[0];
+            if (encryptedKeys.containsKey(provider)) {
+                continue;
+            }
+            post("/api/keys/save", Map.of("provider", provider, "apiKey", "mock-key-" + provider));
+            JsonNode key = objectMapper.readTree(post("/api/keys/get", Map.of("provider", provider)).body());
+            encryptedKeys.put(provider, key.path("apiKey").asText());
+        }
+    }
+
+    private void drive(long seconds, boolean record) throws InterruptedException {
+        long intervalNanos = (long) (1_000_000_000L / rps);
+        long total = (long) (seconds * rps);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long start = System.nanoTime();
+
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long scheduledAt = start + i * intervalNanos;
+                long waitNanos = scheduledAt - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+                if (!inFlight.tryAcquire()) {
+                    // Client-side cap reached: count it rather than silently slowing the schedule
+                    if (record) {
+                        dropped.increment();
+                    }
+                    continue;
+                }
+                long sequence = i;
+                senders.execute(() -> {
+                    try {
+                        send(sequence, scheduledAt, record);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private void send(long sequence, long scheduledAt, boolean record) {
+        try {
+            HttpResponse<String> response = post(path(), requestBody(sequence));
+            long latencyMicros = (System.nanoTime() - scheduledAt) / 1000;
+            if (record) {
+                statuses.computeIfAbsent(response.statusCode(), status -> new LongAdder()).increment();
+                latenciesMicros.add(latencyMicros);
+                completed.incrementAndGet();
+            }
+        } catch (Exception e) {
+            if (record) {
+                failures.increment();
+            }
+        }
+    }
+
+    private String path() {
+        return "arena".equals(endpoint) ? "/api/arena/process" : "/api/process";
+    }
+
+    private Map<String, Object> requestBody(long sequence) {
+        String prompt = uniquePrompts
+            ? "Load test prompt " + sequence + ": summarize the trade-offs of write-behind caching."
+            : "Load test prompt: summarize the trade-offs of write-behind caching.";
+        long timestamp = System.currentTimeMillis();
+
+        if ("arena".equals(endpoint)) {
+            List<Map<String, String>> panels = new ArrayList<>(models.size());
+            for (int i = 0; i < models.size(); i++) {
+                String model = models.get(i);
+                panels.add(Map.of(
+                    "modelIdentifier", model + "-" + timestamp,
+                    "encryptedApiKey", encryptedKeys.get(model.split("-")[0])));
+            }
+            return Map.of("prompt", prompt, "models", panels, "bypassCache", "true");
+        }
+
+        String model = models.get((int) (sequence % models.size()));
+        return Map.of(
+            "modelIdentifier", model + "-" + timestamp,
+            "prompt", prompt,
+            "encryptedApiKey", encryptedKeys.get(model.split("-")[0]),
+            "bypassCache", "true");
+    }
+
+    private HttpResponse<String> post(String path, Object body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(baseUrl + path))
+            .header("Content-Type", "application/json")
+            .timeout(Duration.ofMinutes(5))
+            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+            .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void report(long elapsedNanos) {
+        long[] sorted = latenciesMicros.stream().mapToLong(Long::longValue).sorted().toArray();
+        double seconds = elapsedNanos / 1e9;
+        long ok = statuses.getOrDefault(200, new LongAdder()).sum();
+
+        System.out.println();
+        System.out.printf("== %s ==%n", label);
+        System.out.printf("target rps      %.1f%n", rps);
+        System.out.printf("completed       %d (%.1f/s)%n", completed.get(), completed.get() / seconds);
+        System.out.printf("200 OK          %d (%.1f/s)%n", ok, ok / seconds);
+        System.out.printf("statuses        %s%n", new TreeMap<>(statuses));
+        System.out.printf("client failures %d%n", failures.sum());
+        System.out.printf("dropped         %d%n", dropped.sum());
+        if (sorted.length > 0) {
+            System.out.printf("latency ms      p50=%.1f p90=%.1f p95=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.95),
+                percentile(sorted, 0.99), percentile(sorted, 0.999), sorted[sorted.length - 1] / 1000.0);
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1000.0;
+    }
+}
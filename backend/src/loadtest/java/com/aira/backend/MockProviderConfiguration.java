@@ -0,0 +1,27 @@
+package com.aira.backend;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+// Starts the mock provider server inside the application for offline load tests
+@Configuration
+@Profile("mock-providers")
+class MockProviderConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    MockProviderServer mockProviderServer(
+            @Value("${app.mock.port:9099}") int port,
+            @Value("${app.mock.latency-median-ms:800}") long latencyMedianMs,
+            @Value("${app.mock.latency-sigma:0.5}") double latencySigma,
+            @Value("${app.mock.error-rate:0.01}") double errorRate,
+            @Value("${app.mock.rate-limit-rate:0.02}") double rateLimitRate,
+            @Value("${app.mock.retry-after-seconds:1}") long retryAfterSeconds,
+            @Value("${app.mock.reply-words:200}") int replyWords,
+            @Value("${app.mock.stream-chunks:20}") int streamChunks,
+            @Value("${app.mock.chunk-delay-ms:30}") long chunkDelayMs) {
+        return new MockProviderServer(new MockProviderServer.Settings(port, latencyMedianMs, latencySigma,
+            errorRate, rateLimitRate, retryAfterSeconds, replyWords, streamChunks, chunkDelayMs));
+    }
+}
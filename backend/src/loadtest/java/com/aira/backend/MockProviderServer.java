@@ -0,0 +1,258 @@
+package com.aira.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Offline stand-in for every provider API the backend calls, for load tests that must not cost money.
+// Answers with each provider's real response shape (blocking and streaming) after a log-normal delay,
+// and injects 500s and 429s (with Retry-After) at configurable rates.
+// Runs embedded under the "mock-providers" Spring profile, or standalone:
+//   java -cp <classpath> com.aira.backend.MockProviderServer --port=9099 --latency-median-ms=800
+public class MockProviderServer {
+
+    private static final Logger log = LoggerFactory.getLogger(MockProviderServer.class);
+
+    record Settings(
+        int port,
+        long latencyMedianMs,
+        double latencySigma,
+        double errorRate,
+        double rateLimitRate,
+        long retryAfterSeconds,
+        int replyWords,
+        int streamChunks,
+        long chunkDelayMs) {
+
+        static Settings defaults() {
+            return new Settings(9099, 800, 0.5, 0.01, 0.02, 1, 200, 20, 30);
+        }
+    }
+
+    private enum Shape { CHAT_COMPLETIONS, CLAUDE, GEMINI, COHERE, QWEN }
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private HttpServer server;
+
+    MockProviderServer(Settings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Settings defaults = Settings.defaults();
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (arg.startsWith("--") && separator > 2) {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+
+        Settings settings = new Settings(
+            Integer.parseInt(options.getOrDefault("port", String.valueOf(defaults.port()))),
+            Long.parseLong(options.getOrDefault("latency-median-ms", String.valueOf(defaults.latencyMedianMs()))),
+            Double.parseDouble(options.getOrDefault("latency-sigma", String.valueOf(defaults.latencySigma()))),
+            Double.parseDouble(options.getOrDefault("error-rate", String.valueOf(defaults.errorRate()))),
+            Double.parseDouble(options.getOrDefault("rate-limit-rate", String.valueOf(defaults.rateLimitRate()))),
+            Long.parseLong(options.getOrDefault("retry-after-seconds", String.valueOf(defaults.retryAfterSeconds()))),
+            Integer.parseInt(options.getOrDefault("reply-words", String.valueOf(defaults.replyWords()))),
+            Integer.parseInt(options.getOrDefault("stream-chunks", String.valueOf(defaults.streamChunks()))),
+            Long.parseLong(options.getOrDefault("chunk-delay-ms", String.valueOf(defaults.chunkDelayMs()))));
+
+        MockProviderServer server = new MockProviderServer(settings);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+    }
+
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(settings.port()), 4096);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        log.info("Mock provider server listening on port {} with {}", settings.port(), settings);
+    }
+
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            Shape shape = shapeOf(path);
+            if (shape == null) {
+                respond(exchange, 404, Map.of("error", "Unknown mock endpoint: " + path));
+                return;
+            }
+
+            JsonNode request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request = objectMapper.readTree(body);
+            }
+            boolean stream = path.contains(":streamGenerateContent")
+                || request.path("stream").asBoolean(false)
+                || "enable".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("X-DashScope-SSE"));
+
+            sleep(sampleLatencyMs());
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < settings.rateLimitRate()) {
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(settings.retryAfterSeconds()));
+                respond(exchange, 429, Map.of("error", Map.of("type", "rate_limit_error", "message", "Mock rate limit")));
+                return;
+            }
+            if (roll < settings.rateLimitRate() + settings.errorRate()) {
+                respond(exchange, 500, Map.of("error", Map.of("type", "server_error", "message", "Mock upstream failure")));
+                return;
+            }
+
+            String reply = reply(request);
+            if (stream) {
+                streamReply(exchange, shape, reply);
+            } else {
+                respond(exchange, 200, body(shape, request, reply));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Client went away mid-response, e.g. a cancelled hedge
+        }
+    }
+
+    private Shape shapeOf(String path) {
+        if (path.endsWith("/chat/completions")) {
+            return Shape.CHAT_COMPLETIONS;
+        }
+        if (path.endsWith("/v1/messages")) {
+            return Shape.CLAUDE;
+        }
+        if (path.contains(":generateContent") || path.contains(":streamGenerateContent")) {
+            return Shape.GEMINI;
+        }
+        if (path.endsWith("/v1/chat")) {
+            return Shape.COHERE;
+        }
+        if (path.endsWith("/text-generation/generation")) {
+            return Shape.QWEN;
+        }
+        return null;
+    }
+
+    private Object body(Shape shape, JsonNode request, String reply) {
+        String model = request.path("model").asText("mock-model");
+        return switch (shape) {
+            case CHAT_COMPLETIONS -> Map.of(
+                "id", "chatcmpl-mock", "object", "chat.completion", "model", model,
+                "choices", List.of(Map.of(
+                    "index", 0,
+                    "message", Map.of("role", "assistant", "content", reply),
+                    "finish_reason", "stop")),
+                "usage", Map.of("prompt_tokens", 20, "completion_tokens", settings.replyWords()));
+            case CLAUDE -> Map.of(
+                "id", "msg_mock", "type", "message", "role", "assistant", "model", model,
+                "content", List.of(Map.of("type", "text", "text", reply)),
+                "stop_reason", "end_turn");
+            case GEMINI -> Map.of(
+                "candidates", List.of(Map.of(
+                    "content", Map.of("parts", List.of(Map.of("text", reply)), "role", "model"),
+                    "finishReason", "STOP", "index", 0)));
+            case COHERE -> Map.of(
+                "response_id", "mock", "text", reply, "generation_id", "mock", "finish_reason", "COMPLETE");
+            case QWEN -> Map.of(
+                "output", Map.of("text", reply, "finish_reason", "stop"),
+                "request_id", "mock");
+        };
+    }
+
+    private Object chunk(Shape shape, String text) {
+        return switch (shape) {
+            case CHAT_COMPLETIONS -> Map.of("choices", List.of(Map.of("index", 0, "delta", Map.of("content", text))));
+            case CLAUDE -> Map.of("type", "content_block_delta", "index", 0, "delta", Map.of("type", "text_delta", "text", text));
+            case GEMINI -> Map.of("candidates", List.of(Map.of("content", Map.of("parts", List.of(Map.of("text", text)), "role", "model"))));
+            case COHERE -> Map.of("event_type", "text-generation", "text", text);
+            case QWEN -> Map.of("output", Map.of("text", text));
+        };
+    }
+
+    // SSE for every provider except Cohere, which streams newline-delimited JSON
+    private void streamReply(HttpExchange exchange, Shape shape, String reply) throws IOException, InterruptedException {
+        boolean ndjson = shape == Shape.COHERE;
+        exchange.getResponseHeaders().set("Content-Type", ndjson ? "application/x-ndjson" : "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+
+        OutputStream out = exchange.getResponseBody();
+        List<String> chunks = split(reply, Math.max(1, settings.streamChunks()));
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i > 0) {
+                sleep(settings.chunkDelayMs());
+            }
+            String event = objectMapper.writeValueAsString(chunk(shape, chunks.get(i)));
+            out.write((ndjson ? event + "\n" : "data: " + event + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        if (ndjson) {
+            out.write("{\"event_type\":\"stream-end\",\"finish_reason\":\"COMPLETE\"}\n".getBytes(StandardCharsets.UTF_8));
+        } else if (shape == Shape.CLAUDE) {
+            out.write("data: {\"type\":\"message_stop\"}\n\n".getBytes(StandardCharsets.UTF_8));
+        } else if (shape == Shape.CHAT_COMPLETIONS) {
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+        out.flush();
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private String reply(JsonNode request) {
+        StringBuilder reply = new StringBuilder("Mock reply from ")
+            .append(request.path("model").asText("mock-model"))
+            .append('.');
+        for (int i = 0; i < settings.replyWords(); i++) {
+            reply.append(" lorem");
+        }
+        return reply.toString();
+    }
+
+    private static List<String> split(String text, int parts) {
+        List<String> chunks = new ArrayList<>(parts);
+        int size = (text.length() + parts - 1) / parts;
+        for (int start = 0; start < text.length(); start += size) {
+            chunks.add(text.substring(start, Math.min(text.length(), start + size)));
+        }
+        return chunks;
+    }
+
+    // Log-normal around the median, which is roughly how real provider latencies are spread
+    private long sampleLatencyMs() {
+        double gaussian = ThreadLocalRandom.current().nextGaussian();
+        return Math.round(settings.latencyMedianMs() * Math.exp(settings.latencySigma() * gaussian));
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.aira.backend;
+
+import java.util.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Near-cache of every encrypted key a session has saved, loaded with one findBySessionId query.
+// Sessions without keys are cached too, so page loads before the first save do not reach Postgres either.
+// saveApiKey invalidates the session; the TTL bounds staleness when several backend instances share the table.
+@Component
+class ApiKeyCache {
+
+    @Value("${app.keys.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Autowired
+    private ApiKeyRepository apiKeyRepository;
+
+    private final LinkedHashMap<String, Entry> sessions;
+
+    // Bumped by every invalidation, so a load that raced with a save is not cached
+    private long generation;
+
+    ApiKeyCache(@Value("${app.keys.cache.max-sessions:10000}") int maxSessions) {
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSessions;
+            }
+        };
+    }
+
+    private record Entry(Map<String, String> keys, long expiresAt) {}
+
+    // Provider -> encrypted key, as stored
+    Map<String, String> keys(String sessionId) {
+        long now = System.currentTimeMillis();
+        long loadGeneration;
+        synchronized (sessions) {
+            Entry entry = sessions.get(sessionId);
+            if (entry != null && entry.expiresAt() > now) {
+                return entry.keys();
+            }
+            loadGeneration = generation;
+        }
+
+        Map<String, String> keys = new HashMap<>();
+        for (ApiKey apiKey : apiKeyRepository.findBySessionId(sessionId)) {
+            keys.put(apiKey.getProvider(), apiKey.getEncryptedKey());
+        }
+        Map<String, String> loaded = Collections.unmodifiableMap(keys);
+        synchronized (sessions) {
+            if (loadGeneration == generation) {
+                sessions.put(sessionId, new Entry(loaded, now + ttlSeconds * 1000));
+            }
+        }
+        return loaded;
+    }
+
+    Optional<String> key(String sessionId, String provider) {
+        return Optional.ofNullable(keys(sessionId).get(provider));
+    }
+
+    void invalidate(String sessionId) {
+        synchronized (sessions) {
+            generation++;
+            sessions.remove(sessionId);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.aira.backend;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Bounds the read of a provider response body by the request deadline, and for streams by an idle timeout.
+// HttpRequest.timeout only covers the wait for the headers; a provider that stalls mid-body would otherwise block
+// the reader forever. When a limit passes the body is closed from the timer thread, which fails the blocked
+// read, and timeout() turns that failure into an HttpTimeoutException.
+final class BodyWatchdog implements AutoCloseable {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().daemon().name("body-watchdog").factory());
+
+    private final Closeable body;
+    private final Deadline deadline;
+    private final long idleTimeoutMs;
+    private volatile long lastReadAt = System.currentTimeMillis();
+    private volatile String expiredReason;
+    private ScheduledFuture<?> check;
+    private boolean closed;
+
+    BodyWatchdog(Closeable body, Deadline deadline) {
+        this(body, deadline, 0);
+    }
+
+    // idleTimeoutMs of 0 checks the deadline only
+    BodyWatchdog(Closeable body, Deadline deadline, long idleTimeoutMs) {
+        this.body = body;
+        this.deadline = deadline;
+        this.idleTimeoutMs = idleTimeoutMs;
+        schedule();
+    }
+
+    // Restarts the idle timeout; called for every line a stream delivers
+    void touch() {
+        lastReadAt = System.currentTimeMillis();
+    }
+
+    // The exception to raise for a failed read: a timeout if the watchdog closed the body, the failure otherwise
+    IOException timeout(IOException failure) {
+        String reason = expiredReason;
+        return reason != null ? new HttpTimeoutException(reason) : failure;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        check.cancel(false);
+    }
+
+    private synchronized void schedule() {
+        if (closed) {
+            return;
+        }
+        long delayMs = deadline.remainingMs();
+        if (idleTimeoutMs > 0) {
+            delayMs = Math.min(delayMs, lastReadAt + idleTimeoutMs - System.currentTimeMillis());
+        }
+        check = TIMER.schedule(this::check, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+    }
+
+    private void check() {
+        if (deadline.remainingMs() == 0) {
+            expire("Request deadline exceeded");
+        } else if (idleTimeoutMs > 0 && System.currentTimeMillis() - lastReadAt >= idleTimeoutMs) {
+            expire("No data from the provider for " + idleTimeoutMs + " ms");
+        } else {
+            // Data arrived since this check was scheduled
+            schedule();
+        }
+    }
+
+    private void expire(String reason) {
+        expiredReason = reason;
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // The reader sees the stream as closed either way
+        }
+    }
+}
@@ -2,13 +2,19 @@ package com.aira.backend;
 
 import jakarta.persistence.*;
 import java.util.Date;
+import org.hibernate.annotations.ColumnTransformer;
 
 // ChatHistory Entity
 @Entity
-@Table(name = "chat_history")
+@Table(name = "chat_history", indexes = {
+    // Serves the conversation window rebuild: latest turns of one (session, model)
+    @Index(name = "idx_chat_history_session_model", columnList = "session_id, model_key, created_at")
+})
 class ChatHistory {
+    // Sequence ids (allocated 50 at a time) let Hibernate batch inserts, IDENTITY would not
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_history_seq")
+    @SequenceGenerator(name = "chat_history_seq", sequenceName = "chat_history_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "session_id", nullable = false)
@@ -17,19 +23,55 @@ class ChatHistory {
     @Column(name = "model_identifier", nullable = false)
     private String modelIdentifier;
     
-    @Column(nullable = false, columnDefinition = "TEXT")
+    // provider-model without the per-panel suffix, e.g. "openai-gpt-4o"
+    @Column(name = "model_key")
+    private String modelKey;
+    
+    // SHA-256 of the prompt text, which is stored once in content_blobs (see ContentStore)
+    @Column(name = "prompt_hash", nullable = false, length = 64)
+    private String promptHash;
+    
+    @Column(name = "response_hash", length = 64)
+    private String responseHash;
+    
+    // SHA-256 of the normalized prompt (ResponseCache.normalize), the key of the reply cache's history tier
+    @Column(name = "prompt_key", length = 64)
+    private String promptKey;
+    
+    // Reply served from the reply cache, not by the provider. Such rows are never reused by the cache, so a
+    // reply cannot outlive its TTL by being served again, and they are left out of the hourly timings.
+    @Column(name = "cached", nullable = false)
+    private boolean cached;
+    
+    // Follow-up turn: earlier turns of the conversation were sent with the prompt, so the reply answers that
+    // conversation rather than the prompt alone and is never reused by the reply cache
+    @Column(name = "has_context", nullable = false)
+    private boolean hasContext;
+    
+    // Texts of a row built for writing; rows read back carry only the hashes
+    @Transient
     private String prompt;
     
-    @Column(columnDefinition = "TEXT")
+    @Transient
     private String response;
     
-    @Column(name = "created_at")
+    // Prompt and response, stored as to_tsvector for /api/search. Write-only: reads select NULL instead
+    // of the vector, since nothing in Java needs it back.
+    @Column(name = "search_vector", columnDefinition = "TSVECTOR")
+    @ColumnTransformer(read = "NULL", write = "to_tsvector('english', ?)")
+    private String searchDocument;
+    
+    // Partition key of the monthly chat_history partitions
+    @Column(name = "created_at", nullable = false)
     @Temporal(TemporalType.TIMESTAMP)
     private Date createdAt = new Date();
     
     @Column(name = "response_time_ms")
     private Integer responseTimeMs;
     
+    @Column(name = "time_to_first_token_ms")
+    private Integer timeToFirstTokenMs;
+    
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -40,15 +82,49 @@ class ChatHistory {
     public String getModelIdentifier() { return modelIdentifier; }
     public void setModelIdentifier(String modelIdentifier) { this.modelIdentifier = modelIdentifier; }
     
+    public String getModelKey() { return modelKey; }
+    public void setModelKey(String modelKey) { this.modelKey = modelKey; }
+    
+    public String getPromptHash() { return promptHash; }
+    public void setPromptHash(String promptHash) { this.promptHash = promptHash; }
+    
+    public String getResponseHash() { return responseHash; }
+    public void setResponseHash(String responseHash) { this.responseHash = responseHash; }
+    
+    public String getPromptKey() { return promptKey; }
+    public void setPromptKey(String promptKey) { this.promptKey = promptKey; }
+    
+    public boolean isCached() { return cached; }
+    public void setCached(boolean cached) { this.cached = cached; }
+    
+    public boolean isHasContext() { return hasContext; }
+    public void setHasContext(boolean hasContext) { this.hasContext = hasContext; }
+    
     public String getPrompt() { return prompt; }
-    public void setPrompt(String prompt) { this.prompt = prompt; }
+    public void setPrompt(String prompt) {
+        this.prompt = prompt;
+        this.promptHash = prompt == null ? null : ContentStore.hash(prompt);
+        this.promptKey = prompt == null ? null : ContentStore.hash(ResponseCache.normalize(prompt));
+        updateSearchDocument();
+    }
     
     public String getResponse() { return response; }
-    public void setResponse(String response) { this.response = response; }
+    public void setResponse(String response) {
+        this.response = response;
+        this.responseHash = response == null ? null : ContentStore.hash(response);
+        updateSearchDocument();
+    }
+    
+    private void updateSearchDocument() {
+        searchDocument = response == null ? prompt : prompt == null ? response : prompt + "\n" + response;
+    }
     
     public Date getCreatedAt() { return createdAt; }
     public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
     
     public Integer getResponseTimeMs() { return responseTimeMs; }
     public void setResponseTimeMs(Integer responseTimeMs) { this.responseTimeMs = responseTimeMs; }
+    
+    public Integer getTimeToFirstTokenMs() { return timeToFirstTokenMs; }
+    public void setTimeToFirstTokenMs(Integer timeToFirstTokenMs) { this.timeToFirstTokenMs = timeToFirstTokenMs; }
 }
\ No newline at end of file
@@ -1,13 +1,178 @@
 package com.aira.backend;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import jakarta.persistence.QueryHint;
+import java.util.Date;
 import java.util.Optional;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 interface ChatHistoryRepository extends JpaRepository<ChatHistory, Long> {
-    List<ChatHistory> findBySessionId(String sessionId);
-    List<ChatHistory> findByModelIdentifier(String modelIdentifier);
-    List<ChatHistory> findBySessionIdOrderByCreatedAtDesc(String sessionId);
-}
\ No newline at end of file
+    
+    // Second tier of the reply cache: most recent provider replies for this normalized prompt and model.
+    // Rows that were themselves cache hits are skipped, so created_at is when the provider answered, and so
+    // are follow-up turns, whose reply depended on the conversation before them.
+    @Query("SELECT h FROM ChatHistory h WHERE h.promptKey = :promptKey AND h.modelKey = :modelKey " +
+           "AND h.createdAt >= :since AND h.responseHash IS NOT NULL AND h.cached = false " +
+           "AND h.hasContext = false ORDER BY h.createdAt DESC")
+    List<ChatHistory> findCachedReplies(@Param("promptKey") String promptKey,
+                                        @Param("modelKey") String modelKey,
+                                        @Param("since") Date since,
+                                        Pageable pageable);
+    
+    // Most recent turns of one (session, model), for rebuilding an evicted context window
+    @Query("SELECT h.promptHash AS promptHash, h.responseHash AS responseHash, h.hasContext AS hasContext " +
+           "FROM ChatHistory h " +
+           "WHERE h.sessionId = :sessionId AND h.modelKey = :modelKey AND h.responseHash IS NOT NULL " +
+           "ORDER BY h.createdAt DESC, h.id DESC")
+    List<ConversationTurn> findConversationTurns(@Param("sessionId") String sessionId,
+                                                 @Param("modelKey") String modelKey,
+                                                 Pageable pageable);
+    
+    // Newest first-turn provider replies, to warm the near-duplicate index at startup
+    @Query("SELECT h.promptHash AS promptHash, h.responseHash AS responseHash, h.modelKey AS modelKey, " +
+           "h.createdAt AS createdAt FROM ChatHistory h " +
+           "WHERE h.responseHash IS NOT NULL AND h.modelKey IS NOT NULL AND h.cached = false " +
+           "AND h.hasContext = false ORDER BY h.createdAt DESC")
+    List<StoredReply> findRecentReplies(Pageable pageable);
+    
+    // Keyset pages on (created_at, id), newest first. List views leave out the response body;
+    // the prompt preview is cut from the content store by hash.
+    String SUMMARY = "SELECT h.id AS id, h.modelIdentifier AS modelIdentifier, h.modelKey AS modelKey, " +
+                     "h.promptHash AS promptHash, h.createdAt AS createdAt, " +
+                     "h.responseTimeMs AS responseTimeMs FROM ChatHistory h ";
+    
+    @Query(SUMMARY + "WHERE h.sessionId = :sessionId ORDER BY h.createdAt DESC, h.id DESC")
+    List<HistorySummary> findSessionPage(@Param("sessionId") String sessionId, Pageable pageable);
+    
+    @Query(SUMMARY + "WHERE h.sessionId = :sessionId " +
+           "AND (h.createdAt < :createdAt OR (h.createdAt = :createdAt AND h.id < :id)) " +
+           "ORDER BY h.createdAt DESC, h.id DESC")
+    List<HistorySummary> findSessionPageAfter(@Param("sessionId") String sessionId,
+                                              @Param("createdAt") Date createdAt,
+                                              @Param("id") Long id,
+                                              Pageable pageable);
+    
+    @Query(SUMMARY + "WHERE h.sessionId = :sessionId AND h.modelKey = :modelKey ORDER BY h.createdAt DESC, h.id DESC")
+    List<HistorySummary> findModelPage(@Param("sessionId") String sessionId,
+                                       @Param("modelKey") String modelKey,
+                                       Pageable pageable);
+    
+    @Query(SUMMARY + "WHERE h.sessionId = :sessionId AND h.modelKey = :modelKey " +
+           "AND (h.createdAt < :createdAt OR (h.createdAt = :createdAt AND h.id < :id)) " +
+           "ORDER BY h.createdAt DESC, h.id DESC")
+    List<HistorySummary> findModelPageAfter(@Param("sessionId") String sessionId,
+                                            @Param("modelKey") String modelKey,
+                                            @Param("createdAt") Date createdAt,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
+    
+    // Full rows for NDJSON export, read through a server-side cursor. Projections are not managed
+    // entities, so the persistence context does not grow with the export. Texts are resolved by hash.
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("SELECT h.id AS id, h.modelIdentifier AS modelIdentifier, h.modelKey AS modelKey, " +
+           "h.promptHash AS promptHash, h.responseHash AS responseHash, h.createdAt AS createdAt, " +
+           "h.responseTimeMs AS responseTimeMs, " +
+           "h.timeToFirstTokenMs AS timeToFirstTokenMs FROM ChatHistory h " +
+           "WHERE h.sessionId = :sessionId ORDER BY h.createdAt DESC, h.id DESC")
+    Stream<HistoryExportRow> streamSessionExport(@Param("sessionId") String sessionId);
+    
+    // Full-text search on search_vector (GIN), best matches first. terms is the parsed query's lexemes,
+    // the same on every row, which the caller uses to highlight snippets.
+    String SEARCH = "SELECT h.id AS id, h.model_identifier AS modelIdentifier, h.prompt_hash AS promptHash, " +
+                    "h.response_hash AS responseHash, h.created_at AS createdAt, " +
+                    "ts_rank_cd(h.search_vector, q) AS rank, querytree(q) AS terms " +
+                    "FROM chat_history h, websearch_to_tsquery('english', :query) q " +
+                    "WHERE h.search_vector @@ q " +
+                    "AND (CAST(:modelKey AS text) IS NULL OR h.model_key = CAST(:modelKey AS text)) ";
+    String SEARCH_ORDER = "ORDER BY rank DESC, h.created_at DESC, h.id DESC LIMIT :limit OFFSET :offset";
+    
+    @Query(value = SEARCH + "AND h.session_id = :sessionId " + SEARCH_ORDER, nativeQuery = true)
+    List<SearchHit> searchSession(@Param("query") String query,
+                                  @Param("sessionId") String sessionId,
+                                  @Param("modelKey") String modelKey,
+                                  @Param("limit") int limit,
+                                  @Param("offset") int offset);
+    
+    // Rows stored before search_vector existed whose text the V1 migration could not index (deflated blobs)
+    @Query(value = "SELECT h.id AS id, h.created_at AS createdAt, h.prompt_hash AS promptHash, " +
+                   "h.response_hash AS responseHash FROM chat_history h WHERE h.search_vector IS NULL LIMIT :limit",
+           nativeQuery = true)
+    List<UnindexedRow> findUnindexed(@Param("limit") int limit);
+    
+    // An empty vector, not NULL, when there is no text, so the row is not picked up again
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE chat_history SET search_vector = COALESCE(to_tsvector('english', CAST(:text AS text)), " +
+                   "CAST('' AS tsvector)) WHERE id = :id AND created_at = :createdAt",
+           nativeQuery = true)
+    int index(@Param("id") Long id, @Param("createdAt") Date createdAt, @Param("text") String text);
+    
+    // Partition maintenance (functions defined in V1__schema.sql). Plain SELECTs that run DDL, so they need a
+    // read-write transaction rather than the read-only default of query methods.
+    @Transactional
+    @Query(value = "SELECT chat_history_create_partitions(CURRENT_DATE, :monthsAhead)", nativeQuery = true)
+    Integer createPartitions(@Param("monthsAhead") int monthsAhead);
+    
+    @Transactional
+    @Query(value = "SELECT * FROM chat_history_drop_partitions(:keepMonths, :detach)", nativeQuery = true)
+    List<String> dropPartitions(@Param("keepMonths") int keepMonths, @Param("detach") boolean detach);
+    
+    interface StoredReply {
+        String getPromptHash();
+        String getResponseHash();
+        String getModelKey();
+        Date getCreatedAt();
+    }
+    
+    interface SearchHit {
+        Long getId();
+        String getModelIdentifier();
+        String getPromptHash();
+        String getResponseHash();
+        Date getCreatedAt();
+        Double getRank();
+        String getTerms();
+    }
+    
+    interface UnindexedRow {
+        Long getId();
+        Date getCreatedAt();
+        String getPromptHash();
+        String getResponseHash();
+    }
+    
+    interface HistorySummary {
+        Long getId();
+        String getModelIdentifier();
+        String getModelKey();
+        String getPromptHash();
+        Date getCreatedAt();
+        Integer getResponseTimeMs();
+    }
+    
+    interface ConversationTurn {
+        String getPromptHash();
+        String getResponseHash();
+        boolean isHasContext();
+    }
+    
+    interface HistoryExportRow {
+        Long getId();
+        String getModelIdentifier();
+        String getModelKey();
+        String getPromptHash();
+        String getResponseHash();
+        Date getCreatedAt();
+        Integer getResponseTimeMs();
+        Integer getTimeToFirstTokenMs();
+    }
+}
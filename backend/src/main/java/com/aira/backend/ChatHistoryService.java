@@ -0,0 +1,206 @@
+package com.aira.backend;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Stream;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Bounded reads of chat_history: keyset-paginated summaries and a constant-memory NDJSON export
+@Service
+class ChatHistoryService {
+
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 200;
+    static final int PREVIEW_LENGTH = 200;
+    static final int DEFAULT_STATS_HOURS = 24;
+    static final int MAX_STATS_HOURS = 24 * 90;
+    // Export rows are buffered this many at a time so their texts come back in one content_blobs query
+    static final int EXPORT_CHUNK = 500;
+
+    @Autowired
+    private ChatHistoryRepository chatHistoryRepository;
+
+    @Autowired
+    private ContentStore contentStore;
+
+    @Autowired
+    private ModelHourlyStatsRepository modelHourlyStatsRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TransactionTemplate readOnlyTransaction;
+
+    ChatHistoryService(PlatformTransactionManager transactionManager) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    Map<String, Object> sessionPage(String sessionId, String cursor, Integer limit) {
+        PageRequest page = PageRequest.of(0, pageSize(limit));
+        Cursor after = Cursor.decode(cursor);
+        List<ChatHistoryRepository.HistorySummary> items = after == null
+            ? chatHistoryRepository.findSessionPage(sessionId, page)
+            : chatHistoryRepository.findSessionPageAfter(sessionId, after.createdAt(), after.id(), page);
+        return toPage(items, page.getPageSize());
+    }
+
+    Map<String, Object> modelPage(String sessionId, String modelKey, String cursor, Integer limit) {
+        PageRequest page = PageRequest.of(0, pageSize(limit));
+        Cursor after = Cursor.decode(cursor);
+        List<ChatHistoryRepository.HistorySummary> items = after == null
+            ? chatHistoryRepository.findModelPage(sessionId, modelKey, page)
+            : chatHistoryRepository.findModelPageAfter(sessionId, modelKey, after.createdAt(), after.id(), page);
+        return toPage(items, page.getPageSize());
+    }
+
+    // Reads the hourly rollup only, never chat_history; modelKey narrows it to one model
+    List<Map<String, Object>> hourlyStats(String modelKey, Integer hours) {
+        int window = hours == null || hours <= 0 ? DEFAULT_STATS_HOURS : Math.min(hours, MAX_STATS_HOURS);
+        Date since = new Date(System.currentTimeMillis() - window * 3_600_000L);
+        List<ModelHourlyStats> stats = modelKey == null || modelKey.isBlank()
+            ? modelHourlyStatsRepository.findByHourStartGreaterThanEqualOrderByHourStartAscModelKeyAsc(since)
+            : modelHourlyStatsRepository.findByModelKeyAndHourStartGreaterThanEqualOrderByHourStartAsc(modelKey, since);
+
+        List<Map<String, Object>> rows = new ArrayList<>(stats.size());
+        for (ModelHourlyStats hour : stats) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("hourStart", hour.getHourStart());
+            row.put("modelKey", hour.getModelKey());
+            row.put("calls", hour.getCalls());
+            row.put("replies", hour.getReplies());
+            row.put("avgResponseTimeMs", hour.getTimedCalls() == 0
+                ? null : (double) hour.getTotalResponseTimeMs() / hour.getTimedCalls());
+            row.put("maxResponseTimeMs", hour.getMaxResponseTimeMs());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // Writes one JSON object per line straight from the database cursor to the response
+    void exportSession(String sessionId, OutputStream out) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<ChatHistoryRepository.HistoryExportRow> rows = chatHistoryRepository.streamSessionExport(sessionId);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                Iterator<ChatHistoryRepository.HistoryExportRow> iterator = rows.iterator();
+                List<ChatHistoryRepository.HistoryExportRow> chunk = new ArrayList<>(EXPORT_CHUNK);
+                while (iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                    if (chunk.size() == EXPORT_CHUNK || !iterator.hasNext()) {
+                        writeExportChunk(generator, chunk);
+                        chunk.clear();
+                    }
+                }
+                generator.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void writeExportChunk(JsonGenerator generator, List<ChatHistoryRepository.HistoryExportRow> chunk)
+            throws IOException {
+        List<String> hashes = new ArrayList<>(chunk.size() * 2);
+        for (ChatHistoryRepository.HistoryExportRow row : chunk) {
+            hashes.add(row.getPromptHash());
+            hashes.add(row.getResponseHash());
+        }
+        Map<String, String> texts = contentStore.getAll(hashes);
+
+        for (ChatHistoryRepository.HistoryExportRow row : chunk) {
+            generator.writeStartObject();
+            generator.writeNumberField("id", row.getId());
+            generator.writeStringField("modelIdentifier", row.getModelIdentifier());
+            generator.writeStringField("modelKey", row.getModelKey());
+            generator.writeStringField("prompt", texts.get(row.getPromptHash()));
+            generator.writeStringField("response", texts.get(row.getResponseHash()));
+            if (row.getCreatedAt() != null) {
+                generator.writeNumberField("createdAt", row.getCreatedAt().getTime());
+            }
+            if (row.getResponseTimeMs() != null) {
+                generator.writeNumberField("responseTimeMs", row.getResponseTimeMs());
+            }
+            if (row.getTimeToFirstTokenMs() != null) {
+                generator.writeNumberField("timeToFirstTokenMs", row.getTimeToFirstTokenMs());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+
+    private Map<String, Object> toPage(List<ChatHistoryRepository.HistorySummary> items, int pageSize) {
+        List<String> hashes = new ArrayList<>(items.size());
+        for (ChatHistoryRepository.HistorySummary item : items) {
+            hashes.add(item.getPromptHash());
+        }
+        Map<String, String> prompts = contentStore.getAll(hashes);
+
+        List<Map<String, Object>> rows = new ArrayList<>(items.size());
+        for (ChatHistoryRepository.HistorySummary item : items) {
+            String prompt = prompts.get(item.getPromptHash());
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", item.getId());
+            row.put("modelIdentifier", item.getModelIdentifier());
+            row.put("modelKey", item.getModelKey());
+            row.put("promptPreview", prompt == null || prompt.length() <= PREVIEW_LENGTH
+                ? prompt : prompt.substring(0, PREVIEW_LENGTH));
+            row.put("createdAt", item.getCreatedAt());
+            row.put("responseTimeMs", item.getResponseTimeMs());
+            rows.add(row);
+        }
+
+        // A full page means there may be more; the last row is where the next page starts
+        String nextCursor = null;
+        if (items.size() == pageSize) {
+            ChatHistoryRepository.HistorySummary last = items.get(items.size() - 1);
+            nextCursor = new Cursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", rows);
+        page.put("nextCursor", nextCursor);
+        return page;
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    // Opaque to clients: base64 of "epochSeconds:nanos:id". Nanos are kept so rows stored with
+    // sub-millisecond timestamps are neither skipped nor repeated across pages.
+    private record Cursor(Date createdAt, Long id) {
+
+        String encode() {
+            Timestamp timestamp = createdAt instanceof Timestamp ts ? ts : new Timestamp(createdAt.getTime());
+            String raw = Math.floorDiv(timestamp.getTime(), 1000) + ":" + timestamp.getNanos() + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                String[] parts = raw.split(":");
+                Timestamp createdAt = new Timestamp(Long.parseLong(parts[0]) * 1000);
+                createdAt.setNanos(Integer.parseInt(parts[1]));
+                return new Cursor(createdAt, Long.parseLong(parts[2]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.aira.backend;
+
+import jakarta.persistence.*;
+import java.util.Date;
+import org.hibernate.annotations.ResultCheckStyle;
+import org.hibernate.annotations.SQLInsert;
+import org.springframework.data.domain.Persistable;
+
+// ContentBlob Entity
+// One row per distinct prompt or response text, keyed by the SHA-256 of its UTF-8 bytes.
+// Inserts are batched and skip hashes that already exist, so writing the same text twice is harmless.
+// Storing a text that already exists only bumps last_stored_at (at most hourly), which keeps it and its
+// row lock out of the orphan collection in HistoryMaintenance.
+@Entity
+@Table(name = "content_blobs")
+@SQLInsert(sql = "INSERT INTO content_blobs (body, codec, created_at, raw_length, hash) VALUES (?, ?, ?, ?, ?) " +
+                 "ON CONFLICT (hash) DO UPDATE SET last_stored_at = CURRENT_TIMESTAMP " +
+                 "WHERE content_blobs.last_stored_at < CURRENT_TIMESTAMP - INTERVAL '1 hour'",
+           check = ResultCheckStyle.NONE)
+class ContentBlob implements Persistable<String> {
+    static final short CODEC_NONE = 0;
+    static final short CODEC_DEFLATE = 1;
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false, columnDefinition = "BYTEA")
+    private byte[] body;
+
+    @Column(nullable = false)
+    private short codec;
+
+    @Column(name = "raw_length", nullable = false)
+    private int rawLength;
+
+    @Column(name = "created_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt = new Date();
+
+    // Blobs are only ever inserted, so save() can skip the select-before-merge
+    @Override
+    public String getId() { return hash; }
+
+    @Override
+    public boolean isNew() { return true; }
+
+    // Getters and Setters
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+
+    public byte[] getBody() { return body; }
+    public void setBody(byte[] body) { this.body = body; }
+
+    public short getCodec() { return codec; }
+    public void setCodec(short codec) { this.codec = codec; }
+
+    public int getRawLength() { return rawLength; }
+    public void setRawLength(int rawLength) { this.rawLength = rawLength; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,16 @@
+package com.aira.backend;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    // Blobs nothing references any more (see content_blobs_delete_orphans in V1__schema.sql).
+    // The day of grace is well past the hour after which a re-stored text bumps last_stored_at.
+    @Transactional
+    @Query(value = "SELECT content_blobs_delete_orphans(INTERVAL '1 day')", nativeQuery = true)
+    Integer deleteOrphans();
+}
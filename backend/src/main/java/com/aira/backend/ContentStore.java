@@ -0,0 +1,232 @@
+package com.aira.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Content-addressed storage for prompt and response text.
+// chat_history and winner_selections keep only the SHA-256 of each text; the text itself is written once to
+// content_blobs, deflated when that makes it smaller. Bodies are read back only when a caller asks for them,
+// through a small cache of decoded texts, since the same prompt is usually shown for every panel of a round.
+@Component
+class ContentStore {
+
+    // Below this, deflate's header and dictionary cost more than they save
+    private static final int MIN_COMPRESS_BYTES = 128;
+
+    @Autowired
+    private ContentBlobRepository contentBlobRepository;
+
+    // Hashes known to be committed, so hot prompts are not offered to the database again. Entries expire long
+    // before retention can drop the rows written with them, so a blob the orphan collection deleted is never
+    // still taken as stored.
+    private static final long KNOWN_HASH_MAX_AGE_MS = 3_600_000;
+
+    private final LinkedHashMap<String, Long> stored;
+    private final LinkedHashMap<String, String> decoded;
+
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+    private final LongAdder blobsWritten = new LongAdder();
+    private final LongAdder duplicatesSkipped = new LongAdder();
+
+    ContentStore(@Value("${app.content.known-hashes:10000}") int knownHashes,
+                 @Value("${app.content.cache.max-entries:1000}") int cachedTexts) {
+        this.stored = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > knownHashes;
+            }
+        };
+        this.decoded = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cachedTexts;
+            }
+        };
+    }
+
+    // Lowercase hex SHA-256 of the UTF-8 bytes; the V1 migration's backfill computes the same value in SQL
+    static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Must run inside the transaction that writes the rows referencing these texts
+    void storeAll(Collection<String> texts) {
+        Map<String, String> pending = new LinkedHashMap<>();
+        long knownSince = System.currentTimeMillis() - KNOWN_HASH_MAX_AGE_MS;
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+            String hash = hash(text);
+            boolean known;
+            synchronized (stored) {
+                Long storedAt = stored.get(hash);
+                known = storedAt != null && storedAt > knownSince;
+            }
+            if (known || pending.putIfAbsent(hash, text) != null) {
+                duplicatesSkipped.increment();
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<ContentBlob> blobs = new ArrayList<>(pending.size());
+        for (Map.Entry<String, String> entry : pending.entrySet()) {
+            blobs.add(encode(entry.getKey(), entry.getValue()));
+        }
+        contentBlobRepository.saveAll(blobs);
+
+        Set<String> hashes = pending.keySet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markStored(hashes);
+                }
+            });
+        } else {
+            markStored(hashes);
+        }
+    }
+
+    Optional<String> get(String hash) {
+        if (hash == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(getAll(List.of(hash)).get(hash));
+    }
+
+    // One query for every hash not already decoded; hashes with no blob are left out of the result
+    Map<String, String> getAll(Collection<String> hashes) {
+        Map<String, String> texts = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        synchronized (decoded) {
+            for (String hash : hashes) {
+                if (hash == null) {
+                    continue;
+                }
+                String text = decoded.get(hash);
+                if (text != null) {
+                    texts.put(hash, text);
+                } else {
+                    missing.add(hash);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return texts;
+        }
+
+        for (ContentBlob blob : contentBlobRepository.findAllById(missing)) {
+            String text = decode(blob);
+            texts.put(blob.getHash(), text);
+            synchronized (decoded) {
+                decoded.put(blob.getHash(), text);
+            }
+        }
+        return texts;
+    }
+
+    Map<String, Object> stats() {
+        long raw = rawBytes.sum();
+        long written = writtenBytes.sum();
+        return Map.of(
+            "blobsWritten", blobsWritten.sum(),
+            "duplicatesSkipped", duplicatesSkipped.sum(),
+            "rawBytes", raw,
+            "writtenBytes", written,
+            "compressionRatio", written == 0 ? 1.0 : (double) raw / written
+        );
+    }
+
+    private void markStored(Collection<String> hashes) {
+        long now = System.currentTimeMillis();
+        synchronized (stored) {
+            for (String hash : hashes) {
+                stored.put(hash, now);
+            }
+        }
+    }
+
+    private ContentBlob encode(String hash, String text) {
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        ContentBlob blob = new ContentBlob();
+        blob.setHash(hash);
+        blob.setRawLength(raw.length);
+        blob.setCodec(ContentBlob.CODEC_NONE);
+        blob.setBody(raw);
+
+        if (raw.length >= MIN_COMPRESS_BYTES) {
+            byte[] deflated = deflate(raw);
+            if (deflated.length < raw.length) {
+                blob.setCodec(ContentBlob.CODEC_DEFLATE);
+                blob.setBody(deflated);
+            }
+        }
+
+        rawBytes.add(raw.length);
+        writtenBytes.add(blob.getBody().length);
+        blobsWritten.increment();
+        return blob;
+    }
+
+    private String decode(ContentBlob blob) {
+        if (blob.getCodec() == ContentBlob.CODEC_NONE) {
+            return new String(blob.getBody(), StandardCharsets.UTF_8);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(blob.getBody());
+            byte[] raw = new byte[blob.getRawLength()];
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int read = inflater.inflate(raw, length, raw.length - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            return new String(raw, 0, length, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt content blob " + blob.getHash(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Raw deflate (no zlib header), so short texts pay as little framing as possible
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            byte[] buffer = new byte[Math.max(64, Math.min(raw.length, 8192))];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.aira.backend;
+
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+// Exposes content blob dedup and compression counters at /actuator/content
+@Component
+@Endpoint(id = "content")
+public class ContentStoreEndpoint {
+
+    @Autowired
+    private ContentStore contentStore;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return contentStore.stats();
+    }
+}
@@ -1,20 +1,33 @@
 package com.aira.backend;
 
 import java.util.*;
-import javax.crypto.Cipher;
-import javax.crypto.spec.SecretKeySpec;
-import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.JsonNode;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -23,66 +36,113 @@ import jakarta.servlet.http.HttpServletResponse;
 @CrossOrigin(originPatterns = "*", allowCredentials = "true")
 public class Controller {
     
-    @Value("${app.encryption.key:YourSecretKey12345}")
-    private String encryptionKey;
+    private static final Logger log = LoggerFactory.getLogger(Controller.class);
+    
+    @Autowired
+    private KeyMaterialService keyMaterialService;
     
     @Autowired
     private ApiKeyRepository apiKeyRepository;
     
     @Autowired
-    private WinnerSelectionRepository winnerRepository;
+    private ApiKeyCache apiKeyCache;
+    
+    @Autowired
+    private WriteBehindWriter writeBehindWriter;
+    
+    @Autowired
+    private Leaderboard leaderboard;
+    
+    @Autowired
+    private RatingEngine ratingEngine;
+    
+    @Autowired
+    private ModelAnalytics modelAnalytics;
+    
+    @Autowired
+    private ChatHistoryService chatHistoryService;
+    
+    @Autowired
+    private HistorySearch historySearch;
+    
+    @Autowired
+    private ProviderTransport providerTransport;
+    
+    @Autowired
+    private ProviderStreamClient providerStreamClient;
     
     @Autowired
-    private ChatHistoryRepository chatHistoryRepository;
+    private ResponseCache responseCache;
+    
+    @Autowired
+    private ProviderMetrics providerMetrics;
+    
+    @Autowired
+    private SingleFlight singleFlight;
+    
+    @Autowired
+    private ProviderLimiter providerLimiter;
+    
+    @Autowired
+    private HedgedRequests hedgedRequests;
+    
+    @Autowired
+    private ProviderEndpoints providerEndpoints;
+    
+    @Autowired
+    private ProviderJson providerJson;
+    
+    @Autowired
+    private ConversationWindows conversationWindows;
+    
+    @Autowired
+    private ModelCatalog modelCatalog;
+    
+    @Value("${app.models.max-age-seconds:300}")
+    private long catalogMaxAgeSeconds;
     
-    private final HttpClient httpClient = HttpClient.newHttpClient();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Value("${app.providers.deadline.default-ms:60000}")
+    private long defaultDeadlineMs;
+    
+    @Value("${app.providers.deadline.max-ms:300000}")
+    private long maxDeadlineMs;
+    
+    // Streams are held open for at most 5 minutes, in line with the nginx proxy_read_timeout
+    private static final long STREAM_TIMEOUT_MS = 300_000;
+    
+    private final ExecutorService streamExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    // Arena fan-out: one virtual thread per model call, so a round costs roughly the slowest model
+    private final ExecutorService arenaExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    // With app.process.async the blocking provider path runs here instead of on a Tomcat thread
+    private final ExecutorService processExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    @Value("${app.process.async:false}")
+    private boolean asyncProcessing;
+    
+    // The whole catalog in one cacheable response; clients revalidate with If-None-Match
+    @GetMapping("/api/models")
+    public ResponseEntity<Map<String, Object>> getModelCatalog(HttpServletRequest request) {
+        ModelCatalog.Snapshot catalog = modelCatalog.snapshot();
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(catalogMaxAgeSeconds))
+            .cachePublic()
+            .staleWhileRevalidate(Duration.ofSeconds(catalogMaxAgeSeconds));
+        
+        if (catalog.etag().equals(request.getHeader("If-None-Match"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(catalog.etag()).cacheControl(cacheControl).build();
+        }
+        
+        return ResponseEntity.ok()
+            .eTag(catalog.etag())
+            .cacheControl(cacheControl)
+            .body(Map.of("providers", catalog.providers(), "updatedAt", catalog.updatedAt()));
+    }
     
     @PostMapping("/api/models/provider")
     public Map<String, Object> getModels(@RequestBody Map<String, String> body) {
         String providerName = body.get("provider");
-        List<String> models;
-        
-        switch(providerName.toLowerCase()) {
-            case "openai":
-                models = List.of("gpt-4o", "gpt-4o-mini", "gpt-4-turbo", "gpt-4", "gpt-3.5-turbo", "gpt-3.5-turbo-16k");
-                break;
-            case "claude":
-                models = List.of("claude-sonnet-4-20250514", "claude-opus-4-20250514", "claude-3-5-sonnet-20241022", 
-                               "claude-3-opus-20240229", "claude-3-sonnet-20240229", "claude-3-haiku-20240307");
-                break;
-            case "cohere":
-                models = List.of("command-a-03-2025", "command-r7b-12-2024", "command-a-translate-08-2025", "command-a-reasoning-08-2025", "command-a-vision-07-2025", "command-r-08-2024", "command-r-plus-08-2024", "command-r-03-2024");
-                break;
-            case "copilot":
-                models = List.of("gpt-4-turbo", "gpt-4");
-                break;
-            case "deepseek":
-                models = List.of("deepseek-chat", "deepseek-coder");
-                break;
-            case "gemini":
-                models = List.of("gemini-2.0-flash-exp", "gemini-1.5-pro", "gemini-1.5-flash", "gemini-1.0-pro");
-                break;
-            case "grok":
-                models = List.of("grok-beta", "grok-vision-beta");
-                break;
-            case "llama":
-                models = List.of("llama-3.3-70b-instruct", "llama-3.1-405b-instruct", "llama-3.1-70b-instruct", 
-                               "llama-3.1-8b-instruct", "llama-3-70b-instruct", "llama-3-8b-instruct");
-                break;
-            case "mistral":
-                models = List.of("mistral-large-latest", "mistral-medium-latest", "mistral-small-latest", 
-                               "mixtral-8x7b-instruct", "mixtral-8x22b-instruct");
-                break;
-            case "qwen":
-                models = List.of("qwen-turbo", "qwen-plus", "qwen-max", "qwen2.5-72b-instruct", "qwen2.5-7b-instruct");
-                break;
-            default:
-                models = List.of();
-                break;
-        }
-        
-        return Map.of("models", models);
+        return Map.of("models", providerName == null ? List.of() : modelCatalog.models(providerName));
     }
     
     @PostMapping("/api/keys/save")
@@ -98,7 +158,7 @@ public class Controller {
                 return ResponseEntity.badRequest().body(Map.of("error", "Provider and API key are required"));
             }
             
-            String encrypted = encrypt(apiKey);
+            String encrypted = keyMaterialService.encrypt(apiKey);
             String sessionId = getOrCreateSessionId(request, response);
             
             // Save to database
@@ -111,6 +171,8 @@ public class Controller {
             apiKeyEntity.setUpdatedAt(new Date());
             
             apiKeyRepository.save(apiKeyEntity);
+            apiKeyCache.invalidate(sessionId);
+            keyMaterialService.evict(sessionId, provider);
             
             return ResponseEntity.ok(Map.of("success", true, "message", "API key saved successfully"));
             
@@ -132,13 +194,13 @@ public class Controller {
                 return ResponseEntity.ok(Map.of("apiKey", (Object) null));
             }
             
-            Optional<ApiKey> apiKeyOpt = apiKeyRepository.findBySessionIdAndProvider(sessionId, provider);
+            Optional<String> apiKey = apiKeyCache.key(sessionId, provider);
             
-            if (apiKeyOpt.isEmpty()) {
+            if (apiKey.isEmpty()) {
                 return ResponseEntity.ok(Map.of("apiKey", (Object) null));
             }
             
-            return ResponseEntity.ok(Map.of("apiKey", apiKeyOpt.get().getEncryptedKey()));
+            return ResponseEntity.ok(Map.of("apiKey", apiKey.get()));
             
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -146,11 +208,40 @@ public class Controller {
         }
     }
     
+    // Every saved key of the session in one call, e.g. {"keys": {"openai": "gcm:...", "claude": "gcm:..."}}
+    @GetMapping("/api/keys")
+    public ResponseEntity<Map<String, Object>> getApiKeys(HttpServletRequest request) {
+        try {
+            String sessionId = getSessionId(request);
+            
+            if (sessionId == null) {
+                return ResponseEntity.ok(Map.of("keys", Map.of()));
+            }
+            
+            return ResponseEntity.ok(Map.of("keys", apiKeyCache.keys(sessionId)));
+            
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to retrieve API keys"));
+        }
+    }
+    
     @PostMapping("/api/process")
-    public ResponseEntity<Map<String, Object>> processChat(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> processChat(
             @RequestBody Map<String, String> body,
             HttpServletRequest request) {
         long startTime = System.currentTimeMillis();
+        String sessionId = getSessionId(request);
+        
+        if (!asyncProcessing) {
+            return CompletableFuture.completedFuture(processChat(body, sessionId, startTime));
+        }
+        // Releases the servlet thread for the length of the provider call
+        return CompletableFuture.supplyAsync(() -> processChat(body, sessionId, startTime), processExecutor);
+    }
+    
+    private ResponseEntity<Map<String, Object>> processChat(Map<String, String> body, String sessionId, long startTime) {
+        Deadline deadline = requestDeadline(body.get("deadlineMs"));
         
         try {
             String modelIdentifier = body.get("modelIdentifier");
@@ -158,6 +249,11 @@ public class Controller {
             String encryptedApiKey = body.get("encryptedApiKey");
             
             // Validate inputs
+            if (modelIdentifier == null || !isCatalogModel(modelIdentifier)) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "Unknown model: " + modelIdentifier, "success", false));
+            }
+            
             if (encryptedApiKey == null || encryptedApiKey.trim().isEmpty()) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", "API key not found. Please add it using the + button.", "success", false));
@@ -168,400 +264,854 @@ public class Controller {
                     .body(Map.of("error", "Prompt is required", "success", false));
             }
             
-            String provider = modelIdentifier.split("-")[0];
+            String provider = ModelIdentifiers.provider(modelIdentifier);
             String modelName = extractModelName(modelIdentifier);
-            String apiKey = decrypt(encryptedApiKey);
+            List<ConversationWindows.Turn> history = conversationHistory(sessionId, modelIdentifier, prompt,
+                body.get("newConversation"));
+            
+            // Earlier turns change the answer, so only the first prompt of a conversation can use the reply cache
+            boolean useCache = useCache(body.get("bypassCache")) && history.isEmpty();
+            Optional<ResponseCache.Hit> cacheHit = useCache
+                ? responseCache.lookup(provider, modelName, prompt)
+                : Optional.empty();
+            
+            String aiResponse;
+            boolean coalesced = false;
+            if (cacheHit.isPresent()) {
+                aiResponse = cacheHit.get().reply();
+            } else {
+                String apiKey = keyMaterialService.decryptForSession(sessionId, provider, encryptedApiKey);
+                SingleFlight.Result flight = callProvider(provider, modelName, history, prompt, apiKey, deadline);
+                aiResponse = flight.reply();
+                coalesced = flight.shared();
+                if (useCache && !coalesced) {
+                    responseCache.put(provider, modelName, prompt, aiResponse);
+                }
+            }
             
-            String aiResponse = callAiApi(provider, modelName, prompt, apiKey);
+            int responseTimeMs = (int)(System.currentTimeMillis() - startTime);
+            leaderboard.recordAppearance(modelIdentifier);
+            modelAnalytics.recordReply(modelIdentifier, responseTimeMs, cacheHit.isPresent());
             
             // Save to chat history
-            String sessionId = getSessionId(request);
             if (sessionId != null) {
-                ChatHistory history = new ChatHistory();
-                history.setSessionId(sessionId);
-                history.setModelIdentifier(modelIdentifier);
-                history.setPrompt(prompt);
-                history.setResponse(aiResponse);
-                history.setResponseTimeMs((int)(System.currentTimeMillis() - startTime));
-                chatHistoryRepository.save(history);
+                writeBehindWriter.submit(buildHistory(sessionId, modelIdentifier, prompt, aiResponse, responseTimeMs,
+                    cacheHit.isPresent(), !history.isEmpty()));
+                conversationWindows.append(sessionId, ModelIdentifiers.modelKey(modelIdentifier), prompt, aiResponse);
             }
             
-            return ResponseEntity.ok(Map.of("reply", aiResponse, "success", true));
+            Map<String, Object> result = new HashMap<>();
+            result.put("reply", aiResponse);
+            result.put("success", true);
+            result.put("coalesced", coalesced);
+            putCacheMarker(result, cacheHit);
+            recordRequest("process", modelIdentifier, true, cacheHit.isPresent(), startTime);
+            return ResponseEntity.ok(result);
             
+        } catch (HttpTimeoutException e) {
+            recordRequest("process", body.get("modelIdentifier"), false, false, startTime);
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(Map.of("error", e.getMessage(), "success", false));
+        } catch (IllegalArgumentException e) {
+            recordRequest("process", body.get("modelIdentifier"), false, false, startTime);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage(), "success", false));
+        } catch (ProviderLimiter.LimitException e) {
+            recordRequest("process", body.get("modelIdentifier"), false, false, startTime);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", String.valueOf(Math.max(1, (e.retryAfterMs() + 999) / 1000)))
+                .body(Map.of("error", e.getMessage(), "success", false, "retryAfterMs", e.retryAfterMs()));
         } catch (Exception e) {
             e.printStackTrace();
+            recordRequest("process", body.get("modelIdentifier"), false, false, startTime);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", e.getMessage(), "success", false));
         }
     }
     
+    @PostMapping(value = "/api/process/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter processChatStream(
+            @RequestBody Map<String, String> body,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        long startTime = System.currentTimeMillis();
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        
+        // Tell nginx not to buffer the event stream, otherwise tokens arrive in one burst
+        response.setHeader("X-Accel-Buffering", "no");
+        
+        String modelIdentifier = body.get("modelIdentifier");
+        String prompt = body.get("prompt");
+        String encryptedApiKey = body.get("encryptedApiKey");
+        String sessionId = getSessionId(request);
+        String newConversation = body.get("newConversation");
+        Deadline deadline = requestDeadline(body.get("deadlineMs"));
+        
+        // Once the client is gone (disconnect, emitter timeout or a failed send) the provider stream is dropped too
+        UpstreamCancellation upstream = new UpstreamCancellation();
+        emitter.onTimeout(upstream::cancel);
+        emitter.onCompletion(upstream::cancel);
+        emitter.onError(error -> upstream.cancel());
+        
+        streamExecutor.execute(() -> {
+            try {
+                if (encryptedApiKey == null || encryptedApiKey.trim().isEmpty()) {
+                    sendEvent(emitter, "error", Map.of("error", "API key not found. Please add it using the + button.", "success", false));
+                    emitter.complete();
+                    return;
+                }
+                
+                if (prompt == null || prompt.trim().isEmpty()) {
+                    sendEvent(emitter, "error", Map.of("error", "Prompt is required", "success", false));
+                    emitter.complete();
+                    return;
+                }
+                
+                // Checked before the cache and history lookups, which would otherwise run for any identifier
+                if (modelIdentifier == null || !isCatalogModel(modelIdentifier)) {
+                    sendEvent(emitter, "error", Map.of("error", "Unknown model: " + modelIdentifier, "success", false));
+                    emitter.complete();
+                    return;
+                }
+                
+                String provider = ModelIdentifiers.provider(modelIdentifier);
+                String modelName = extractModelName(modelIdentifier);
+                List<ConversationWindows.Turn> conversation = conversationHistory(sessionId, modelIdentifier, prompt,
+                    newConversation);
+                
+                boolean useCache = useCache(body.get("bypassCache")) && conversation.isEmpty();
+                Optional<ResponseCache.Hit> cacheHit = useCache
+                    ? responseCache.lookup(provider, modelName, prompt)
+                    : Optional.empty();
+                
+                AtomicLong firstTokenAt = new AtomicLong();
+                String aiResponse;
+                if (cacheHit.isPresent()) {
+                    // A cached reply goes out as a single token
+                    aiResponse = cacheHit.get().reply();
+                    firstTokenAt.set(System.currentTimeMillis());
+                    sendEvent(emitter, "token", Map.of("text", aiResponse));
+                } else {
+                    String apiKey = keyMaterialService.decryptForSession(sessionId, provider, encryptedApiKey);
+                    aiResponse = streamFromProvider(provider, modelName, conversation, prompt, apiKey, deadline, upstream,
+                        startTime, firstTokenAt, token -> sendEvent(emitter, "token", Map.of("text", token)));
+                    if (useCache) {
+                        responseCache.put(provider, modelName, prompt, aiResponse);
+                    }
+                }
+                
+                int responseTimeMs = (int)(System.currentTimeMillis() - startTime);
+                Integer timeToFirstTokenMs = firstTokenAt.get() == 0 ? null : (int)(firstTokenAt.get() - startTime);
+                
+                leaderboard.recordAppearance(modelIdentifier);
+                modelAnalytics.recordReply(modelIdentifier, responseTimeMs, cacheHit.isPresent());
+                
+                // Save the assembled reply once the stream has ended
+                if (sessionId != null) {
+                    ChatHistory history = buildHistory(sessionId, modelIdentifier, prompt, aiResponse, responseTimeMs,
+                        cacheHit.isPresent(), !conversation.isEmpty());
+                    history.setTimeToFirstTokenMs(timeToFirstTokenMs);
+                    writeBehindWriter.submit(history);
+                    conversationWindows.append(sessionId, ModelIdentifiers.modelKey(modelIdentifier), prompt, aiResponse);
+                }
+                
+                Map<String, Object> done = new HashMap<>();
+                done.put("reply", aiResponse);
+                done.put("responseTimeMs", responseTimeMs);
+                done.put("timeToFirstTokenMs", timeToFirstTokenMs);
+                done.put("success", true);
+                putCacheMarker(done, cacheHit);
+                recordRequest("stream", modelIdentifier, true, cacheHit.isPresent(), startTime);
+                sendEvent(emitter, "done", done);
+                emitter.complete();
+                
+            } catch (Exception e) {
+                if (upstream.isCancelled()) {
+                    log.debug("Stream for {} abandoned by the client", modelIdentifier, e);
+                } else {
+                    log.warn("Stream for {} failed", modelIdentifier, e);
+                }
+                recordRequest("stream", modelIdentifier, false, false, startTime);
+                try {
+                    sendEvent(emitter, "error", Map.of("error", String.valueOf(e.getMessage()), "success", false));
+                    emitter.complete();
+                } catch (Exception ignored) {
+                    // Client already went away
+                    emitter.completeWithError(e);
+                }
+            }
+        });
+        
+        return emitter;
+    }
+    
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            // Aborts the upstream stream as well, so we stop paying for tokens nobody reads
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @PostMapping("/api/arena/process")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> processArena(
+            @RequestBody Map<String, Object> body,
+            HttpServletRequest request) {
+        long startTime = System.currentTimeMillis();
+        
+        Object promptValue = body.get("prompt");
+        Object modelsValue = body.get("models");
+        String prompt = promptValue instanceof String ? (String) promptValue : null;
+        
+        if (prompt == null || prompt.trim().isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Prompt is required", "success", false)));
+        }
+        
+        if (!(modelsValue instanceof List<?> models) || models.isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "At least one model is required", "success", false)));
+        }
+        
+        String sessionId = getSessionId(request);
+        boolean useCache = useCache(body.get("bypassCache"));
+        Object newConversation = body.get("newConversation");
+        
+        // One budget for the whole round, shared by every panel
+        Deadline deadline = requestDeadline(body.get("deadlineMs"));
+        
+        // Panels of the same provider usually share one key, so decrypt each distinct key once
+        Map<String, String> decryptedKeys = new ConcurrentHashMap<>();
+        
+        for (Object entry : models) {
+            Map<?, ?> model = entry instanceof Map<?, ?> m ? m : Map.of();
+            String modelIdentifier = model.get("modelIdentifier") instanceof String s ? s : null;
+            if (modelIdentifier == null || !isCatalogModel(modelIdentifier)) {
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "Unknown model: " + modelIdentifier, "success", false)));
+            }
+        }
+        
+        List<CompletableFuture<Map<String, Object>>> calls = new ArrayList<>();
+        for (Object entry : models) {
+            Map<?, ?> model = entry instanceof Map<?, ?> m ? m : Map.of();
+            String modelIdentifier = model.get("modelIdentifier") instanceof String s ? s : null;
+            String encryptedApiKey = model.get("encryptedApiKey") instanceof String s ? s : null;
+            
+            calls.add(CompletableFuture.supplyAsync(
+                () -> processArenaEntry(modelIdentifier, prompt, encryptedApiKey, sessionId, useCache, newConversation,
+                    deadline, decryptedKeys),
+                arenaExecutor));
+        }
+        
+        CompletableFuture<ResponseEntity<Map<String, Object>>> round = CompletableFuture
+            .allOf(calls.toArray(new CompletableFuture<?>[0]))
+            .thenApply(done -> {
+                List<Map<String, Object>> results = new ArrayList<>(calls.size());
+                List<ChatHistory> histories = new ArrayList<>();
+                for (CompletableFuture<Map<String, Object>> call : calls) {
+                    Map<String, Object> result = call.join();
+                    results.add(result);
+                    
+                    if (sessionId != null && Boolean.TRUE.equals(result.get("success"))) {
+                        histories.add(buildHistory(sessionId, (String) result.get("modelIdentifier"), prompt,
+                            (String) result.get("reply"), ((Number) result.get("responseTimeMs")).intValue(),
+                            Boolean.TRUE.equals(result.get("cached")), Boolean.TRUE.equals(result.get("hasContext"))));
+                    }
+                }
+                
+                writeBehindWriter.submitAll(histories);
+                
+                return ResponseEntity.ok(Map.<String, Object>of(
+                    "results", results,
+                    "totalTimeMs", System.currentTimeMillis() - startTime,
+                    "success", true
+                ));
+            });
+        
+        // In async mode the servlet thread returns now and the round completes on the last arena thread
+        return asyncProcessing ? round : CompletableFuture.completedFuture(round.join());
+    }
+    
+    
+    private Map<String, Object> processArenaEntry(
+            String modelIdentifier,
+            String prompt,
+            String encryptedApiKey,
+            String sessionId,
+            boolean useCache,
+            Object newConversation,
+            Deadline deadline,
+            Map<String, String> decryptedKeys) {
+        long startTime = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("modelIdentifier", modelIdentifier);
+        
+        try {
+            if (modelIdentifier == null || !isCatalogModel(modelIdentifier)) {
+                throw new IllegalArgumentException("Unknown model: " + modelIdentifier);
+            }
+            if (encryptedApiKey == null || encryptedApiKey.trim().isEmpty()) {
+                throw new IllegalArgumentException("API key not found. Please add it using the + button.");
+            }
+            
+            String provider = ModelIdentifiers.provider(modelIdentifier);
+            String modelName = extractModelName(modelIdentifier);
+            List<ConversationWindows.Turn> history = conversationHistory(sessionId, modelIdentifier, prompt, newConversation);
+            
+            boolean cacheable = useCache && history.isEmpty();
+            Optional<ResponseCache.Hit> cacheHit = cacheable
+                ? responseCache.lookup(provider, modelName, prompt)
+                : Optional.empty();
+            
+            String aiResponse;
+            boolean coalesced = false;
+            if (cacheHit.isPresent()) {
+                aiResponse = cacheHit.get().reply();
+            } else {
+                String apiKey = decryptedKeys.computeIfAbsent(encryptedApiKey, k -> {
+                    try {
+                        return keyMaterialService.decryptForSession(sessionId, provider, k);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                });
+                SingleFlight.Result flight = callProvider(provider, modelName, history, prompt, apiKey, deadline);
+                aiResponse = flight.reply();
+                coalesced = flight.shared();
+                if (cacheable && !coalesced) {
+                    responseCache.put(provider, modelName, prompt, aiResponse);
+                }
+            }
+            
+            leaderboard.recordAppearance(modelIdentifier);
+            modelAnalytics.recordReply(modelIdentifier, System.currentTimeMillis() - startTime, cacheHit.isPresent());
+            conversationWindows.append(sessionId, ModelIdentifiers.modelKey(modelIdentifier), prompt, aiResponse);
+            
+            result.put("reply", aiResponse);
+            result.put("success", true);
+            result.put("coalesced", coalesced);
+            result.put("hasContext", !history.isEmpty());
+            putCacheMarker(result, cacheHit);
+            recordRequest("arena", modelIdentifier, true, cacheHit.isPresent(), startTime);
+        } catch (Exception e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            result.put("error", String.valueOf(cause.getMessage()));
+            result.put("success", false);
+            recordRequest("arena", modelIdentifier, false, false, startTime);
+        }
+        
+        result.put("responseTimeMs", System.currentTimeMillis() - startTime);
+        return result;
+    }
+    
     @PostMapping("/api/select-winner")
     public ResponseEntity<Map<String, Object>> selectWinner(
-        @RequestBody Map<String, String> body,
+        @RequestBody Map<String, Object> body,
         HttpServletRequest request) {
         try {
-            String modelIdentifier = body.get("modelIdentifier");
-            String prompt = body.get("prompt");
-            String aiResponse = body.get("response");
+            String modelIdentifier = body.get("modelIdentifier") instanceof String s ? s : null;
+            String prompt = body.get("prompt") instanceof String s ? s : null;
+            String aiResponse = body.get("response") instanceof String s ? s : null;
             String sessionId = getSessionId(request);
             
+            if (modelIdentifier == null || !isCatalogModel(modelIdentifier)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Unknown model: " + modelIdentifier));
+            }
+            
+            // Both texts are stored by hash in NOT NULL columns; a row without them could never be written
+            if (prompt == null || prompt.trim().isEmpty() || aiResponse == null || aiResponse.trim().isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Prompt and response are required"));
+            }
+            
+            // Every model shown in the round, so losers are kept for pairwise ratings
+            String winnerKey = ModelIdentifiers.modelKey(modelIdentifier);
+            Set<String> competitorKeys = new LinkedHashSet<>();
+            competitorKeys.add(winnerKey);
+            if (body.get("competitors") instanceof List<?> competitors) {
+                for (Object competitor : competitors) {
+                    if (competitor instanceof String competitorIdentifier && !competitorIdentifier.isBlank()) {
+                        if (!isCatalogModel(competitorIdentifier)) {
+                            return ResponseEntity.badRequest().body(Map.of("error", "Unknown model: " + competitorIdentifier));
+                        }
+                        competitorKeys.add(ModelIdentifiers.modelKey(competitorIdentifier));
+                    }
+                }
+            }
+            
             WinnerSelection winner = new WinnerSelection();
             winner.setModelIdentifier(modelIdentifier);
             winner.setPrompt(prompt);
             winner.setResponse(aiResponse);
             winner.setSessionId(sessionId);
+            winner.setCompetitors(competitorKeys.toArray(String[]::new));
             
-            winnerRepository.save(winner);
-            
-            switch(modelIdentifier.toLowerCase()) {
-                case "openai-gpt-4o":
-                case "openai-gpt-4o-mini":
-                case "openai-gpt-4-turbo":
-                case "openai-gpt-4":
-                case "openai-gpt-3.5-turbo":
-                case "openai-gpt-3.5-turbo-16k":
-                // Increment usage count or any other metric if needed
-                    break;
-                case "claude-claude-sonnet-4-20250514":
-                case "claude-claude-opus-4-20250514":
-                case "claude-claude-3-5-sonnet-20241022":
-                case "claude-claude-3-opus-20240229":
-                case "claude-claude-3-sonnet-20240229":
-                case "claude-claude-3-haiku-20240307":
-                    // Increment usage count or any other metric if needed
-                    break;
-                case "cohere-command-a-03-2025":
-                case "cohere-command-r7b-12-2024":
-                case "cohere-command-a-translate-08-2025":
-                case "cohere-command-a-reasoning-08-2025":
-                case "cohere-command-a-vision-07-2025":
-                case "cohere-command-r-08-2024":
-                case "cohere-command-r-plus-08-2024":
-                case "cohere-command-r-03-2024":
-                    // Increment usage count or any other metric if needed
-                    break;
-                case "copilot-gpt-4-turbo":
-                case "copilot-gpt-4":
-                    // Increment usage count or any other metric if needed
-                    break;
-                // Add other providers and models as needed
-                case "deepseek-deepseek-chat":
-                case "deepseek-deepseek-coder":
-                    break;
-                case "gemini-gemini-2.0-flash-exp":
-                case "gemini-gemini-1.5-pro":
-                case "gemini-gemini-1.5-flash":
-                case "gemini-gemini-1.0-pro":
-                    break;
-                case "grok-grok-beta":
-                case "grok-grok-vision-beta":
-                    break;
-                case "llama-llama-3.3-70b-instruct":
-                case "llama-llama-3.1-405b-instruct":
-                case "llama-llama-3.1-70b-instruct":
-                case "llama-llama-3.1-8b-instruct":
-                case "llama-llama-3-70b-instruct":
-                case "llama-llama-3-8b-instruct":
-                    break;
-                case "mistral-mistral-large-latest":
-                case "mistral-mistral-medium-latest":
-                case "mistral-mistral-small-latest":
-                case "mistral-mixtral-8x7b-instruct":
-                case "mistral-mixtral-8x22b-instruct":
-                    break;
-                case "qwen-qwen-turbo":
-                case "qwen-qwen-plus":
-                case "qwen-qwen-max":
-                case "qwen-qwen2.5-72b-instruct":
-                case "qwen-qwen2.5-7b-instruct":
-                    break;
-                default:
-                    break;
-            }
+            writeBehindWriter.submit(winner);
+            
+            leaderboard.recordWin(modelIdentifier);
+            modelAnalytics.recordWin(modelIdentifier);
+            ratingEngine.recordMatch(winnerKey, competitorKeys, winner);
+            
+            return ResponseEntity.ok(Map.of("success", true));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", "Failed to record winner"));
         }
     }
     
+    @GetMapping("/api/history")
+    public ResponseEntity<Map<String, Object>> getHistory(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            HttpServletRequest request) {
+        String sessionId = getSessionId(request);
+        if (sessionId == null) {
+            return ResponseEntity.ok(Map.of("items", List.of()));
+        }
+        
+        try {
+            return ResponseEntity.ok(chatHistoryService.sessionPage(sessionId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/api/history/model/{modelKey}")
+    public ResponseEntity<Map<String, Object>> getModelHistory(
+            @PathVariable String modelKey,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            HttpServletRequest request) {
+        String sessionId = getSessionId(request);
+        if (sessionId == null) {
+            return ResponseEntity.ok(Map.of("items", List.of()));
+        }
+        
+        try {
+            return ResponseEntity.ok(chatHistoryService.modelPage(sessionId, modelKey, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/api/history/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(HttpServletRequest request) {
+        String sessionId = getSessionId(request);
+        if (sessionId == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        
+        StreamingResponseBody body = out -> chatHistoryService.exportSession(sessionId, out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .header("Content-Disposition", "attachment; filename=\"chat-history.ndjson\"")
+            .body(body);
+    }
+    
+    // Searches only the caller's own history or winners
+    @GetMapping("/api/search")
+    public ResponseEntity<Map<String, Object>> search(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "history") String source,
+            @RequestParam(required = false) String modelKey,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer limit,
+            HttpServletRequest request) {
+        String sessionId = getSessionId(request);
+        if (sessionId == null) {
+            return ResponseEntity.ok(Map.of("items", List.of()));
+        }
+        
+        try {
+            return ResponseEntity.ok(historySearch.search(source, q, sessionId, modelKey, page, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/api/stats/hourly")
+    public Map<String, Object> getHourlyStats(
+            @RequestParam(required = false) String modelKey,
+            @RequestParam(required = false) Integer hours) {
+        return Map.of("hours", chatHistoryService.hourlyStats(modelKey, hours));
+    }
+    
+    // window is hour, day or week; served from in-memory aggregates, never from chat_history
+    @GetMapping("/api/analytics")
+    public ResponseEntity<Map<String, Object>> getAnalytics(
+            @RequestParam(defaultValue = "day") String window,
+            @RequestParam(required = false) String modelKey) {
+        try {
+            return ResponseEntity.ok(Map.of("window", window, "models", modelAnalytics.window(window, modelKey)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/api/leaderboard")
+    public Map<String, Object> getLeaderboard() {
+        return Map.of("models", leaderboard.standings());
+    }
+    
+    @GetMapping("/api/ratings")
+    public Map<String, Object> getRatings() {
+        return Map.of(
+            "elo", ratingEngine.eloStandings(),
+            "bradleyTerry", ratingEngine.bradleyTerry(),
+            "recomputing", ratingEngine.isRecomputing()
+        );
+    }
+    
+    @PostMapping("/api/ratings/recompute")
+    public ResponseEntity<Map<String, Object>> recomputeRatings() {
+        boolean started = ratingEngine.recomputeAsync();
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .body(Map.of("started", started, "success", true));
+    }
+    
+    // Identical calls already in flight share one upstream request; each caller still gets its own history row.
+    // Follow-up turns depend on their conversation, so only first turns are coalesced.
+    private SingleFlight.Result callProvider(String provider, String model, List<ConversationWindows.Turn> history,
+                                             String prompt, String apiKey, Deadline deadline) throws Exception {
+        if (!history.isEmpty()) {
+            return new SingleFlight.Result(callAiApi(provider, model, history, prompt, apiKey, deadline), false);
+        }
+        SingleFlight.Result result = singleFlight.execute(provider, model, prompt, apiKey, deadline,
+            () -> callAiApi(provider, model, history, prompt, apiKey, deadline));
+        if (result.shared()) {
+            providerMetrics.recordCoalesced(provider.toLowerCase(), model);
+        }
+        return result;
+    }
+    
     // AI API calling methods
-    private String callAiApi(String provider, String model, String prompt, String apiKey) throws Exception {
+    private String callAiApi(String provider, String model, List<ConversationWindows.Turn> history, String prompt,
+                             String apiKey, Deadline deadline) throws Exception {
+        // Rejects typos and malformed identifiers before they cost a provider round trip
+        if (!modelCatalog.contains(provider, model)) {
+            throw new IllegalArgumentException("Unknown model: " + provider + "/" + model);
+        }
         return switch (provider.toLowerCase()) {
-            case "openai" -> callOpenAI(model, prompt, apiKey);
-            case "claude" -> callClaude(model, prompt, apiKey);
-            case "gemini" -> callGemini(model, prompt, apiKey);
-            case "cohere" -> callCohere(model, prompt, apiKey);
-            case "deepseek" -> callDeepSeek(model, prompt, apiKey);
-            case "grok" -> callGrok(model, prompt, apiKey);
-            case "mistral" -> callMistral(model, prompt, apiKey);
-            case "qwen" -> callQwen(model, prompt, apiKey);
-            case "llama" -> callLlama(model, prompt, apiKey);
-            case "copilot" -> callCopilot(model, prompt, apiKey);
+            case "openai" -> callOpenAI(model, history, prompt, apiKey, deadline);
+            case "claude" -> callClaude(model, history, prompt, apiKey, deadline);
+            case "gemini" -> callGemini(model, history, prompt, apiKey, deadline);
+            case "cohere" -> callCohere(model, history, prompt, apiKey, deadline);
+            case "deepseek" -> callDeepSeek(model, history, prompt, apiKey, deadline);
+            case "grok" -> callGrok(model, history, prompt, apiKey, deadline);
+            case "mistral" -> callMistral(model, history, prompt, apiKey, deadline);
+            case "qwen" -> callQwen(model, history, prompt, apiKey, deadline);
+            case "llama" -> callLlama(model, history, prompt, apiKey, deadline);
+            case "copilot" -> callCopilot(model, history, prompt, apiKey, deadline);
             default -> throw new UnsupportedOperationException("Provider not supported: " + provider);
         };
     }
     
-    private String callOpenAI(String model, String prompt, String apiKey) throws Exception {
-        String url = "https://api.openai.com/v1/chat/completions";
-        Map<String, Object> requestBody = Map.of(
-            "model", model,
-            "messages", List.of(Map.of("role", "user", "content", prompt)),
-            "max_tokens", 1000
-        );
+    private String callOpenAI(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                              Deadline deadline) throws Exception {
+        String url = providerEndpoints.url("openai", "/v1/chat/completions");
+        byte[] requestBody = providerJson.chatRequest(model, history, prompt, false);
         
         HttpRequest request = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .header("Content-Type", "application/json")
             .header("Authorization", "Bearer " + apiKey)
-            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
             .build();
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("OpenAI API error: " + response.body());
-        }
-        
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        return jsonResponse.at("/choices/0/message/content").asText();
+        return sendToProvider("openai", "OpenAI", model, request, deadline, ProviderJson.Schema.CHAT_COMPLETIONS);
     }
     
-    private String callClaude(String model, String prompt, String apiKey) throws Exception {
-        String url = "https://api.anthropic.com/v1/messages";
-        Map<String, Object> requestBody = Map.of(
-            "model", model,
-            "max_tokens", 1000,
-            "messages", List.of(Map.of("role", "user", "content", prompt))
-        );
+    private String callClaude(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                              Deadline deadline) throws Exception {
+        String url = providerEndpoints.url("claude", "/v1/messages");
+        byte[] requestBody = providerJson.chatRequest(model, history, prompt, false);
         
         HttpRequest request = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .header("Content-Type", "application/json")
             .header("x-api-key", apiKey)
             .header("anthropic-version", "2023-06-01")
-            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
             .build();
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Claude API error: " + response.body());
-        }
-        
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        return jsonResponse.at("/content/0/text").asText();
+        return sendToProvider("claude", "Claude", model, request, deadline, ProviderJson.Schema.CLAUDE);
     }
     
-    private String callGemini(String model, String prompt, String apiKey) throws Exception {
-        String url = "https://generativelanguage.googleapis.com/v1beta/models/" + model + ":generateContent?key=" + apiKey;
-        Map<String, Object> requestBody = Map.of(
-            "contents", List.of(Map.of("parts", List.of(Map.of("text", prompt))))
-        );
+    private String callGemini(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                              Deadline deadline) throws Exception {
+        String url = providerEndpoints.url("gemini", "/v1beta/models/" + model + ":generateContent?key=" + apiKey);
+        byte[] requestBody = providerJson.geminiRequest(history, prompt);
         
         HttpRequest request = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .header("Content-Type", "application/json")
-            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
             .build();
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Gemini API error: " + response.body());
-        }
-        
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        return jsonResponse.at("/candidates/0/content/parts/0/text").asText();
+        return sendToProvider("gemini", "Gemini", model, request, deadline, ProviderJson.Schema.GEMINI);
     }
     
-    private String callCohere(String model, String prompt, String apiKey) throws Exception {
-        String url = "https://api.cohere.ai/v1/chat";
-        Map<String, Object> requestBody = Map.of(
-            "model", model,
-            "message", prompt,
-            "max_tokens", 1000
-        );
+    private String callCohere(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                              Deadline deadline) throws Exception {
+        String url = providerEndpoints.url("cohere", "/v1/chat");
+        byte[] requestBody = providerJson.cohereRequest(model, history, prompt, false);
         
         HttpRequest request = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .header("Content-Type", "application/json")
             .header("Authorization", "Bearer " + apiKey)
-            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
             .build();
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Cohere API error: " + response.body());
-        }
-        
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        return jsonResponse.at("/text").asText();
+        return sendToProvider("cohere", "Cohere", model, request, deadline, ProviderJson.Schema.COHERE);
     }
     
-    private String callDeepSeek(String model, String prompt, String apiKey) throws Exception {
-        String url = "https://api.deepseek.com/v1/chat/completions";
-        Map<String, Object> requestBody = Map.of(
-            "model", model,
-            "messages", List.of(Map.of("role", "user", "content", prompt)),
-            "max_tokens", 1000
-        );
+    private String callDeepSeek(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                                Deadline deadline) throws Exception {
+        String url = providerEndpoints.url("deepseek", "/v1/chat/completions");
+        byte[] requestBody = providerJson.chatRequest(model, history, prompt, false);
         
         HttpRequest request = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .header("Content-Type", "application/json")
             .header("Authorization", "Bearer " + apiKey)
-            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
             .build();
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("DeepSeek API error: " + response.body());
-        }
-        
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        return jsonResponse.at("/choices/0/message/content").asText();
+        return sendToProvider("deepseek", "DeepSeek", model, request, deadline, ProviderJson.Schema.CHAT_COMPLETIONS);
     }
     
-    private String callGrok(String model, String prompt, String apiKey) throws Exception {
-        String url = "https://api.x.ai/v1/chat/completions";
-        Map<String, Object> requestBody = Map.of(
-            "model", model,
-            "messages", List.of(Map.of("role", "user", "content", prompt)),
-            "max_tokens", 1000
-        );
+    private String callGrok(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                            Deadline deadline) throws Exception {
+        String url = providerEndpoints.url("grok", "/v1/chat/completions");
+        byte[] requestBody = providerJson.chatRequest(model, history, prompt, false);
         
         HttpRequest request = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .header("Content-Type", "application/json")
             .header("Authorization", "Bearer " + apiKey)
-            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
             .build();
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Grok API error: " + response.body());
-        }
-        
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        return jsonResponse.at("/choices/0/message/content").asText();
+        return sendToProvider("grok", "Grok", model, request, deadline, ProviderJson.Schema.CHAT_COMPLETIONS);
     }
     
-    private String callMistral(String model, String prompt, String apiKey) throws Exception {
-        String url = "https://api.mistral.ai/v1/chat/completions";
-        Map<String, Object> requestBody = Map.of(
-            "model", model,
-            "messages", List.of(Map.of("role", "user", "content", prompt)),
-            "max_tokens", 1000
-        );
+    private String callMistral(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                               Deadline deadline) throws Exception {
+        String url = providerEndpoints.url("mistral", "/v1/chat/completions");
+        byte[] requestBody = providerJson.chatRequest(model, history, prompt, false);
         
         HttpRequest request = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .header("Content-Type", "application/json")
             .header("Authorization", "Bearer " + apiKey)
-            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
             .build();
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Mistral API error: " + response.body());
-        }
-        
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        return jsonResponse.at("/choices/0/message/content").asText();
+        return sendToProvider("mistral", "Mistral", model, request, deadline, ProviderJson.Schema.CHAT_COMPLETIONS);
     }
     
-    private String callQwen(String model, String prompt, String apiKey) throws Exception {
-        String url = "https://dashscope.aliyuncs.com/api/v1/services/aigc/text-generation/generation";
-        Map<String, Object> requestBody = Map.of(
-            "model", model,
-            "input", Map.of("prompt", prompt),
-            "parameters", Map.of("max_tokens", 1000)
-        );
+    private String callQwen(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                            Deadline deadline) throws Exception {
+        String url = providerEndpoints.url("qwen", "/api/v1/services/aigc/text-generation/generation");
+        byte[] requestBody = providerJson.qwenRequest(model, history, prompt, false);
         
         HttpRequest request = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .header("Content-Type", "application/json")
             .header("Authorization", "Bearer " + apiKey)
-            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
             .build();
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Qwen API error: " + response.body());
-        }
-        
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        return jsonResponse.at("/output/text").asText();
+        return sendToProvider("qwen", "Qwen", model, request, deadline, ProviderJson.Schema.QWEN);
     }
     
-    private String callLlama(String model, String prompt, String apiKey) throws Exception {
+    private String callLlama(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                             Deadline deadline) throws Exception {
         // Using Meta's Llama API (via Replicate or similar service)
         // This is a placeholder - adjust based on your actual Llama API endpoint
-        String url = "https://api.together.xyz/v1/chat/completions";
-        Map<String, Object> requestBody = Map.of(
-            "model", model,
-            "messages", List.of(Map.of("role", "user", "content", prompt)),
-            "max_tokens", 1000
-        );
+        String url = providerEndpoints.url("llama", "/v1/chat/completions");
+        byte[] requestBody = providerJson.chatRequest(model, history, prompt, false);
         
         HttpRequest request = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .header("Content-Type", "application/json")
             .header("Authorization", "Bearer " + apiKey)
-            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
             .build();
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Llama API error: " + response.body());
-        }
-        
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        return jsonResponse.at("/choices/0/message/content").asText();
+        return sendToProvider("llama", "Llama", model, request, deadline, ProviderJson.Schema.CHAT_COMPLETIONS);
     }
     
-    private String callCopilot(String model, String prompt, String apiKey) throws Exception {
+    private String callCopilot(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                               Deadline deadline) throws Exception {
         // Microsoft Copilot uses Azure OpenAI endpoints
         // This is a placeholder - you'll need to configure Azure OpenAI endpoint
-        String url = "https://api.openai.com/v1/chat/completions";
-        Map<String, Object> requestBody = Map.of(
-            "model", model,
-            "messages", List.of(Map.of("role", "user", "content", prompt)),
-            "max_tokens", 1000
-        );
+        String url = providerEndpoints.url("copilot", "/v1/chat/completions");
+        byte[] requestBody = providerJson.chatRequest(model, history, prompt, false);
         
         HttpRequest request = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .header("Content-Type", "application/json")
             .header("Authorization", "Bearer " + apiKey)
-            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
             .build();
         
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Copilot API error: " + response.body());
+        return sendToProvider("copilot", "Copilot", model, request, deadline, ProviderJson.Schema.CHAT_COMPLETIONS);
+    }
+    
+    // Runs the provider round trip inside the provider's bulkhead, bounded by the request deadline, and times it.
+    // The permit is held until the body has been read, since the download still occupies the provider's slot, and
+    // the read is cut off at the deadline like the exchange itself.
+    // A 429 is raised as a LimitException, any other non-200 as an "<apiName> API error".
+    private String sendToProvider(String provider, String apiName, String model, HttpRequest request, Deadline deadline,
+                                  ProviderJson.Schema schema) throws Exception {
+        try (ProviderLimiter.Permit permit = acquirePermit(provider, model, deadline.remainingMs())) {
+            HttpRequest bounded = HttpRequest.newBuilder(request, (name, value) -> true)
+                .timeout(deadline.remaining())
+                .build();
+            Timer.Sample sample = providerMetrics.start();
+            HttpResponse<InputStream> response;
+            try {
+                response = hedgedRequests.send(provider, model, bounded, deadline);
+                providerMetrics.recordUpstream(sample, provider, model, ProviderMetrics.outcomeOf(response.statusCode()));
+            } catch (Exception e) {
+                providerMetrics.recordUpstream(sample, provider, model, ProviderMetrics.outcomeOf(e));
+                throw e;
+            }
+            try {
+                permit.onResponse(response.statusCode(), response.headers());
+            } catch (ProviderLimiter.LimitException e) {
+                response.body().close();
+                throw e;
+            }
+            BodyWatchdog watchdog = new BodyWatchdog(response.body(), deadline);
+            try {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException(apiName + " API error: " + ProviderJson.errorBody(response.body()));
+                }
+                return readReply(provider, model, response.body(), schema);
+            } catch (IOException e) {
+                throw watchdog.timeout(e);
+            } finally {
+                watchdog.close();
+            }
         }
-        
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        return jsonResponse.at("/choices/0/message/content").asText();
     }
     
-    private String extractModelName(String modelIdentifier) {
-        // Format: provider-model-timestamp
-        // e.g., "openai-gpt-4-1234567890"
-        String[] parts = modelIdentifier.split("-");
-        
-        if (parts.length < 3) {
-            return modelIdentifier;
+    private ProviderLimiter.Permit acquirePermit(String provider, String model, long maxWaitMs) throws InterruptedException {
+        try {
+            return providerLimiter.acquire(provider, maxWaitMs);
+        } catch (ProviderLimiter.LimitException e) {
+            providerMetrics.recordError(provider, model, ProviderMetrics.REJECTED);
+            throw e;
         }
-        
-        // Remove provider (first part) and timestamp (last part)
-        StringBuilder modelName = new StringBuilder();
-        for (int i = 1; i < parts.length - 1; i++) {
-            if (i > 1) {
-                modelName.append("-");
+    }
+    
+    // The body is decoded as it streams in, so this also covers reading it off the connection
+    private String readReply(String provider, String model, InputStream body, ProviderJson.Schema schema) throws Exception {
+        Timer.Sample sample = providerMetrics.start();
+        ProviderJson.Reply reply;
+        try {
+            reply = providerJson.decode(body, schema);
+        } finally {
+            providerMetrics.recordParse(sample, provider, model);
+        }
+        providerMetrics.recordTokens(provider, model, reply.inputTokens(), reply.outputTokens());
+        return reply.text();
+    }
+    
+    private String streamFromProvider(String provider, String model, List<ConversationWindows.Turn> history,
+                                      String prompt, String apiKey, Deadline deadline, UpstreamCancellation upstream,
+                                      long startTime, AtomicLong firstTokenAt, Consumer<String> onToken) throws Exception {
+        String providerTag = provider.toLowerCase();
+        try (ProviderLimiter.Permit permit = acquirePermit(providerTag, model, deadline.remainingMs())) {
+            Timer.Sample sample = providerMetrics.start();
+            try {
+                String reply = providerStreamClient.stream(provider, model, history, prompt, apiKey, deadline, upstream, token -> {
+                    if (firstTokenAt.compareAndSet(0, System.currentTimeMillis())) {
+                        providerMetrics.recordFirstToken(providerTag, model, firstTokenAt.get() - startTime);
+                    }
+                    onToken.accept(token);
+                });
+                providerMetrics.recordUpstream(sample, providerTag, model, ProviderMetrics.SUCCESS);
+                permit.onSuccess();
+                return reply;
+            } catch (ProviderLimiter.LimitException e) {
+                providerMetrics.recordUpstream(sample, providerTag, model, ProviderMetrics.RATE_LIMITED);
+                permit.onThrottled(e.retryAfterMs());
+                throw e;
+            } catch (Exception e) {
+                providerMetrics.recordUpstream(sample, providerTag, model, ProviderMetrics.outcomeOf(e));
+                throw e;
             }
-            modelName.append(parts[i]);
         }
-        
-        return modelName.toString();
+    }
+    
+    private void recordRequest(String endpoint, String modelIdentifier, boolean success, boolean cached, long startTime) {
+        String provider = "unknown";
+        String model = "unknown";
+        if (modelIdentifier != null && !modelIdentifier.isBlank()) {
+            provider = ModelIdentifiers.provider(modelIdentifier).toLowerCase();
+            model = ModelIdentifiers.modelName(modelIdentifier);
+        }
+        providerMetrics.recordRequest(endpoint, provider, model,
+            success ? ProviderMetrics.SUCCESS : ProviderMetrics.ERROR, cached, System.currentTimeMillis() - startTime);
+    }
+    
+    // Client-supplied budget in milliseconds, clamped to the configured maximum
+    private Deadline requestDeadline(Object deadlineMs) {
+        long budgetMs = defaultDeadlineMs;
+        if (deadlineMs != null) {
+            try {
+                budgetMs = Long.parseLong(String.valueOf(deadlineMs).trim());
+            } catch (NumberFormatException e) {
+                // Ignore malformed values and keep the default budget
+            }
+        }
+        return Deadline.after(Math.max(1, Math.min(budgetMs, maxDeadlineMs)));
+    }
+    
+    private String extractModelName(String modelIdentifier) {
+        return ModelIdentifiers.modelName(modelIdentifier);
+    }
+    
+    // Earlier turns of this (session, model); "newConversation" starts over without touching stored history
+    private List<ConversationWindows.Turn> conversationHistory(String sessionId, String modelIdentifier, String prompt,
+                                                               Object newConversation) {
+        String modelKey = ModelIdentifiers.modelKey(modelIdentifier);
+        if ("true".equalsIgnoreCase(String.valueOf(newConversation))) {
+            conversationWindows.reset(sessionId, modelKey);
+        }
+        return conversationWindows.history(sessionId, modelKey, prompt);
+    }
+    
+    private boolean isCatalogModel(String modelIdentifier) {
+        return modelCatalog.contains(ModelIdentifiers.provider(modelIdentifier), extractModelName(modelIdentifier));
+    }
+    
+    private boolean useCache(Object bypassCache) {
+        return responseCache.isEnabled() && !"true".equalsIgnoreCase(String.valueOf(bypassCache));
+    }
+    
+    private void putCacheMarker(Map<String, Object> result, Optional<ResponseCache.Hit> cacheHit) {
+        result.put("cached", cacheHit.isPresent());
+        cacheHit.ifPresent(hit -> result.put("cacheTier", hit.tier()));
+    }
+    
+    private ChatHistory buildHistory(String sessionId, String modelIdentifier, String prompt,
+                                     String aiResponse, int responseTimeMs, boolean cached, boolean hasContext) {
+        ChatHistory history = new ChatHistory();
+        history.setSessionId(sessionId);
+        history.setModelIdentifier(modelIdentifier);
+        history.setModelKey(ModelIdentifiers.modelKey(modelIdentifier));
+        history.setPrompt(prompt);
+        history.setResponse(aiResponse);
+        history.setResponseTimeMs(responseTimeMs);
+        history.setCached(cached);
+        history.setHasContext(hasContext);
+        return history;
     }
     
     private String getOrCreateSessionId(HttpServletRequest request, HttpServletResponse response) {
@@ -588,25 +1138,4 @@ public class Controller {
         }
         return null;
     }
-    
-    private String encrypt(String data) throws Exception {
-        SecretKeySpec key = new SecretKeySpec(padKey(encryptionKey).getBytes(), "AES");
-        Cipher cipher = Cipher.getInstance("AES");
-        cipher.init(Cipher.ENCRYPT_MODE, key);
-        return Base64.getEncoder().encodeToString(cipher.doFinal(data.getBytes()));
-    }
-    
-    private String decrypt(String encryptedData) throws Exception {
-        SecretKeySpec key = new SecretKeySpec(padKey(encryptionKey).getBytes(), "AES");
-        Cipher cipher = Cipher.getInstance("AES");
-        cipher.init(Cipher.DECRYPT_MODE, key);
-        return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedData)));
-    }
-    
-    private String padKey(String key) {
-        if (key.length() >= 16) {
-            return key.substring(0, 16);
-        }
-        return String.format("%-16s", key).replace(' ', '0');
-    }
 }
\ No newline at end of file
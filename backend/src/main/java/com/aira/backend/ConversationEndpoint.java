@@ -0,0 +1,21 @@
+package com.aira.backend;
+
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+// Exposes conversation window counters at /actuator/conversations
+@Component
+@Endpoint(id = "conversations")
+public class ConversationEndpoint {
+
+    @Autowired
+    private ConversationWindows conversationWindows;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return conversationWindows.stats();
+    }
+}
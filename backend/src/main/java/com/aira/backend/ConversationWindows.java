@@ -0,0 +1,233 @@
+package com.aira.backend;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Recent turns per (session, model key), kept in memory so follow-up prompts carry their context.
+// A window grows by one turn per reply and drops its oldest turns once over the token or turn budget.
+// Windows are LRU-bounded and expire after sitting idle; a missing window is rebuilt from chat_history
+// with one bounded query, so the full history is never reloaded per message.
+@Component
+class ConversationWindows {
+
+    // Rough but provider-neutral: about four characters per token for English text
+    private static final int CHARS_PER_TOKEN = 4;
+
+    @Value("${app.conversation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.conversation.max-tokens:4000}")
+    private int maxTokens;
+
+    @Value("${app.conversation.max-turns:20}")
+    private int maxTurns;
+
+    @Value("${app.conversation.idle-seconds:1800}")
+    private long idleSeconds;
+
+    @Autowired
+    private ChatHistoryRepository chatHistoryRepository;
+
+    @Autowired
+    private ContentStore contentStore;
+
+    private final LinkedHashMap<String, Window> windows;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder trimmedTurns = new LongAdder();
+
+    ConversationWindows(@Value("${app.conversation.max-windows:10000}") int maxWindows) {
+        this.windows = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+                if (size() > maxWindows) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    record Turn(String prompt, String reply) {
+
+        int tokens() {
+            return estimateTokens(prompt) + estimateTokens(reply);
+        }
+    }
+
+    // Turns to send ahead of the new prompt, oldest first. The prompt's own size counts against the budget.
+    List<Turn> history(String sessionId, String modelKey, String prompt) {
+        if (!enabled || sessionId == null) {
+            return List.of();
+        }
+
+        String key = key(sessionId, modelKey);
+        long now = System.currentTimeMillis();
+        Window window;
+        synchronized (windows) {
+            window = windows.get(key);
+            if (window != null && window.lastUsed < now - idleSeconds * 1000) {
+                windows.remove(key);
+                expirations.increment();
+                window = null;
+            }
+        }
+
+        if (window == null) {
+            window = rebuild(sessionId, modelKey);
+            synchronized (windows) {
+                Window raced = windows.putIfAbsent(key, window);
+                if (raced != null) {
+                    window = raced;
+                }
+            }
+        } else {
+            hits.increment();
+        }
+
+        return window.snapshot(maxTokens - estimateTokens(prompt), now);
+    }
+
+    // Only extends a window that is still cached; an evicted one is rebuilt from chat_history instead
+    void append(String sessionId, String modelKey, String prompt, String reply) {
+        if (!enabled || sessionId == null || reply == null) {
+            return;
+        }
+        Window window;
+        synchronized (windows) {
+            window = windows.get(key(sessionId, modelKey));
+        }
+        if (window != null) {
+            window.add(new Turn(prompt, reply), System.currentTimeMillis());
+        }
+    }
+
+    // Starts the next prompt from an empty context; stored history is left alone
+    void reset(String sessionId, String modelKey) {
+        if (sessionId == null) {
+            return;
+        }
+        synchronized (windows) {
+            windows.put(key(sessionId, modelKey), new Window(System.currentTimeMillis()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.conversation.sweep-interval-ms:60000}")
+    void expireIdle() {
+        long cutoff = System.currentTimeMillis() - idleSeconds * 1000;
+        synchronized (windows) {
+            Iterator<Window> iterator = windows.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().lastUsed < cutoff) {
+                    iterator.remove();
+                    expirations.increment();
+                }
+            }
+        }
+    }
+
+    Map<String, Object> stats() {
+        int size;
+        synchronized (windows) {
+            size = windows.size();
+        }
+        return Map.of(
+            "enabled", enabled,
+            "windows", size,
+            "hits", hits.sum(),
+            "rebuilds", rebuilds.sum(),
+            "evictions", evictions.sum(),
+            "expirations", expirations.sum(),
+            "trimmedTurns", trimmedTurns.sum()
+        );
+    }
+
+    static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private Window rebuild(String sessionId, String modelKey) {
+        rebuilds.increment();
+        List<ChatHistoryRepository.ConversationTurn> rows =
+            chatHistoryRepository.findConversationTurns(sessionId, modelKey, PageRequest.of(0, maxTurns));
+        // Rows come newest first. A turn sent without context started the current conversation (possibly after
+        // a reset), so nothing before it belongs in the window.
+        for (int i = 0; i < rows.size(); i++) {
+            if (!rows.get(i).isHasContext()) {
+                rows = rows.subList(0, i + 1);
+                break;
+            }
+        }
+        List<String> hashes = new ArrayList<>(rows.size() * 2);
+        for (ChatHistoryRepository.ConversationTurn row : rows) {
+            hashes.add(row.getPromptHash());
+            hashes.add(row.getResponseHash());
+        }
+        Map<String, String> texts = contentStore.getAll(hashes);
+
+        Window window = new Window(System.currentTimeMillis());
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            ChatHistoryRepository.ConversationTurn row = rows.get(i);
+            String prompt = texts.get(row.getPromptHash());
+            String reply = texts.get(row.getResponseHash());
+            if (prompt != null && reply != null) {
+                window.add(new Turn(prompt, reply), window.lastUsed);
+            }
+        }
+        return window;
+    }
+
+    private String key(String sessionId, String modelKey) {
+        return sessionId + '\u0000' + modelKey;
+    }
+
+    private final class Window {
+        private final ArrayDeque<Turn> turns = new ArrayDeque<>();
+        private int tokens;
+        private volatile long lastUsed;
+
+        Window(long now) {
+            this.lastUsed = now;
+        }
+
+        synchronized void add(Turn turn, long now) {
+            turns.addLast(turn);
+            tokens += turn.tokens();
+            lastUsed = now;
+            while (!turns.isEmpty() && (turns.size() > maxTurns || tokens > maxTokens)) {
+                tokens -= turns.removeFirst().tokens();
+                trimmedTurns.increment();
+            }
+        }
+
+        // Newest turns that fit the budget
+        synchronized List<Turn> snapshot(int budget, long now) {
+            lastUsed = now;
+            int used = 0;
+            int count = 0;
+            Iterator<Turn> newestFirst = turns.descendingIterator();
+            while (newestFirst.hasNext()) {
+                int next = newestFirst.next().tokens();
+                if (used + next > budget) {
+                    break;
+                }
+                used += next;
+                count++;
+            }
+            if (count == 0) {
+                return List.of();
+            }
+            List<Turn> window = new ArrayList<>(turns);
+            return List.copyOf(window.subList(window.size() - count, window.size()));
+        }
+    }
+}
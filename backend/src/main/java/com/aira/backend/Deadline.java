@@ -0,0 +1,25 @@
+package com.aira.backend;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+
+// Absolute time budget for one client request, handed down to every upstream call it makes
+record Deadline(long expiresAt) {
+
+    static Deadline after(long millis) {
+        return new Deadline(System.currentTimeMillis() + millis);
+    }
+
+    long remainingMs() {
+        return Math.max(0, expiresAt - System.currentTimeMillis());
+    }
+
+    // What is left of the budget, or a timeout if it is already spent
+    Duration remaining() throws HttpTimeoutException {
+        long remaining = remainingMs();
+        if (remaining == 0) {
+            throw new HttpTimeoutException("Request deadline exceeded");
+        }
+        return Duration.ofMillis(remaining);
+    }
+}
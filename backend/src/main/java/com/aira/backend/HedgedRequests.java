@@ -0,0 +1,155 @@
+package com.aira.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Tail-latency hedging for blocking provider calls.
+// For providers listed in app.providers.hedging.providers, a call that has not answered within the
+// model's observed p95 gets a duplicate request; the first 200 wins and the other exchange is cancelled.
+// The duplicate needs a free limiter slot and token, so hedging never queues behind real traffic.
+@Component
+class HedgedRequests {
+
+    static final String FIRED = "fired";
+    static final String WON = "won";
+
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    @Value("${app.providers.hedging.providers:}")
+    private Set<String> hedgedProviders;
+
+    @Value("${app.providers.hedging.min-delay-ms:250}")
+    private long minDelayMs;
+
+    @Value("${app.providers.hedging.min-samples:20}")
+    private long minSamples;
+
+    @Autowired
+    private ProviderTransport providerTransport;
+
+    @Autowired
+    private ProviderLimiter providerLimiter;
+
+    @Autowired
+    private ProviderMetrics providerMetrics;
+
+    HttpResponse<InputStream> send(String provider, String model, HttpRequest request, Deadline deadline) throws Exception {
+        OptionalLong hedgeDelayMs = hedgeDelayMs(provider, model);
+        if (hedgeDelayMs.isEmpty() || hedgeDelayMs.getAsLong() >= deadline.remainingMs()) {
+            return providerTransport.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        }
+
+        CompletableFuture<HttpResponse<InputStream>> primary = providerTransport.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        try {
+            return primary.get(hedgeDelayMs.getAsLong(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Slower than p95: hedge below
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            primary.cancel(true);
+            throw e;
+        }
+
+        Optional<ProviderLimiter.Permit> hedgePermit = providerLimiter.tryAcquire(provider);
+        if (hedgePermit.isEmpty()) {
+            return await(primary, deadline);
+        }
+
+        // The caller's permit reports the winning response to the limiter; this one only holds the extra slot
+        try {
+            providerMetrics.recordHedge(provider, model, FIRED);
+            CompletableFuture<HttpResponse<InputStream>> hedge = providerTransport.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+            HttpResponse<InputStream> response = null;
+            try {
+                response = await(firstSuccess(primary, hedge), deadline);
+                if (hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.join() == response) {
+                    providerMetrics.recordHedge(provider, model, WON);
+                }
+                return response;
+            } finally {
+                // Whichever exchange is still running is no longer needed, and a losing body must still be closed
+                discardUnless(primary, response);
+                discardUnless(hedge, response);
+            }
+        } finally {
+            hedgePermit.get().close();
+        }
+    }
+
+    private static void discardUnless(CompletableFuture<HttpResponse<InputStream>> call, HttpResponse<InputStream> kept) {
+        call.cancel(true);
+        call.thenAccept(response -> {
+            if (response != kept) {
+                try {
+                    response.body().close();
+                } catch (IOException ignored) {
+                    // Nothing left to release
+                }
+            }
+        });
+    }
+
+    private OptionalLong hedgeDelayMs(String provider, String model) {
+        if (!hedgedProviders.contains(provider)) {
+            return OptionalLong.empty();
+        }
+        OptionalDouble p95 = providerMetrics.upstreamPercentileMs(provider, model, HEDGE_PERCENTILE, minSamples);
+        if (p95.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(Math.max(minDelayMs, (long) p95.getAsDouble()));
+    }
+
+    // Completes with the first 200; if neither call returns one, with whichever finished last
+    private static CompletableFuture<HttpResponse<InputStream>> firstSuccess(
+            CompletableFuture<HttpResponse<InputStream>> first,
+            CompletableFuture<HttpResponse<InputStream>> second) {
+        CompletableFuture<HttpResponse<InputStream>> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        for (CompletableFuture<HttpResponse<InputStream>> call : List.of(first, second)) {
+            call.whenComplete((response, error) -> {
+                if (error == null && response.statusCode() == 200) {
+                    result.complete(response);
+                } else if (pending.decrementAndGet() == 0) {
+                    if (error == null) {
+                        result.complete(response);
+                    } else {
+                        result.completeExceptionally(error);
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    private static HttpResponse<InputStream> await(CompletableFuture<HttpResponse<InputStream>> call, Deadline deadline) throws Exception {
+        try {
+            return call.get(deadline.remainingMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            throw new HttpTimeoutException("Request deadline exceeded");
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            call.cancel(true);
+            throw e;
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        return e.getCause() instanceof Exception cause ? cause : e;
+    }
+}
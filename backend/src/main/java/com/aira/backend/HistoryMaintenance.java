@@ -0,0 +1,85 @@
+package com.aira.backend;
+
+import java.util.Date;
+import java.util.List;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Housekeeping for the monthly-partitioned chat_history table.
+// Partitions are created months ahead so inserts never land in the default partition, and partitions past
+// the retention window are dropped or detached whole instead of deleting rows, after which content blobs no
+// row references any more are deleted. Separately, recent hours are rolled up into model_hourly_stats so
+// dashboards read a few rows per model instead of scanning raw history.
+@Component
+class HistoryMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryMaintenance.class);
+
+    @Value("${app.history.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    // 0 keeps every partition
+    @Value("${app.history.retention.months:0}")
+    private int retentionMonths;
+
+    // detach leaves expired partitions as standalone tables for archiving; drop deletes them
+    @Value("${app.history.retention.mode:detach}")
+    private String retentionMode;
+
+    // Hours recomputed on every rollup, enough to cover rows the write-behind queue delivers late
+    @Value("${app.history.rollup.lookback-hours:2}")
+    private int lookbackHours;
+
+    @Autowired
+    private ChatHistoryRepository chatHistoryRepository;
+
+    @Autowired
+    private ContentBlobRepository contentBlobRepository;
+
+    @Autowired
+    private ModelHourlyStatsRepository modelHourlyStatsRepository;
+
+    @PostConstruct
+    void init() {
+        maintainPartitions();
+    }
+
+    @Scheduled(initialDelayString = "${app.history.partitions.interval-ms:86400000}",
+               fixedDelayString = "${app.history.partitions.interval-ms:86400000}")
+    void maintainPartitions() {
+        try {
+            Integer created = chatHistoryRepository.createPartitions(monthsAhead);
+            if (created != null && created > 0) {
+                log.info("Created {} chat_history partitions", created);
+            }
+            if (retentionMonths > 0) {
+                boolean detach = !"drop".equalsIgnoreCase(retentionMode);
+                List<String> expired = chatHistoryRepository.dropPartitions(retentionMonths, detach);
+                if (!expired.isEmpty()) {
+                    log.info("{} expired chat_history partitions: {}", detach ? "Detached" : "Dropped", expired);
+                    // Detached partitions still count as references until the archived table is dropped
+                    Integer orphans = contentBlobRepository.deleteOrphans();
+                    log.info("Deleted {} orphaned content blobs", orphans);
+                }
+            }
+        } catch (Exception e) {
+            // Months ahead leave several runs of slack before inserts would fall into the default partition
+            log.error("chat_history partition maintenance failed", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.history.rollup.interval-ms:300000}")
+    void rollUp() {
+        try {
+            Date since = new Date(System.currentTimeMillis() - lookbackHours * 3_600_000L);
+            modelHourlyStatsRepository.rollUpSince(since);
+        } catch (Exception e) {
+            log.error("Hourly rollup of chat_history failed", e);
+        }
+    }
+}
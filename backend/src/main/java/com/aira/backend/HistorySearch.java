@@ -0,0 +1,194 @@
+package com.aira.backend;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Full-text search over chat history and winning answers.
+// Matching and ranking happen in Postgres on the GIN-indexed search_vector columns; only the page of hits
+// is resolved to text through ContentStore, where snippets are cut and the matched words located.
+@Service
+class HistorySearch {
+
+    private static final Logger log = LoggerFactory.getLogger(HistorySearch.class);
+
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 50;
+    // Deep pages would have to rank every match before skipping; narrow the query instead
+    static final int MAX_OFFSET = 1000;
+    static final int SNIPPET_CHARS = 240;
+    static final int BACKFILL_BATCH = 200;
+
+    private static final Pattern LEXEME = Pattern.compile("'((?:[^']|'')+)'");
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    @Autowired
+    private ChatHistoryRepository chatHistoryRepository;
+
+    @Autowired
+    private WinnerSelectionRepository winnerRepository;
+
+    @Autowired
+    private ContentStore contentStore;
+
+    // Set once a pass finds nothing left to index; rows written since then carry their vector already
+    private volatile boolean backfilled;
+
+    // source is "history" or "winners"
+    Map<String, Object> search(String source, String query, String sessionId, String modelKey, Integer page, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Query is required");
+        }
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        int pageNumber = page == null || page < 0 ? 0 : page;
+        int offset = pageNumber * pageSize;
+        if (offset > MAX_OFFSET) {
+            throw new IllegalArgumentException("Page too deep; refine the query instead");
+        }
+        String model = modelKey == null || modelKey.isBlank() ? null : modelKey;
+
+        List<ChatHistoryRepository.SearchHit> hits = switch (source) {
+            case "history" -> chatHistoryRepository.searchSession(query, sessionId, model, pageSize, offset);
+            case "winners" -> winnerRepository.searchSession(query, sessionId, model, pageSize, offset);
+            default -> throw new IllegalArgumentException("Unknown source: " + source);
+        };
+
+        List<String> hashes = new ArrayList<>(hits.size() * 2);
+        for (ChatHistoryRepository.SearchHit hit : hits) {
+            hashes.add(hit.getPromptHash());
+            hashes.add(hit.getResponseHash());
+        }
+        Map<String, String> texts = contentStore.getAll(hashes);
+        List<String> lexemes = hits.isEmpty() ? List.of() : lexemes(hits.get(0).getTerms());
+
+        List<Map<String, Object>> items = new ArrayList<>(hits.size());
+        for (ChatHistoryRepository.SearchHit hit : hits) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", hit.getId());
+            item.put("modelIdentifier", hit.getModelIdentifier());
+            item.put("modelKey", ModelIdentifiers.modelKey(hit.getModelIdentifier()));
+            item.put("createdAt", hit.getCreatedAt());
+            item.put("rank", hit.getRank());
+            item.put("prompt", snippet(texts.get(hit.getPromptHash()), lexemes));
+            item.put("response", snippet(texts.get(hit.getResponseHash()), lexemes));
+            items.add(item);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("items", items);
+        result.put("nextPage", hits.size() == pageSize && offset + pageSize <= MAX_OFFSET ? pageNumber + 1 : null);
+        return result;
+    }
+
+    // Indexes rows whose texts the V1 migration could not read (deflated blobs), a batch at a time until none remain
+    @Scheduled(fixedDelayString = "${app.search.backfill-interval-ms:60000}")
+    void backfill() {
+        if (backfilled) {
+            return;
+        }
+        try {
+            // A batch that updates nothing ends the loop, so a row that cannot be matched is not retried forever
+            int indexed = 0;
+            int updated;
+            List<ChatHistoryRepository.UnindexedRow> rows;
+            do {
+                rows = chatHistoryRepository.findUnindexed(BACKFILL_BATCH);
+                Map<String, String> texts = resolve(rows);
+                updated = 0;
+                for (ChatHistoryRepository.UnindexedRow row : rows) {
+                    updated += chatHistoryRepository.index(row.getId(), row.getCreatedAt(), document(texts, row));
+                }
+                indexed += updated;
+            } while (updated > 0);
+            do {
+                rows = winnerRepository.findUnindexed(BACKFILL_BATCH);
+                Map<String, String> texts = resolve(rows);
+                updated = 0;
+                for (ChatHistoryRepository.UnindexedRow row : rows) {
+                    updated += winnerRepository.index(row.getId(), document(texts, row));
+                }
+                indexed += updated;
+            } while (updated > 0);
+            if (indexed > 0) {
+                log.info("Indexed {} stored rows for search", indexed);
+            }
+            backfilled = true;
+        } catch (Exception e) {
+            log.error("Search index backfill failed", e);
+        }
+    }
+
+    private Map<String, String> resolve(List<ChatHistoryRepository.UnindexedRow> rows) {
+        List<String> hashes = new ArrayList<>(rows.size() * 2);
+        for (ChatHistoryRepository.UnindexedRow row : rows) {
+            hashes.add(row.getPromptHash());
+            hashes.add(row.getResponseHash());
+        }
+        return contentStore.getAll(hashes);
+    }
+
+    // Same text the entities write: prompt, newline, response
+    private static String document(Map<String, String> texts, ChatHistoryRepository.UnindexedRow row) {
+        String prompt = texts.get(row.getPromptHash());
+        String response = texts.get(row.getResponseHash());
+        return response == null ? prompt : prompt == null ? response : prompt + "\n" + response;
+    }
+
+    // querytree() renders the parsed query as e.g. 'kubernet' & 'cluster'
+    static List<String> lexemes(String terms) {
+        if (terms == null) {
+            return List.of();
+        }
+        List<String> lexemes = new ArrayList<>();
+        Matcher matcher = LEXEME.matcher(terms);
+        while (matcher.find()) {
+            lexemes.add(matcher.group(1).replace("''", "'"));
+        }
+        return lexemes;
+    }
+
+    // Window of text around the first matched word, with [start, end) offsets of every matched word in it.
+    // Lexemes are stems, so a word matches when it starts with one ("kubernetes" for 'kubernet').
+    // Offsets rather than markup keep the text safe to render as-is.
+    static Map<String, Object> snippet(String text, List<String> lexemes) {
+        if (text == null) {
+            return null;
+        }
+        List<int[]> matches = new ArrayList<>();
+        Matcher words = WORD.matcher(text);
+        while (words.find()) {
+            String word = words.group().toLowerCase(Locale.ROOT);
+            for (String lexeme : lexemes) {
+                if (word.startsWith(lexeme)) {
+                    matches.add(new int[] { words.start(), words.end() });
+                    break;
+                }
+            }
+        }
+
+        int start = 0;
+        if (!matches.isEmpty() && text.length() > SNIPPET_CHARS) {
+            start = Math.max(0, Math.min(matches.get(0)[0] - SNIPPET_CHARS / 4, text.length() - SNIPPET_CHARS));
+        }
+        int end = Math.min(text.length(), start + SNIPPET_CHARS);
+
+        List<List<Integer>> highlights = new ArrayList<>();
+        for (int[] match : matches) {
+            if (match[0] >= start && match[1] <= end) {
+                highlights.add(List.of(match[0] - start, match[1] - start));
+            }
+        }
+
+        Map<String, Object> snippet = new LinkedHashMap<>();
+        snippet.put("text", text.substring(start, end));
+        snippet.put("truncatedStart", start > 0);
+        snippet.put("truncatedEnd", end < text.length());
+        snippet.put("highlights", highlights);
+        return snippet;
+    }
+}
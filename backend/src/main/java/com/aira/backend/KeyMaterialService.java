@@ -0,0 +1,145 @@
+package com.aira.backend;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Encrypts and decrypts provider API keys off the request hot path.
+// Key material is derived once at startup, Cipher instances are pooled, and recently decrypted keys are held
+// in a small short-lived cache per (session, provider) so repeated calls skip the crypto entirely.
+@Service
+class KeyMaterialService {
+
+    // New ciphertexts are AES-GCM and carry this prefix; anything else is the legacy AES/ECB format
+    private static final String GCM_PREFIX = "gcm:";
+    private static final int GCM_IV_BYTES = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    // Calls run on virtual threads, so ThreadLocal ciphers would never be reused; a shared pool is
+    private static final int CIPHER_POOL_SIZE = 64;
+
+    @Value("${app.encryption.key:YourSecretKey12345}")
+    private String encryptionKey;
+
+    @Value("${app.encryption.key-cache.ttl-seconds:300}")
+    private long keyCacheTtlSeconds;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final BlockingQueue<Cipher> gcmCiphers = new ArrayBlockingQueue<>(CIPHER_POOL_SIZE);
+    private final BlockingQueue<Cipher> legacyCiphers = new ArrayBlockingQueue<>(CIPHER_POOL_SIZE);
+    private final LinkedHashMap<String, DecryptedKey> decryptedKeys;
+
+    private SecretKeySpec gcmKey;
+    private SecretKeySpec legacyKey;
+
+    KeyMaterialService(@Value("${app.encryption.key-cache.max-entries:1000}") int maxCachedKeys) {
+        this.decryptedKeys = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DecryptedKey> eldest) {
+                return size() > maxCachedKeys;
+            }
+        };
+    }
+
+    private record DecryptedKey(String encrypted, String plain, long expiresAt) {}
+
+    @PostConstruct
+    void deriveKeys() throws GeneralSecurityException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(encryptionKey.getBytes(StandardCharsets.UTF_8));
+        gcmKey = new SecretKeySpec(digest, "AES");
+        legacyKey = new SecretKeySpec(padKey(encryptionKey).getBytes(), "AES");
+    }
+
+    String encrypt(String data) throws GeneralSecurityException {
+        byte[] iv = new byte[GCM_IV_BYTES];
+        secureRandom.nextBytes(iv);
+
+        Cipher cipher = borrow(gcmCiphers, "AES/GCM/NoPadding");
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, gcmKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            byte[] sealed = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            byte[] payload = ByteBuffer.allocate(iv.length + sealed.length).put(iv).put(sealed).array();
+            return GCM_PREFIX + Base64.getEncoder().encodeToString(payload);
+        } finally {
+            gcmCiphers.offer(cipher);
+        }
+    }
+
+    String decrypt(String encryptedData) throws GeneralSecurityException {
+        if (encryptedData.startsWith(GCM_PREFIX)) {
+            byte[] payload = Base64.getDecoder().decode(encryptedData.substring(GCM_PREFIX.length()));
+            Cipher cipher = borrow(gcmCiphers, "AES/GCM/NoPadding");
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, gcmKey, new GCMParameterSpec(GCM_TAG_BITS, payload, 0, GCM_IV_BYTES));
+                byte[] plain = cipher.doFinal(payload, GCM_IV_BYTES, payload.length - GCM_IV_BYTES);
+                return new String(plain, StandardCharsets.UTF_8);
+            } finally {
+                gcmCiphers.offer(cipher);
+            }
+        }
+
+        // Keys saved before the switch to GCM
+        Cipher cipher = borrow(legacyCiphers, "AES/ECB/PKCS5Padding");
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, legacyKey);
+            return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedData)));
+        } finally {
+            legacyCiphers.offer(cipher);
+        }
+    }
+
+    // Same as decrypt, but reuses the plain key for this session and provider while it is fresh
+    String decryptForSession(String sessionId, String provider, String encryptedData) throws GeneralSecurityException {
+        if (sessionId == null || provider == null) {
+            return decrypt(encryptedData);
+        }
+
+        String cacheKey = cacheKey(sessionId, provider);
+        long now = System.currentTimeMillis();
+        synchronized (decryptedKeys) {
+            DecryptedKey cached = decryptedKeys.get(cacheKey);
+            if (cached != null && cached.expiresAt() > now && cached.encrypted().equals(encryptedData)) {
+                return cached.plain();
+            }
+        }
+
+        String plain = decrypt(encryptedData);
+        synchronized (decryptedKeys) {
+            decryptedKeys.put(cacheKey, new DecryptedKey(encryptedData, plain, now + keyCacheTtlSeconds * 1000));
+        }
+        return plain;
+    }
+
+    void evict(String sessionId, String provider) {
+        synchronized (decryptedKeys) {
+            decryptedKeys.remove(cacheKey(sessionId, provider));
+        }
+    }
+
+    private Cipher borrow(BlockingQueue<Cipher> pool, String transformation) throws GeneralSecurityException {
+        Cipher cipher = pool.poll();
+        return cipher != null ? cipher : Cipher.getInstance(transformation);
+    }
+
+    private String cacheKey(String sessionId, String provider) {
+        return sessionId + '\u0000' + provider.toLowerCase();
+    }
+
+    private String padKey(String key) {
+        if (key.length() >= 16) {
+            return key.substring(0, 16);
+        }
+        return String.format("%-16s", key).replace(' ', '0');
+    }
+}
@@ -0,0 +1,93 @@
+package com.aira.backend;
+
+// Mergeable quantile sketch for response times, in the style of DDSketch.
+// Values fall into logarithmic bins whose width grows with the value, so any quantile comes back within
+// RELATIVE_ACCURACY of the true sample. Two sketches merge by adding bin counts, which is what lets
+// per-slot sketches be combined into hour, day and week windows without keeping raw samples.
+// Not thread-safe; ModelAnalytics guards each one.
+final class LatencySketch {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // Values are clamped to [1 ms, 1 day], which bounds a sketch at about 570 bins
+    private static final long MIN_MS = 1;
+    private static final long MAX_MS = 86_400_000L;
+
+    private int[] bins = new int[0];
+    // Bin index of bins[0]
+    private int offset;
+    private long count;
+
+    void add(long millis) {
+        int index = index(Math.max(MIN_MS, Math.min(MAX_MS, millis)));
+        ensureRange(index, index);
+        bins[index - offset]++;
+        count++;
+    }
+
+    void merge(LatencySketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        ensureRange(other.offset, other.offset + other.bins.length - 1);
+        for (int i = 0; i < other.bins.length; i++) {
+            bins[other.offset + i - offset] += other.bins[i];
+        }
+        count += other.count;
+    }
+
+    long count() {
+        return count;
+    }
+
+    // q in [0, 1]; NaN when the sketch is empty
+    double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        long seen = 0;
+        for (int i = 0; i < bins.length; i++) {
+            seen += bins[i];
+            if (seen > rank) {
+                return value(offset + i);
+            }
+        }
+        return value(offset + bins.length - 1);
+    }
+
+    void clear() {
+        bins = new int[0];
+        offset = 0;
+        count = 0;
+    }
+
+    private static int index(long millis) {
+        return (int) Math.ceil(Math.log(millis) / LOG_GAMMA);
+    }
+
+    // Midpoint of the bin (in relative terms), which is what keeps the error within RELATIVE_ACCURACY
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    private void ensureRange(int low, int high) {
+        if (bins.length == 0) {
+            bins = new int[high - low + 1];
+            offset = low;
+            return;
+        }
+        int currentHigh = offset + bins.length - 1;
+        if (low >= offset && high <= currentHigh) {
+            return;
+        }
+        int newLow = Math.min(low, offset);
+        int newHigh = Math.max(high, currentHigh);
+        int[] grown = new int[newHigh - newLow + 1];
+        System.arraycopy(bins, 0, grown, offset - newLow, bins.length);
+        bins = grown;
+        offset = newLow;
+    }
+}
@@ -0,0 +1,103 @@
+package com.aira.backend;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Live win/appearance counts per model.
+// Counters are striped LongAdders, so recording never contends between request threads.
+// Deltas are checkpointed to model_leaderboard on a schedule and the totals are reloaded from it at startup.
+@Component
+class Leaderboard {
+
+    private static final Logger log = LoggerFactory.getLogger(Leaderboard.class);
+
+    @Autowired
+    private LeaderboardRepository leaderboardRepository;
+
+    private final Map<String, ModelCounters> counters = new ConcurrentHashMap<>();
+
+    private static final class ModelCounters {
+        final LongAdder wins = new LongAdder();
+        final LongAdder appearances = new LongAdder();
+        // Totals already written to model_leaderboard; only touched by the checkpoint
+        long checkpointedWins;
+        long checkpointedAppearances;
+    }
+
+    @PostConstruct
+    void restore() {
+        for (LeaderboardEntry entry : leaderboardRepository.findAll()) {
+            ModelCounters modelCounters = counters(entry.getModelKey());
+            modelCounters.wins.add(entry.getWins());
+            modelCounters.appearances.add(entry.getAppearances());
+            modelCounters.checkpointedWins = entry.getWins();
+            modelCounters.checkpointedAppearances = entry.getAppearances();
+        }
+    }
+
+    void recordWin(String modelIdentifier) {
+        counters(ModelIdentifiers.modelKey(modelIdentifier)).wins.increment();
+    }
+
+    void recordAppearance(String modelIdentifier) {
+        counters(ModelIdentifiers.modelKey(modelIdentifier)).appearances.increment();
+    }
+
+    List<Map<String, Object>> standings() {
+        List<Map<String, Object>> standings = new ArrayList<>(counters.size());
+        for (Map.Entry<String, ModelCounters> entry : counters.entrySet()) {
+            long wins = entry.getValue().wins.sum();
+            long appearances = entry.getValue().appearances.sum();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("model", entry.getKey());
+            row.put("wins", wins);
+            row.put("appearances", appearances);
+            row.put("winRate", appearances == 0 ? 0.0 : (double) wins / appearances);
+            standings.add(row);
+        }
+        standings.sort(Comparator
+            .comparingLong((Map<String, Object> row) -> (Long) row.get("wins")).reversed()
+            .thenComparing(row -> (String) row.get("model")));
+        return standings;
+    }
+
+    @Scheduled(fixedDelayString = "${app.leaderboard.checkpoint-interval-ms:30000}")
+    public synchronized void checkpoint() {
+        for (Map.Entry<String, ModelCounters> entry : counters.entrySet()) {
+            ModelCounters modelCounters = entry.getValue();
+            long wins = modelCounters.wins.sum();
+            long appearances = modelCounters.appearances.sum();
+            long winsDelta = wins - modelCounters.checkpointedWins;
+            long appearancesDelta = appearances - modelCounters.checkpointedAppearances;
+            if (winsDelta == 0 && appearancesDelta == 0) {
+                continue;
+            }
+
+            try {
+                leaderboardRepository.addCounts(entry.getKey(), winsDelta, appearancesDelta);
+                modelCounters.checkpointedWins = wins;
+                modelCounters.checkpointedAppearances = appearances;
+            } catch (Exception e) {
+                // Deltas stay pending and go out with the next checkpoint
+                log.error("Failed to checkpoint leaderboard for {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void flush() {
+        checkpoint();
+    }
+
+    private ModelCounters counters(String modelKey) {
+        return counters.computeIfAbsent(modelKey, key -> new ModelCounters());
+    }
+}
@@ -0,0 +1,36 @@
+package com.aira.backend;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+// LeaderboardEntry Entity (checkpointed aggregate of the in-memory leaderboard counters)
+@Entity
+@Table(name = "model_leaderboard")
+class LeaderboardEntry {
+    @Id
+    @Column(name = "model_key", nullable = false)
+    private String modelKey;
+    
+    @Column(nullable = false)
+    private long wins;
+    
+    @Column(nullable = false)
+    private long appearances;
+    
+    @Column(name = "updated_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt = new Date();
+    
+    // Getters and Setters
+    public String getModelKey() { return modelKey; }
+    public void setModelKey(String modelKey) { this.modelKey = modelKey; }
+    
+    public long getWins() { return wins; }
+    public void setWins(long wins) { this.wins = wins; }
+    
+    public long getAppearances() { return appearances; }
+    public void setAppearances(long appearances) { this.appearances = appearances; }
+    
+    public Date getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,26 @@
+package com.aira.backend;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+interface LeaderboardRepository extends JpaRepository<LeaderboardEntry, String> {
+    
+    // Adds deltas rather than overwriting, so several backend instances can checkpoint into the same table
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO model_leaderboard (model_key, wins, appearances, updated_at) " +
+                   "VALUES (:modelKey, :wins, :appearances, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (model_key) DO UPDATE SET " +
+                   "wins = model_leaderboard.wins + EXCLUDED.wins, " +
+                   "appearances = model_leaderboard.appearances + EXCLUDED.appearances, " +
+                   "updated_at = CURRENT_TIMESTAMP",
+           nativeQuery = true)
+    void addCounts(@Param("modelKey") String modelKey,
+                   @Param("wins") long wins,
+                   @Param("appearances") long appearances);
+}
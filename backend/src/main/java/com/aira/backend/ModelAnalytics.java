@@ -0,0 +1,167 @@
+package com.aira.backend;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+
+// Win rate, appearances and response time percentiles per model over the last hour, day and week.
+// Each window is a ring of time slots (5 minutes, 1 hour, 1 day) holding counters and a LatencySketch.
+// Recording touches the current slot of each ring; a query merges at most 24 slots, so its cost does not
+// depend on how much history exists. Windows slide one slot at a time. The aggregates live in memory and
+// start empty, so after a restart the longer windows fill up as traffic arrives.
+@Component
+class ModelAnalytics {
+
+    static final List<String> WINDOWS = List.of("hour", "day", "week");
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final Map<String, Resolution> RESOLUTIONS = Map.of(
+        "hour", new Resolution(5 * MINUTE_MS, 12),
+        "day", new Resolution(60 * MINUTE_MS, 24),
+        "week", new Resolution(24 * 60 * MINUTE_MS, 7)
+    );
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    private record Resolution(long slotMillis, int slots) {}
+
+    // A served reply. Cached replies count as appearances but would skew latency, so they add no sample.
+    void recordReply(String modelIdentifier, long responseTimeMs, boolean cached) {
+        recordReply(modelIdentifier, responseTimeMs, cached, System.currentTimeMillis());
+    }
+
+    void recordReply(String modelIdentifier, long responseTimeMs, boolean cached, long now) {
+        Series modelSeries = series(modelIdentifier);
+        synchronized (modelSeries) {
+            for (Ring ring : modelSeries.rings.values()) {
+                Slot slot = ring.current(now);
+                slot.appearances++;
+                if (!cached) {
+                    slot.latency.add(responseTimeMs);
+                }
+            }
+        }
+    }
+
+    void recordWin(String modelIdentifier) {
+        recordWin(modelIdentifier, System.currentTimeMillis());
+    }
+
+    void recordWin(String modelIdentifier, long now) {
+        Series modelSeries = series(modelIdentifier);
+        synchronized (modelSeries) {
+            for (Ring ring : modelSeries.rings.values()) {
+                ring.current(now).wins++;
+            }
+        }
+    }
+
+    // One row per model with activity in the window; modelKey narrows it to one model
+    List<Map<String, Object>> window(String window, String modelKey) {
+        return window(window, modelKey, System.currentTimeMillis());
+    }
+
+    List<Map<String, Object>> window(String window, String modelKey, long now) {
+        if (!RESOLUTIONS.containsKey(window)) {
+            throw new IllegalArgumentException("Unknown window: " + window + " (expected one of " + WINDOWS + ")");
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            if (modelKey != null && !modelKey.isBlank() && !modelKey.equals(entry.getKey())) {
+                continue;
+            }
+
+            long wins = 0;
+            long appearances = 0;
+            LatencySketch latency = new LatencySketch();
+            Series modelSeries = entry.getValue();
+            synchronized (modelSeries) {
+                Ring ring = modelSeries.rings.get(window);
+                for (Slot slot : ring.live(now)) {
+                    wins += slot.wins;
+                    appearances += slot.appearances;
+                    latency.merge(slot.latency);
+                }
+            }
+            if (appearances == 0 && wins == 0) {
+                continue;
+            }
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("model", entry.getKey());
+            row.put("appearances", appearances);
+            row.put("wins", wins);
+            row.put("winRate", appearances == 0 ? 0.0 : (double) wins / appearances);
+            row.put("latencySamples", latency.count());
+            row.put("p50ResponseTimeMs", percentile(latency, 0.50));
+            row.put("p95ResponseTimeMs", percentile(latency, 0.95));
+            rows.add(row);
+        }
+        rows.sort(Comparator.comparing(row -> (String) row.get("model")));
+        return rows;
+    }
+
+    private static Long percentile(LatencySketch sketch, double q) {
+        return sketch.count() == 0 ? null : Math.round(sketch.quantile(q));
+    }
+
+    private Series series(String modelIdentifier) {
+        return series.computeIfAbsent(ModelIdentifiers.modelKey(modelIdentifier), key -> new Series());
+    }
+
+    private static final class Series {
+        final Map<String, Ring> rings = new HashMap<>();
+
+        Series() {
+            RESOLUTIONS.forEach((window, resolution) -> rings.put(window, new Ring(resolution)));
+        }
+    }
+
+    private static final class Ring {
+        final Resolution resolution;
+        final Slot[] slots;
+
+        Ring(Resolution resolution) {
+            this.resolution = resolution;
+            this.slots = new Slot[resolution.slots()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new Slot();
+            }
+        }
+
+        // The slot for now, reset first if it still holds data from a previous lap of the ring
+        Slot current(long now) {
+            long epoch = now / resolution.slotMillis();
+            Slot slot = slots[(int) (epoch % slots.length)];
+            if (slot.epoch != epoch) {
+                slot.reset(epoch);
+            }
+            return slot;
+        }
+
+        List<Slot> live(long now) {
+            long epoch = now / resolution.slotMillis();
+            List<Slot> live = new ArrayList<>(slots.length);
+            for (Slot slot : slots) {
+                if (slot.epoch > epoch - slots.length && slot.epoch <= epoch) {
+                    live.add(slot);
+                }
+            }
+            return live;
+        }
+    }
+
+    private static final class Slot {
+        long epoch = -1;
+        long wins;
+        long appearances;
+        final LatencySketch latency = new LatencySketch();
+
+        void reset(long epoch) {
+            this.epoch = epoch;
+            wins = 0;
+            appearances = 0;
+            latency.clear();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.aira.backend;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.regex.Pattern;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Models offered per provider, served by GET /api/models and used to validate model identifiers.
+// Each refresh builds a new immutable snapshot (built-in lists, then app.models.catalog-file, then whatever
+// the providers' own /models endpoints return) and swaps it in with one volatile write, so readers never lock.
+@Component
+class ModelCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelCatalog.class);
+
+    private static final Map<String, List<String>> DEFAULT_MODELS = Map.of(
+        "openai", List.of("gpt-4o", "gpt-4o-mini", "gpt-4-turbo", "gpt-4", "gpt-3.5-turbo", "gpt-3.5-turbo-16k"),
+        "claude", List.of("claude-sonnet-4-20250514", "claude-opus-4-20250514", "claude-3-5-sonnet-20241022",
+            "claude-3-opus-20240229", "claude-3-sonnet-20240229", "claude-3-haiku-20240307"),
+        "cohere", List.of("command-a-03-2025", "command-r7b-12-2024", "command-a-translate-08-2025",
+            "command-a-reasoning-08-2025", "command-a-vision-07-2025", "command-r-08-2024", "command-r-plus-08-2024",
+            "command-r-03-2024"),
+        "copilot", List.of("gpt-4-turbo", "gpt-4"),
+        "deepseek", List.of("deepseek-chat", "deepseek-coder"),
+        "gemini", List.of("gemini-2.0-flash-exp", "gemini-1.5-pro", "gemini-1.5-flash", "gemini-1.0-pro"),
+        "grok", List.of("grok-beta", "grok-vision-beta"),
+        "llama", List.of("llama-3.3-70b-instruct", "llama-3.1-405b-instruct", "llama-3.1-70b-instruct",
+            "llama-3.1-8b-instruct", "llama-3-70b-instruct", "llama-3-8b-instruct"),
+        "mistral", List.of("mistral-large-latest", "mistral-medium-latest", "mistral-small-latest",
+            "mixtral-8x7b-instruct", "mixtral-8x22b-instruct"),
+        "qwen", List.of("qwen-turbo", "qwen-plus", "qwen-max", "qwen2.5-72b-instruct", "qwen2.5-7b-instruct")
+    );
+
+    // Providers whose model listing API we know how to read
+    private static final Set<String> LISTABLE = Set.of("openai", "claude", "gemini", "cohere", "deepseek", "grok", "mistral");
+
+    @Value("${app.models.catalog-file:}")
+    private String catalogFile;
+
+    @Value("${app.models.validate:true}")
+    private boolean validate;
+
+    @Value("${app.models.refresh.exclude-pattern:.*(embed|whisper|tts|dall-e|moderation|davinci|babbage|audio|realtime|transcribe|image|search).*}")
+    private String excludePattern;
+
+    @Autowired
+    private ProviderTransport providerTransport;
+
+    @Autowired
+    private ProviderEndpoints providerEndpoints;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> refreshKeys = new HashMap<>();
+
+    private volatile Snapshot snapshot;
+
+    ModelCatalog(@Value("${app.models.refresh.api-keys:}") List<String> apiKeys) {
+        // Entries look like "openai=sk-..."; only providers with a server-side key are listed live
+        for (String apiKey : apiKeys) {
+            int separator = apiKey.indexOf('=');
+            if (separator > 0) {
+                refreshKeys.put(apiKey.substring(0, separator).trim().toLowerCase(), apiKey.substring(separator + 1).trim());
+            }
+        }
+    }
+
+    // providers is sorted by name, so equal catalogs serialize, and hash, identically
+    record Snapshot(Map<String, List<String>> providers, Set<String> modelKeys, String etag, long updatedAt) {}
+
+    @PostConstruct
+    void load() {
+        swap(build(false));
+    }
+
+    @Scheduled(initialDelayString = "${app.models.refresh-interval-ms:21600000}",
+               fixedDelayString = "${app.models.refresh-interval-ms:21600000}")
+    void refresh() {
+        swap(build(true));
+    }
+
+    Snapshot snapshot() {
+        return snapshot;
+    }
+
+    List<String> models(String provider) {
+        return snapshot.providers().getOrDefault(provider.toLowerCase(), List.of());
+    }
+
+    // One hash lookup; always true when validation is switched off
+    boolean contains(String provider, String model) {
+        return !validate || snapshot.modelKeys().contains(provider.toLowerCase() + "-" + model);
+    }
+
+    private void swap(Map<String, List<String>> providers) {
+        Snapshot current = snapshot;
+        if (current != null && current.providers().equals(providers)) {
+            return;
+        }
+        Set<String> modelKeys = new HashSet<>();
+        providers.forEach((provider, models) -> models.forEach(model -> modelKeys.add(provider + "-" + model)));
+        snapshot = new Snapshot(providers, Set.copyOf(modelKeys), etag(providers), System.currentTimeMillis());
+        log.info("Model catalog updated: {} models across {} providers", modelKeys.size(), providers.size());
+    }
+
+    private Map<String, List<String>> build(boolean live) {
+        Map<String, List<String>> providers = new TreeMap<>(DEFAULT_MODELS);
+        providers.putAll(readCatalogFile());
+        if (live) {
+            for (Map.Entry<String, String> refreshKey : refreshKeys.entrySet()) {
+                List<String> listed = listModels(refreshKey.getKey(), refreshKey.getValue());
+                // A failed or empty listing keeps the previous source's list rather than emptying the provider
+                if (!listed.isEmpty()) {
+                    providers.put(refreshKey.getKey(), listed);
+                }
+            }
+        }
+        providers.replaceAll((provider, models) -> List.copyOf(models));
+        return Collections.unmodifiableMap(providers);
+    }
+
+    // JSON object of provider -> model list, e.g. {"openai": ["gpt-4o", "o3-mini"]}
+    private Map<String, List<String>> readCatalogFile() {
+        if (catalogFile == null || catalogFile.isBlank()) {
+            return Map.of();
+        }
+        try {
+            Map<String, List<String>> models = objectMapper.readValue(new File(catalogFile.trim()),
+                new TypeReference<Map<String, List<String>>>() {});
+            Map<String, List<String>> normalized = new HashMap<>();
+            models.forEach((provider, list) -> normalized.put(provider.toLowerCase(), list));
+            return normalized;
+        } catch (IOException e) {
+            log.warn("Could not read model catalog file {}: {}", catalogFile, e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private List<String> listModels(String provider, String apiKey) {
+        if (!LISTABLE.contains(provider)) {
+            return List.of();
+        }
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder().GET().timeout(Duration.ofSeconds(30));
+            String itemsField = "data";
+            String idField = "id";
+            switch (provider) {
+                case "claude" -> request.uri(URI.create(providerEndpoints.url(provider, "/v1/models?limit=1000")))
+                    .header("x-api-key", apiKey)
+                    .header("anthropic-version", "2023-06-01");
+                case "gemini" -> {
+                    request.uri(URI.create(providerEndpoints.url(provider, "/v1beta/models?pageSize=1000&key=" + apiKey)));
+                    itemsField = "models";
+                    idField = "name";
+                }
+                case "cohere" -> {
+                    request.uri(URI.create(providerEndpoints.url(provider, "/v1/models?endpoint=chat&page_size=1000")))
+                        .header("Authorization", "Bearer " + apiKey);
+                    itemsField = "models";
+                    idField = "name";
+                }
+                default -> request.uri(URI.create(providerEndpoints.url(provider, "/v1/models")))
+                    .header("Authorization", "Bearer " + apiKey);
+            }
+
+            HttpResponse<String> response = providerTransport.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                log.warn("Listing {} models failed with status {}", provider, response.statusCode());
+                return List.of();
+            }
+
+            Pattern excluded = Pattern.compile(excludePattern);
+            List<String> models = new ArrayList<>();
+            for (JsonNode item : objectMapper.readTree(response.body()).path(itemsField)) {
+                String id = item.path(idField).asText();
+                // Gemini names look like "models/gemini-1.5-pro"
+                if (id.startsWith("models/")) {
+                    id = id.substring("models/".length());
+                }
+                if (!id.isEmpty() && !excluded.matcher(id).matches()) {
+                    models.add(id);
+                }
+            }
+            Collections.sort(models);
+            return models;
+        } catch (Exception e) {
+            log.warn("Listing {} models failed: {}", provider, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private String etag(Map<String, List<String>> providers) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(objectMapper.writeValueAsString(providers).getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.aira.backend;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Objects;
+
+// ModelHourlyStats Entity (per model and hour rollup of chat_history, maintained by HistoryMaintenance)
+@Entity
+@Table(name = "model_hourly_stats")
+@IdClass(ModelHourlyStats.Key.class)
+class ModelHourlyStats {
+    @Id
+    @Column(name = "hour_start", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date hourStart;
+    
+    @Id
+    @Column(name = "model_key", nullable = false)
+    private String modelKey;
+    
+    @Column(nullable = false)
+    private long calls;
+    
+    // Calls that produced a stored reply
+    @Column(nullable = false)
+    private long replies;
+    
+    // Calls with a recorded response time, the divisor for the average
+    @Column(name = "timed_calls", nullable = false)
+    private long timedCalls;
+    
+    @Column(name = "total_response_time_ms", nullable = false)
+    private long totalResponseTimeMs;
+    
+    @Column(name = "max_response_time_ms")
+    private Integer maxResponseTimeMs;
+    
+    @Column(name = "updated_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt;
+    
+    static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        private Date hourStart;
+        private String modelKey;
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key
+                && Objects.equals(hourStart, key.hourStart) && Objects.equals(modelKey, key.modelKey);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(hourStart, modelKey);
+        }
+    }
+    
+    // Getters and Setters
+    public Date getHourStart() { return hourStart; }
+    public void setHourStart(Date hourStart) { this.hourStart = hourStart; }
+    
+    public String getModelKey() { return modelKey; }
+    public void setModelKey(String modelKey) { this.modelKey = modelKey; }
+    
+    public long getCalls() { return calls; }
+    public void setCalls(long calls) { this.calls = calls; }
+    
+    public long getReplies() { return replies; }
+    public void setReplies(long replies) { this.replies = replies; }
+    
+    public long getTimedCalls() { return timedCalls; }
+    public void setTimedCalls(long timedCalls) { this.timedCalls = timedCalls; }
+    
+    public long getTotalResponseTimeMs() { return totalResponseTimeMs; }
+    public void setTotalResponseTimeMs(long totalResponseTimeMs) { this.totalResponseTimeMs = totalResponseTimeMs; }
+    
+    public Integer getMaxResponseTimeMs() { return maxResponseTimeMs; }
+    public void setMaxResponseTimeMs(Integer maxResponseTimeMs) { this.maxResponseTimeMs = maxResponseTimeMs; }
+    
+    public Date getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
+}
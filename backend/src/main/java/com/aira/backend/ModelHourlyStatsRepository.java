@@ -0,0 +1,36 @@
+package com.aira.backend;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+interface ModelHourlyStatsRepository extends JpaRepository<ModelHourlyStats, ModelHourlyStats.Key> {
+    List<ModelHourlyStats> findByHourStartGreaterThanEqualOrderByHourStartAscModelKeyAsc(Date since);
+    List<ModelHourlyStats> findByModelKeyAndHourStartGreaterThanEqualOrderByHourStartAsc(String modelKey, Date since);
+    
+    // Recomputes every hour from the one containing :since onwards. Whole hours are rebuilt from chat_history
+    // and overwrite what was there, so reruns and several backend instances converge on the same numbers.
+    // Replies served from the reply cache are not provider calls and are left out.
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO model_hourly_stats (hour_start, model_key, calls, replies, timed_calls, " +
+                   "total_response_time_ms, max_response_time_ms, updated_at) " +
+                   "SELECT date_trunc('hour', h.created_at), h.model_key, count(*), count(h.response_hash), " +
+                   "count(h.response_time_ms), COALESCE(sum(h.response_time_ms), 0), max(h.response_time_ms), " +
+                   "CURRENT_TIMESTAMP FROM chat_history h " +
+                   "WHERE h.created_at >= date_trunc('hour', CAST(:since AS timestamp)) AND h.model_key IS NOT NULL " +
+                   "AND NOT h.cached " +
+                   "GROUP BY 1, 2 " +
+                   "ON CONFLICT (hour_start, model_key) DO UPDATE SET " +
+                   "calls = EXCLUDED.calls, replies = EXCLUDED.replies, timed_calls = EXCLUDED.timed_calls, " +
+                   "total_response_time_ms = EXCLUDED.total_response_time_ms, " +
+                   "max_response_time_ms = EXCLUDED.max_response_time_ms, updated_at = CURRENT_TIMESTAMP",
+           nativeQuery = true)
+    int rollUpSince(@Param("since") Date since);
+}
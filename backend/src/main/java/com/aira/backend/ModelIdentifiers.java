@@ -0,0 +1,43 @@
+package com.aira.backend;
+
+import java.util.regex.Pattern;
+
+// Parsing helpers for the frontend's model identifiers.
+// Format: provider-model-suffix, e.g. "openai-gpt-4o-17342870000000k3j9x" (timestamp, panel index and a random
+// tag run together). Older frontends sent them dash-separated, "openai-gpt-4o-1734287000000-0-k3j9x"; those
+// are folded into the single suffix first so they parse the same way.
+final class ModelIdentifiers {
+
+    private static final Pattern LEGACY_SUFFIX = Pattern.compile("-(\\d{13,})-(\\d+)-([0-9a-z]*)$");
+
+    private ModelIdentifiers() {
+    }
+
+    static String provider(String modelIdentifier) {
+        return modelIdentifier.split("-")[0];
+    }
+
+    static String modelName(String modelIdentifier) {
+        String[] parts = LEGACY_SUFFIX.matcher(modelIdentifier).replaceFirst("-$1$2$3").split("-");
+        
+        if (parts.length < 3) {
+            return modelIdentifier;
+        }
+        
+        // Remove provider (first part) and panel suffix (last part)
+        StringBuilder modelName = new StringBuilder();
+        for (int i = 1; i < parts.length - 1; i++) {
+            if (i > 1) {
+                modelName.append("-");
+            }
+            modelName.append(parts[i]);
+        }
+        
+        return modelName.toString();
+    }
+
+    // Collapses the per-panel suffix so every panel of the same model shares one key, e.g. "openai-gpt-4o"
+    static String modelKey(String modelIdentifier) {
+        return provider(modelIdentifier).toLowerCase() + "-" + modelName(modelIdentifier);
+    }
+}
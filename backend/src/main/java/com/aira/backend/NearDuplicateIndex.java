@@ -0,0 +1,217 @@
+package com.aira.backend;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+// In-memory index of prompt fingerprints for the reply cache's near-duplicate tier.
+// Entries live in a fixed-size ring of parallel primitive arrays (SimHash, numbers hash, model id, time and
+// the reply's content hash as four longs), about 56 bytes each with no per-entry objects. A lookup is a
+// linear XOR/popcount scan of the ring, about 50 microseconds at 100k entries.
+// The ring is filled from recent chat_history at startup and from fresh replies as they are cached.
+@Component
+class NearDuplicateIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(NearDuplicateIndex.class);
+
+    private static final int WARMUP_CHUNK = 1000;
+
+    @Value("${app.cache.enabled:false}")
+    private boolean cacheEnabled;
+
+    @Value("${app.cache.near-duplicate.enabled:false}")
+    private boolean enabled;
+
+    // 1 - differing bits / 64; 0.95 allows 3 of 64 bits to differ
+    @Value("${app.cache.near-duplicate.min-similarity:0.95}")
+    private double minSimilarity;
+
+    // Very short prompts have too few features for a stable fingerprint; they only use the exact tiers
+    @Value("${app.cache.near-duplicate.min-tokens:4}")
+    private int minTokens;
+
+    @Value("${app.cache.near-duplicate.warmup-rows:100000}")
+    private int warmupRows;
+
+    @Autowired
+    private ChatHistoryRepository chatHistoryRepository;
+
+    @Autowired
+    private ContentStore contentStore;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long[] fingerprints;
+    private final int[] numbers;
+    private final int[] models;
+    private final long[] storedAt;
+    private final long[] replyHashes;
+    private final Map<String, Integer> modelIds = new HashMap<>();
+    private int next;
+    private int size;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+
+    NearDuplicateIndex(@Value("${app.cache.near-duplicate.max-entries:100000}") int capacity) {
+        this.fingerprints = new long[capacity];
+        this.numbers = new int[capacity];
+        this.models = new int[capacity];
+        this.storedAt = new long[capacity];
+        this.replyHashes = new long[capacity * 4];
+    }
+
+    record Match(String replyHash, double similarity) {}
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    // A prompt already indexed for this model (same fingerprint) is refreshed in place rather than added again
+    void add(String modelKey, String prompt, String replyHash, long timestamp) {
+        if (!enabled || prompt == null || replyHash == null) {
+            return;
+        }
+        PromptFingerprints.Fingerprint fingerprint = PromptFingerprints.fingerprint(prompt);
+        if (fingerprint.tokens() < minTokens) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            int model = modelIds.computeIfAbsent(modelKey, key -> modelIds.size());
+            int slot = -1;
+            for (int i = 0; i < size; i++) {
+                if (fingerprints[i] == fingerprint.simHash() && models[i] == model && numbers[i] == fingerprint.numbers()) {
+                    slot = i;
+                    break;
+                }
+            }
+            if (slot >= 0 && storedAt[slot] > timestamp) {
+                // Warm-up adds older rows after live replies may already be in; keep the newer reply
+                return;
+            }
+            if (slot < 0) {
+                slot = next;
+                next = (next + 1) % fingerprints.length;
+                size = Math.max(size, slot + 1);
+            }
+            fingerprints[slot] = fingerprint.simHash();
+            numbers[slot] = fingerprint.numbers();
+            models[slot] = model;
+            storedAt[slot] = timestamp;
+            for (int part = 0; part < 4; part++) {
+                replyHashes[slot * 4 + part] = HexFormat.fromHexDigitsToLong(replyHash, part * 16, part * 16 + 16);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Most similar entry for this model stored at or after notBefore, if it clears the threshold
+    Optional<Match> match(String modelKey, String prompt, long notBefore) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        PromptFingerprints.Fingerprint fingerprint = PromptFingerprints.fingerprint(prompt);
+        if (fingerprint.tokens() < minTokens) {
+            return Optional.empty();
+        }
+
+        long started = System.nanoTime();
+        lookups.increment();
+        lock.readLock().lock();
+        try {
+            Integer model = modelIds.get(modelKey);
+            if (model == null) {
+                return Optional.empty();
+            }
+            long query = fingerprint.simHash();
+            int maxDistance = (int) Math.floor((1.0 - minSimilarity) * 64);
+            int best = -1;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                if (models[i] != model || numbers[i] != fingerprint.numbers() || storedAt[i] < notBefore) {
+                    continue;
+                }
+                int distance = Long.bitCount(fingerprints[i] ^ query);
+                if (distance < bestDistance || (distance == bestDistance && storedAt[i] > storedAt[best])) {
+                    best = i;
+                    bestDistance = distance;
+                }
+            }
+            if (best < 0 || bestDistance > maxDistance) {
+                return Optional.empty();
+            }
+
+            StringBuilder replyHash = new StringBuilder(64);
+            for (int part = 0; part < 4; part++) {
+                replyHash.append(HexFormat.of().toHexDigits(replyHashes[best * 4 + part]));
+            }
+            matches.increment();
+            return Optional.of(new Match(replyHash.toString(), 1.0 - bestDistance / 64.0));
+        } finally {
+            lock.readLock().unlock();
+            lookupNanos.add(System.nanoTime() - started);
+        }
+    }
+
+    Map<String, Object> stats() {
+        int entries;
+        lock.readLock().lock();
+        try {
+            entries = size;
+        } finally {
+            lock.readLock().unlock();
+        }
+        long count = lookups.sum();
+        return Map.of(
+            "enabled", enabled,
+            "entries", entries,
+            "capacity", fingerprints.length,
+            "minSimilarity", minSimilarity,
+            "lookups", count,
+            "matches", matches.sum(),
+            "avgLookupMicros", count == 0 ? 0.0 : lookupNanos.sum() / 1000.0 / count
+        );
+    }
+
+    // Loads the newest stored replies in the background so startup is not held up
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled || !cacheEnabled || warmupRows <= 0) {
+            return;
+        }
+        Thread.ofVirtual().name("near-duplicate-warmup").start(() -> {
+            try {
+                List<ChatHistoryRepository.StoredReply> rows =
+                    chatHistoryRepository.findRecentReplies(PageRequest.of(0, Math.min(warmupRows, fingerprints.length)));
+                // Rows come newest first; adding oldest first leaves the newest in the ring
+                for (int end = rows.size(); end > 0; end -= WARMUP_CHUNK) {
+                    List<ChatHistoryRepository.StoredReply> chunk = rows.subList(Math.max(0, end - WARMUP_CHUNK), end);
+                    List<String> hashes = new ArrayList<>(chunk.size());
+                    for (ChatHistoryRepository.StoredReply row : chunk) {
+                        hashes.add(row.getPromptHash());
+                    }
+                    Map<String, String> prompts = contentStore.getAll(hashes);
+                    for (int i = chunk.size() - 1; i >= 0; i--) {
+                        ChatHistoryRepository.StoredReply row = chunk.get(i);
+                        add(row.getModelKey(), prompts.get(row.getPromptHash()), row.getResponseHash(),
+                            row.getCreatedAt().getTime());
+                    }
+                }
+                log.info("Near-duplicate index warmed up with {} stored replies", rows.size());
+            } catch (Exception e) {
+                log.warn("Near-duplicate index warm-up failed: {}", e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package com.aira.backend;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+// Normalization and 64-bit SimHash fingerprints of prompts, for near-duplicate matching.
+// Prompts that differ only in casing, whitespace, punctuation or politeness words normalize to the same
+// tokens and get the same fingerprint; small wording changes flip only a few fingerprint bits.
+final class PromptFingerprints {
+
+    // Politeness and filler that never changes what is being asked
+    private static final Set<String> FILLER = Set.of("please", "pls", "plz", "kindly", "thanks", "thx", "ty");
+    private static final Pattern THANK_YOU = Pattern.compile("\\bthank\\s+you\\b");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern NUMBER = Pattern.compile("\\p{N}+");
+
+    private PromptFingerprints() {
+    }
+
+    record Fingerprint(long simHash, int numbers, int tokens) {}
+
+    static List<String> tokens(String prompt) {
+        String text = Normalizer.normalize(prompt, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        text = THANK_YOU.matcher(text).replaceAll(" ");
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(text)) {
+            if (!token.isEmpty() && !FILLER.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Unigrams and bigrams, so word order counts as well as vocabulary.
+    // numbers hashes the numeric tokens in order: "2+2" and "2+3" share almost every bit of the SimHash,
+    // so callers require it to match exactly.
+    static Fingerprint fingerprint(String prompt) {
+        List<String> tokens = tokens(prompt);
+        int[] weights = new int[64];
+        int numbers = 1;
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            addFeature(weights, hash64(token));
+            if (i > 0) {
+                addFeature(weights, hash64(tokens.get(i - 1) + ' ' + token));
+            }
+            if (NUMBER.matcher(token).matches()) {
+                numbers = 31 * numbers + token.hashCode();
+            }
+        }
+
+        long simHash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                simHash |= 1L << bit;
+            }
+        }
+        return new Fingerprint(simHash, numbers, tokens.size());
+    }
+
+    // 1.0 for identical fingerprints, falling by 1/64 per differing bit
+    static double similarity(long a, long b) {
+        return 1.0 - Long.bitCount(a ^ b) / 64.0;
+    }
+
+    private static void addFeature(int[] weights, long hash) {
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((hash >>> bit) & 1) != 0 ? 1 : -1;
+        }
+    }
+
+    // FNV-1a over the UTF-16 units, then the MurmurHash3 finalizer so every input bit reaches every output bit
+    private static long hash64(String feature) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < feature.length(); i++) {
+            hash ^= feature.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,72 @@
+package com.aira.backend;
+
+import java.util.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Base URL of each provider API, so calls can be pointed at a proxy or the local mock provider server.
+// Precedence: per-provider override, then app.providers.base-url-all, then the real provider.
+@Component
+class ProviderEndpoints {
+
+    private static final Map<String, String> DEFAULT_BASE_URLS = Map.of(
+        "openai", "https://api.openai.com",
+        "claude", "https://api.anthropic.com",
+        "gemini", "https://generativelanguage.googleapis.com",
+        "cohere", "https://api.cohere.ai",
+        "deepseek", "https://api.deepseek.com",
+        "grok", "https://api.x.ai",
+        "mistral", "https://api.mistral.ai",
+        "qwen", "https://dashscope.aliyuncs.com",
+        "llama", "https://api.together.xyz",
+        "copilot", "https://api.openai.com"
+    );
+
+    @Value("${app.providers.base-url-all:}")
+    private String baseUrlAll;
+
+    private final Map<String, String> overrides = new HashMap<>();
+
+    ProviderEndpoints(@Value("${app.providers.base-urls:}") List<String> baseUrls) {
+        // Entries look like "openai=http://localhost:9099"
+        for (String baseUrl : baseUrls) {
+            int separator = baseUrl.indexOf('=');
+            if (separator > 0) {
+                overrides.put(baseUrl.substring(0, separator).trim().toLowerCase(), trimSlash(baseUrl.substring(separator + 1).trim()));
+            }
+        }
+    }
+
+    String url(String provider, String path) {
+        return baseUrl(provider) + path;
+    }
+
+    String baseUrl(String provider) {
+        String key = provider.toLowerCase();
+        String override = overrides.get(key);
+        if (override != null) {
+            return override;
+        }
+        if (baseUrlAll != null && !baseUrlAll.isBlank()) {
+            return trimSlash(baseUrlAll.trim());
+        }
+        String baseUrl = DEFAULT_BASE_URLS.get(key);
+        if (baseUrl == null) {
+            throw new UnsupportedOperationException("Provider not supported: " + provider);
+        }
+        return baseUrl;
+    }
+
+    // Distinct base URLs of every supported provider, overrides applied
+    Set<String> baseUrls() {
+        Set<String> baseUrls = new TreeSet<>();
+        for (String provider : DEFAULT_BASE_URLS.keySet()) {
+            baseUrls.add(baseUrl(provider));
+        }
+        return baseUrls;
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
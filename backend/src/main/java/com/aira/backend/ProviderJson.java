@@ -0,0 +1,210 @@
+package com.aira.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Component;
+
+// Request encoding and response decoding for the provider APIs.
+// Request bodies are small records written straight to bytes by ObjectWriters built once per shape.
+// Responses are read from the body stream with a JsonParser that descends only into the reply and usage
+// paths of each schema and skips everything else, so no String copy of the body or JsonNode tree is built.
+@Component
+class ProviderJson {
+
+    enum Schema {
+        CHAT_COMPLETIONS("/choices/0/message/content", "/usage/prompt_tokens", "/usage/completion_tokens"),
+        CLAUDE("/content/0/text", "/usage/input_tokens", "/usage/output_tokens"),
+        GEMINI("/candidates/0/content/parts/0/text", "/usageMetadata/promptTokenCount", "/usageMetadata/candidatesTokenCount"),
+        COHERE("/text", "/meta/billed_units/input_tokens", "/meta/billed_units/output_tokens"),
+        QWEN("/output/text", "/usage/input_tokens", "/usage/output_tokens");
+
+        private static final int TEXT = 0;
+        private static final int INPUT_TOKENS = 1;
+        private static final int OUTPUT_TOKENS = 2;
+
+        private final PathNode paths;
+
+        Schema(String textPointer, String inputTokensPointer, String outputTokensPointer) {
+            this.paths = PathNode.compile(textPointer, inputTokensPointer, outputTokensPointer);
+        }
+    }
+
+    // Token counts are -1 when the provider did not report them
+    record Reply(String text, long inputTokens, long outputTokens) {}
+
+    record Message(String role, String content) {}
+
+    // OpenAI-compatible APIs and Claude
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record ChatRequest(String model, List<Message> messages, @JsonProperty("max_tokens") int maxTokens, Boolean stream) {}
+
+    record GeminiRequest(List<GeminiContent> contents) {}
+
+    record GeminiContent(String role, List<GeminiPart> parts) {}
+
+    record GeminiPart(String text) {}
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record CohereRequest(String model, String message, @JsonProperty("chat_history") List<CohereMessage> chatHistory,
+                         @JsonProperty("max_tokens") int maxTokens, Boolean stream) {}
+
+    record CohereMessage(String role, String message) {}
+
+    record QwenRequest(String model, QwenInput input, QwenParameters parameters) {}
+
+    // Single prompts go in "prompt"; conversations go in "messages" instead
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record QwenInput(String prompt, List<Message> messages) {}
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record QwenParameters(@JsonProperty("max_tokens") int maxTokens,
+                          @JsonProperty("incremental_output") Boolean incrementalOutput) {}
+
+    static final int MAX_TOKENS = 1000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectWriter chatWriter = objectMapper.writerFor(ChatRequest.class);
+    private final ObjectWriter geminiWriter = objectMapper.writerFor(GeminiRequest.class);
+    private final ObjectWriter cohereWriter = objectMapper.writerFor(CohereRequest.class);
+    private final ObjectWriter qwenWriter = objectMapper.writerFor(QwenRequest.class);
+
+    // history holds the earlier turns of the conversation, oldest first, and may be empty
+    byte[] chatRequest(String model, List<ConversationWindows.Turn> history, String prompt, boolean stream)
+            throws JsonProcessingException {
+        return chatWriter.writeValueAsBytes(new ChatRequest(model, messages(history, prompt),
+            MAX_TOKENS, stream ? Boolean.TRUE : null));
+    }
+
+    byte[] geminiRequest(List<ConversationWindows.Turn> history, String prompt) throws JsonProcessingException {
+        List<GeminiContent> contents = new ArrayList<>(history.size() * 2 + 1);
+        for (ConversationWindows.Turn turn : history) {
+            contents.add(new GeminiContent("user", List.of(new GeminiPart(turn.prompt()))));
+            contents.add(new GeminiContent("model", List.of(new GeminiPart(turn.reply()))));
+        }
+        contents.add(new GeminiContent("user", List.of(new GeminiPart(prompt))));
+        return geminiWriter.writeValueAsBytes(new GeminiRequest(contents));
+    }
+
+    byte[] cohereRequest(String model, List<ConversationWindows.Turn> history, String prompt, boolean stream)
+            throws JsonProcessingException {
+        List<CohereMessage> chatHistory = null;
+        if (!history.isEmpty()) {
+            chatHistory = new ArrayList<>(history.size() * 2);
+            for (ConversationWindows.Turn turn : history) {
+                chatHistory.add(new CohereMessage("USER", turn.prompt()));
+                chatHistory.add(new CohereMessage("CHATBOT", turn.reply()));
+            }
+        }
+        return cohereWriter.writeValueAsBytes(new CohereRequest(model, prompt, chatHistory, MAX_TOKENS,
+            stream ? Boolean.TRUE : null));
+    }
+
+    byte[] qwenRequest(String model, List<ConversationWindows.Turn> history, String prompt, boolean stream)
+            throws JsonProcessingException {
+        QwenInput input = history.isEmpty()
+            ? new QwenInput(prompt, null)
+            : new QwenInput(null, messages(history, prompt));
+        return qwenWriter.writeValueAsBytes(new QwenRequest(model, input,
+            new QwenParameters(MAX_TOKENS, stream ? Boolean.TRUE : null)));
+    }
+
+    // Reads the whole body once; a missing reply decodes to "" like JsonNode.at(...).asText() did
+    Reply decode(InputStream body, Schema schema) throws IOException {
+        String[] values = new String[3];
+        try (InputStream in = body; JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != null) {
+                walk(parser, schema.paths, values);
+            }
+        }
+        String text = values[Schema.TEXT];
+        return new Reply(text == null ? "" : text,
+            count(values[Schema.INPUT_TOKENS]), count(values[Schema.OUTPUT_TOKENS]));
+    }
+
+    // Non-200 bodies are only read to put them in the error message
+    static String errorBody(InputStream body) throws IOException {
+        try (InputStream in = body) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<Message> messages(List<ConversationWindows.Turn> history, String prompt) {
+        if (history.isEmpty()) {
+            return List.of(new Message("user", prompt));
+        }
+        List<Message> messages = new ArrayList<>(history.size() * 2 + 1);
+        for (ConversationWindows.Turn turn : history) {
+            messages.add(new Message("user", turn.prompt()));
+            messages.add(new Message("assistant", turn.reply()));
+        }
+        messages.add(new Message("user", prompt));
+        return messages;
+    }
+
+    private static void walk(JsonParser parser, PathNode node, String[] values) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                PathNode child = node.fields.get(parser.currentName());
+                parser.nextToken();
+                visit(parser, child, values);
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            int index = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                visit(parser, node.indices.get(index++), values);
+            }
+        }
+    }
+
+    private static void visit(JsonParser parser, PathNode node, String[] values) throws IOException {
+        if (node == null) {
+            parser.skipChildren();
+        } else if (node.slot >= 0 && parser.currentToken().isScalarValue()) {
+            values[node.slot] = parser.getValueAsString();
+        } else {
+            walk(parser, node, values);
+        }
+    }
+
+    private static long count(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Trie of JSON pointers; a node with a slot is where a wanted value sits
+    private static final class PathNode {
+        final Map<String, PathNode> fields = new HashMap<>();
+        final Map<Integer, PathNode> indices = new HashMap<>();
+        int slot = -1;
+
+        static PathNode compile(String... pointers) {
+            PathNode root = new PathNode();
+            for (int slot = 0; slot < pointers.length; slot++) {
+                PathNode node = root;
+                for (String segment : pointers[slot].substring(1).split("/")) {
+                    node = segment.chars().allMatch(Character::isDigit)
+                        ? node.indices.computeIfAbsent(Integer.parseInt(segment), key -> new PathNode())
+                        : node.fields.computeIfAbsent(segment, key -> new PathNode());
+                }
+                node.slot = slot;
+            }
+            return root;
+        }
+    }
+}
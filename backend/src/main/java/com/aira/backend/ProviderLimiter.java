@@ -0,0 +1,302 @@
+package com.aira.backend;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Per-provider bulkhead and adaptive token bucket in front of every upstream call.
+// Each provider has its own lane (concurrency slots, a bounded wait queue and a token bucket), so a
+// stalled or throttling provider only ever blocks callers of that provider.
+// The bucket rate follows AIMD: it grows a little after each success and is cut by a factor on 429,
+// and a Retry-After from the provider closes the lane until the given time.
+@Component
+class ProviderLimiter {
+
+    @Value("${app.providers.limits.default-max-concurrent:16}")
+    private int defaultMaxConcurrent;
+
+    @Value("${app.providers.limits.default-rate-per-second:10}")
+    private double defaultRatePerSecond;
+
+    @Value("${app.providers.limits.min-rate-per-second:0.5}")
+    private double minRatePerSecond;
+
+    @Value("${app.providers.limits.rate-increase:0.1}")
+    private double rateIncrease;
+
+    @Value("${app.providers.limits.rate-decrease-factor:0.5}")
+    private double rateDecreaseFactor;
+
+    @Value("${app.providers.limits.queue-size:64}")
+    private int queueSize;
+
+    @Value("${app.providers.limits.queue-timeout-ms:10000}")
+    private long queueTimeoutMs;
+
+    @Value("${app.providers.limits.default-retry-after-ms:1000}")
+    private long defaultRetryAfterMs;
+
+    private final Map<String, Integer> maxConcurrentOverrides;
+    private final Map<String, Double> rateOverrides;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    ProviderLimiter(@Value("${app.providers.limits.max-concurrent:}") List<String> maxConcurrent,
+                    @Value("${app.providers.limits.rate-per-second:}") List<String> ratePerSecond) {
+        // Entries look like "mistral=4"
+        this.maxConcurrentOverrides = new HashMap<>();
+        for (Map.Entry<String, String> entry : parseOverrides(maxConcurrent).entrySet()) {
+            maxConcurrentOverrides.put(entry.getKey(), Integer.parseInt(entry.getValue()));
+        }
+        this.rateOverrides = new HashMap<>();
+        for (Map.Entry<String, String> entry : parseOverrides(ratePerSecond).entrySet()) {
+            rateOverrides.put(entry.getKey(), Double.parseDouble(entry.getValue()));
+        }
+    }
+
+    // Thrown when a call is shed locally or the provider answered 429; maps to HTTP 429 for the client
+    static final class LimitException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterMs;
+
+        LimitException(String message, long retryAfterMs) {
+            super(message);
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        long retryAfterMs() {
+            return retryAfterMs;
+        }
+    }
+
+    // Holds one concurrency slot until closed
+    final class Permit implements AutoCloseable {
+        private final Lane lane;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Lane lane) {
+            this.lane = lane;
+        }
+
+        // Feeds the outcome back into the lane and turns a 429 into a LimitException
+        void onResponse(int statusCode, HttpHeaders headers) {
+            if (statusCode == 429) {
+                long retryAfterMs = retryAfterMs(headers);
+                lane.throttled(retryAfterMs);
+                throw new LimitException(lane.provider + " is rate limiting requests", retryAfterMs);
+            }
+            if (statusCode == 503 && headers.firstValue("Retry-After").isPresent()) {
+                lane.throttled(retryAfterMs(headers));
+            } else if (statusCode == 200) {
+                onSuccess();
+            }
+        }
+
+        void onSuccess() {
+            lane.succeeded();
+        }
+
+        void onThrottled(long retryAfterMs) {
+            lane.throttled(retryAfterMs);
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                lane.slots.release();
+            }
+        }
+    }
+
+    Permit acquire(String provider) throws InterruptedException {
+        return acquire(provider, queueTimeoutMs);
+    }
+
+    // Waits for a concurrency slot and a rate token, but never past the queue timeout or maxWaitMs
+    Permit acquire(String provider, long maxWaitMs) throws InterruptedException {
+        Lane lane = lane(provider);
+        long waitMs = Math.min(queueTimeoutMs, maxWaitMs);
+        long deadline = System.currentTimeMillis() + waitMs;
+
+        if (!lane.slots.tryAcquire()) {
+            if (lane.waiting.incrementAndGet() > queueSize) {
+                lane.waiting.decrementAndGet();
+                lane.rejected.increment();
+                throw new LimitException(lane.provider + " queue is full", defaultRetryAfterMs);
+            }
+            try {
+                if (!lane.slots.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+                    lane.rejected.increment();
+                    throw new LimitException("Timed out waiting for a " + lane.provider + " slot", defaultRetryAfterMs);
+                }
+            } finally {
+                lane.waiting.decrementAndGet();
+            }
+        }
+
+        Permit permit = new Permit(lane);
+        try {
+            long delayMs = lane.reserveToken();
+            if (delayMs > deadline - System.currentTimeMillis()) {
+                lane.returnToken();
+                lane.rejected.increment();
+                throw new LimitException(lane.provider + " rate limit reached", delayMs);
+            }
+            if (delayMs > 0) {
+                Thread.sleep(delayMs);
+            }
+            return permit;
+        } catch (RuntimeException | InterruptedException e) {
+            permit.close();
+            throw e;
+        }
+    }
+
+    // Only succeeds when a slot and a token are free right now; used for optional extra calls such as hedges
+    Optional<Permit> tryAcquire(String provider) {
+        Lane lane = lane(provider);
+        if (!lane.slots.tryAcquire()) {
+            return Optional.empty();
+        }
+        if (!lane.tryTakeToken()) {
+            lane.slots.release();
+            return Optional.empty();
+        }
+        return Optional.of(new Permit(lane));
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> providers = new TreeMap<>();
+        for (Lane lane : lanes.values()) {
+            providers.put(lane.provider, lane.stats());
+        }
+        return providers;
+    }
+
+    private Lane lane(String provider) {
+        return lanes.computeIfAbsent(provider.toLowerCase(), key -> new Lane(key,
+            maxConcurrentOverrides.getOrDefault(key, defaultMaxConcurrent),
+            rateOverrides.getOrDefault(key, defaultRatePerSecond)));
+    }
+
+    long retryAfterMs(HttpHeaders headers) {
+        Optional<String> retryAfter = headers.firstValue("Retry-After");
+        if (retryAfter.isEmpty()) {
+            return defaultRetryAfterMs;
+        }
+        // Either delay-seconds or an HTTP-date
+        String value = retryAfter.get().trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime until = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(until.getZone()), until).toMillis());
+            } catch (DateTimeParseException ignored) {
+                return defaultRetryAfterMs;
+            }
+        }
+    }
+
+    private static Map<String, String> parseOverrides(List<String> entries) {
+        Map<String, String> overrides = new HashMap<>();
+        for (String entry : entries) {
+            String[] parts = entry.split("=");
+            if (parts.length == 2) {
+                overrides.put(parts[0].trim().toLowerCase(), parts[1].trim());
+            }
+        }
+        return overrides;
+    }
+
+    private final class Lane {
+        final String provider;
+        final int maxConcurrent;
+        final double maxRate;
+        final Semaphore slots;
+        final AtomicInteger waiting = new AtomicInteger();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder throttled = new LongAdder();
+
+        // Token bucket state, guarded by this
+        private double rate;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+        private long closedUntil;
+
+        Lane(String provider, int maxConcurrent, double ratePerSecond) {
+            this.provider = provider;
+            this.maxConcurrent = maxConcurrent;
+            this.maxRate = ratePerSecond;
+            this.slots = new Semaphore(maxConcurrent, true);
+            this.rate = ratePerSecond;
+            this.tokens = capacity();
+        }
+
+        // Takes a token, possibly going into debt, and returns how long the caller must wait for it
+        synchronized long reserveToken() {
+            refill();
+            tokens -= 1;
+            long delayMs = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate * 1000);
+            return Math.max(delayMs, closedUntil - System.currentTimeMillis());
+        }
+
+        synchronized boolean tryTakeToken() {
+            refill();
+            if (tokens < 1 || closedUntil > System.currentTimeMillis()) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        synchronized void returnToken() {
+            tokens = Math.min(capacity(), tokens + 1);
+        }
+
+        synchronized void succeeded() {
+            rate = Math.min(maxRate, rate + rateIncrease);
+        }
+
+        synchronized void throttled(long retryAfterMs) {
+            throttled.increment();
+            rate = Math.max(minRatePerSecond, rate * rateDecreaseFactor);
+            tokens = Math.min(tokens, 0);
+            closedUntil = Math.max(closedUntil, System.currentTimeMillis() + retryAfterMs);
+        }
+
+        synchronized Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maxConcurrent", maxConcurrent);
+            stats.put("inUse", maxConcurrent - slots.availablePermits());
+            stats.put("waiting", waiting.get());
+            stats.put("ratePerSecond", rate);
+            stats.put("maxRatePerSecond", maxRate);
+            stats.put("closedForMs", Math.max(0, closedUntil - System.currentTimeMillis()));
+            stats.put("rejected", rejected.sum());
+            stats.put("throttled", throttled.sum());
+            return stats;
+        }
+
+        private double capacity() {
+            return Math.max(1, rate);
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity(), tokens + (now - refilledAt) / 1e9 * rate);
+            refilledAt = now;
+        }
+    }
+}
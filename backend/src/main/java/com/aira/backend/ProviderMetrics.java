@@ -0,0 +1,157 @@
+package com.aira.backend;
+
+import java.net.http.HttpTimeoutException;
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+
+// Micrometer meters for the provider call path, tagged by provider, model and outcome.
+// Percentiles and histogram buckets are configured in application.properties (management.metrics.distribution.*).
+@Component
+class ProviderMetrics {
+
+    static final String UPSTREAM = "ai.provider.upstream";
+    static final String FIRST_TOKEN = "ai.provider.first_token";
+    static final String PARSE = "ai.provider.parse";
+    static final String REQUEST = "ai.chat.request";
+    static final String PERSISTENCE = "ai.persistence.write";
+    static final String ERRORS = "ai.provider.errors";
+    static final String TIMEOUTS = "ai.provider.timeouts";
+    static final String COALESCED = "ai.provider.coalesced";
+    static final String HEDGES = "ai.provider.hedges";
+    static final String TOKENS = "ai.provider.tokens";
+
+    static final String SUCCESS = "success";
+    static final String ERROR = "error";
+    static final String TIMEOUT = "timeout";
+    static final String RATE_LIMITED = "rate_limited";
+    static final String REJECTED = "rejected";
+
+    // Model names come from the client, so cap how many distinct values can become time series
+    private static final int MAX_MODEL_TAGS = 200;
+
+    private final MeterRegistry registry;
+
+    ProviderMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        registry.config().meterFilter(MeterFilter.maximumAllowableTags("ai.", "model", MAX_MODEL_TAGS, MeterFilter.deny()));
+    }
+
+    Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    void recordUpstream(Timer.Sample sample, String provider, String model, String outcome) {
+        sample.stop(Timer.builder(UPSTREAM)
+            .description("Time spent waiting on the provider API")
+            .tags("provider", provider, "model", model, "outcome", outcome)
+            .register(registry));
+        if (!SUCCESS.equals(outcome)) {
+            recordError(provider, model, outcome);
+        }
+    }
+
+    void recordFirstToken(String provider, String model, long millis) {
+        Timer.builder(FIRST_TOKEN)
+            .description("Time to first streamed token")
+            .tags("provider", provider, "model", model)
+            .register(registry)
+            .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    void recordParse(Timer.Sample sample, String provider, String model) {
+        sample.stop(Timer.builder(PARSE)
+            .description("Time spent decoding the provider response")
+            .tags("provider", provider, "model", model)
+            .register(registry));
+    }
+
+    void recordRequest(String endpoint, String provider, String model, String outcome, boolean cached, long millis) {
+        Timer.builder(REQUEST)
+            .description("End-to-end time of a chat request as seen by the client")
+            .tags("endpoint", endpoint, "provider", provider, "model", model, "outcome", outcome,
+                  "cached", String.valueOf(cached))
+            .register(registry)
+            .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    void recordPersistence(Timer.Sample sample, String path) {
+        sample.stop(Timer.builder(PERSISTENCE)
+            .description("Time spent writing chat history and winner rows")
+            .tags("path", path)
+            .register(registry));
+    }
+
+    void recordError(String provider, String model, String outcome) {
+        Counter.builder(ERRORS)
+            .tags("provider", provider, "model", model, "outcome", outcome)
+            .register(registry)
+            .increment();
+        if (TIMEOUT.equals(outcome)) {
+            Counter.builder(TIMEOUTS)
+                .tags("provider", provider, "model", model)
+                .register(registry)
+                .increment();
+        }
+    }
+
+    void recordCoalesced(String provider, String model) {
+        Counter.builder(COALESCED)
+            .description("Upstream calls saved by joining an identical call already in flight")
+            .tags("provider", provider, "model", model)
+            .register(registry)
+            .increment();
+    }
+
+    // Negative counts mean the provider did not report usage
+    void recordTokens(String provider, String model, long inputTokens, long outputTokens) {
+        if (inputTokens > 0) {
+            Counter.builder(TOKENS).tags("provider", provider, "model", model, "direction", "input")
+                .register(registry).increment(inputTokens);
+        }
+        if (outputTokens > 0) {
+            Counter.builder(TOKENS).tags("provider", provider, "model", model, "direction", "output")
+                .register(registry).increment(outputTokens);
+        }
+    }
+
+    void recordHedge(String provider, String model, String result) {
+        Counter.builder(HEDGES)
+            .description("Hedged duplicate requests, by whether they fired or won")
+            .tags("provider", provider, "model", model, "result", result)
+            .register(registry)
+            .increment();
+    }
+
+    // Recent successful upstream latency at the given percentile, once enough calls have been seen
+    OptionalDouble upstreamPercentileMs(String provider, String model, double percentile, long minSamples) {
+        Timer timer = registry.find(UPSTREAM)
+            .tags("provider", provider, "model", model, "outcome", SUCCESS)
+            .timer();
+        if (timer == null || timer.count() < minSamples) {
+            return OptionalDouble.empty();
+        }
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == percentile) {
+                return OptionalDouble.of(value.value(TimeUnit.MILLISECONDS));
+            }
+        }
+        return OptionalDouble.empty();
+    }
+
+    static String outcomeOf(int statusCode) {
+        if (statusCode == 200) {
+            return SUCCESS;
+        }
+        return statusCode == 429 ? RATE_LIMITED : ERROR;
+    }
+
+    static String outcomeOf(Throwable error) {
+        return error instanceof HttpTimeoutException ? TIMEOUT : ERROR;
+    }
+}
@@ -0,0 +1,230 @@
+package com.aira.backend;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Streaming counterpart of the call* methods in Controller.
+// Reads each provider's streaming API line by line and hands every text delta to the caller as it arrives.
+@Service
+class ProviderStreamClient {
+
+    // Longest silence between two lines of a stream before it is given up on
+    @Value("${app.providers.stream-idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    @Autowired
+    private ProviderTransport providerTransport;
+
+    @Autowired
+    private ProviderLimiter providerLimiter;
+
+    @Autowired
+    private ProviderEndpoints providerEndpoints;
+
+    @Autowired
+    private ProviderJson providerJson;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Returns the fully assembled reply once the provider closes the stream
+    String stream(String provider, String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                  Deadline deadline, UpstreamCancellation cancellation, Consumer<String> onToken)
+            throws Exception {
+        return switch (provider.toLowerCase()) {
+            case "openai" -> streamChatCompletions("OpenAI", providerEndpoints.url("openai", "/v1/chat/completions"), model, history, prompt, apiKey, deadline, cancellation, onToken);
+            case "claude" -> streamClaude(model, history, prompt, apiKey, deadline, cancellation, onToken);
+            case "gemini" -> streamGemini(model, history, prompt, apiKey, deadline, cancellation, onToken);
+            case "cohere" -> streamCohere(model, history, prompt, apiKey, deadline, cancellation, onToken);
+            case "deepseek" -> streamChatCompletions("DeepSeek", providerEndpoints.url("deepseek", "/v1/chat/completions"), model, history, prompt, apiKey, deadline, cancellation, onToken);
+            case "grok" -> streamChatCompletions("Grok", providerEndpoints.url("grok", "/v1/chat/completions"), model, history, prompt, apiKey, deadline, cancellation, onToken);
+            case "mistral" -> streamChatCompletions("Mistral", providerEndpoints.url("mistral", "/v1/chat/completions"), model, history, prompt, apiKey, deadline, cancellation, onToken);
+            case "qwen" -> streamQwen(model, history, prompt, apiKey, deadline, cancellation, onToken);
+            case "llama" -> streamChatCompletions("Llama", providerEndpoints.url("llama", "/v1/chat/completions"), model, history, prompt, apiKey, deadline, cancellation, onToken);
+            case "copilot" -> streamChatCompletions("Copilot", providerEndpoints.url("copilot", "/v1/chat/completions"), model, history, prompt, apiKey, deadline, cancellation, onToken);
+            default -> throw new UnsupportedOperationException("Provider not supported: " + provider);
+        };
+    }
+
+    // OpenAI-compatible APIs (OpenAI, DeepSeek, Grok, Mistral, Together, Copilot)
+    private String streamChatCompletions(String name, String url, String model, List<ConversationWindows.Turn> history,
+                                         String prompt, String apiKey, Deadline deadline, UpstreamCancellation cancellation,
+                                         Consumer<String> onToken) throws Exception {
+        byte[] requestBody = providerJson.chatRequest(model, history, prompt, true);
+
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .header("Content-Type", "application/json")
+            .header("Accept", "text/event-stream")
+            .header("Authorization", "Bearer " + apiKey)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
+            .build();
+
+        return readStream(name, request, deadline, cancellation, event -> textAt(event, "/choices/0/delta/content"), onToken);
+    }
+
+    private String streamClaude(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                                Deadline deadline, UpstreamCancellation cancellation, Consumer<String> onToken)
+            throws Exception {
+        String url = providerEndpoints.url("claude", "/v1/messages");
+        byte[] requestBody = providerJson.chatRequest(model, history, prompt, true);
+
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .header("Content-Type", "application/json")
+            .header("Accept", "text/event-stream")
+            .header("x-api-key", apiKey)
+            .header("anthropic-version", "2023-06-01")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
+            .build();
+
+        return readStream("Claude", request, deadline, cancellation, event -> {
+            String type = event.path("type").asText();
+            if ("error".equals(type)) {
+                throw new RuntimeException("Claude API error: " + event.path("error"));
+            }
+            return "content_block_delta".equals(type) ? textAt(event, "/delta/text") : null;
+        }, onToken);
+    }
+
+    private String streamGemini(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                                Deadline deadline, UpstreamCancellation cancellation, Consumer<String> onToken)
+            throws Exception {
+        String url = providerEndpoints.url("gemini", "/v1beta/models/" + model + ":streamGenerateContent?alt=sse&key=" + apiKey);
+        byte[] requestBody = providerJson.geminiRequest(history, prompt);
+
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .header("Content-Type", "application/json")
+            .header("Accept", "text/event-stream")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
+            .build();
+
+        return readStream("Gemini", request, deadline, cancellation, event -> textAt(event, "/candidates/0/content/parts/0/text"), onToken);
+    }
+
+    private String streamCohere(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                                Deadline deadline, UpstreamCancellation cancellation, Consumer<String> onToken)
+            throws Exception {
+        // Cohere v1 streams newline-delimited JSON events rather than SSE
+        String url = providerEndpoints.url("cohere", "/v1/chat");
+        byte[] requestBody = providerJson.cohereRequest(model, history, prompt, true);
+
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .header("Content-Type", "application/json")
+            .header("Authorization", "Bearer " + apiKey)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
+            .build();
+
+        return readStream("Cohere", request, deadline, cancellation,
+            event -> "text-generation".equals(event.path("event_type").asText()) ? textAt(event, "/text") : null,
+            onToken);
+    }
+
+    private String streamQwen(String model, List<ConversationWindows.Turn> history, String prompt, String apiKey,
+                              Deadline deadline, UpstreamCancellation cancellation, Consumer<String> onToken)
+            throws Exception {
+        String url = providerEndpoints.url("qwen", "/api/v1/services/aigc/text-generation/generation");
+        byte[] requestBody = providerJson.qwenRequest(model, history, prompt, true);
+
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .header("Content-Type", "application/json")
+            .header("Accept", "text/event-stream")
+            .header("X-DashScope-SSE", "enable")
+            .header("Authorization", "Bearer " + apiKey)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
+            .build();
+
+        return readStream("Qwen", request, deadline, cancellation, event -> textAt(event, "/output/text"), onToken);
+    }
+
+    // Accepts both SSE ("data: {...}") and newline-delimited JSON bodies
+    // The deadline bounds the wait for the headers and, through a BodyWatchdog, the read of the stream itself, which
+    // also fails once no line has arrived for the idle timeout. The body is read through a reader of our own: the one
+    // behind BodyHandlers.ofLines() cannot be closed while a read blocks.
+    private String readStream(String name, HttpRequest request, Deadline deadline, UpstreamCancellation cancellation,
+                              Function<JsonNode, String> extractor, Consumer<String> onToken) throws Exception {
+        HttpRequest bounded = HttpRequest.newBuilder(request, (header, value) -> true)
+            .timeout(deadline.remaining())
+            .build();
+        CompletableFuture<HttpResponse<InputStream>> exchange =
+            providerTransport.sendAsync(bounded, HttpResponse.BodyHandlers.ofInputStream());
+        cancellation.exchange(exchange);
+        HttpResponse<InputStream> response;
+        try {
+            response = exchange.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (InterruptedException e) {
+            exchange.cancel(true);
+            throw e;
+        }
+        cancellation.body(response.body());
+
+        BodyWatchdog watchdog = new BodyWatchdog(response.body(), deadline, idleTimeoutMs);
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            if (response.statusCode() == 429) {
+                throw new ProviderLimiter.LimitException(name + " is rate limiting requests",
+                    providerLimiter.retryAfterMs(response.headers()));
+            }
+            if (response.statusCode() != 200) {
+                throw new RuntimeException(name + " API error: " + lines.lines().collect(Collectors.joining("\n")));
+            }
+
+            StringBuilder reply = new StringBuilder();
+            String line;
+            while ((line = lines.readLine()) != null) {
+                watchdog.touch();
+                String payload;
+                if (line.startsWith("data:")) {
+                    payload = line.substring(5).trim();
+                } else if (line.startsWith("{")) {
+                    payload = line;
+                } else {
+                    continue;
+                }
+
+                if (payload.equals("[DONE]")) {
+                    break;
+                }
+                if (payload.isEmpty()) {
+                    continue;
+                }
+
+                String token = extractor.apply(objectMapper.readTree(payload));
+                if (token != null && !token.isEmpty()) {
+                    reply.append(token);
+                    onToken.accept(token);
+                }
+            }
+            return reply.toString();
+        } catch (IOException e) {
+            throw watchdog.timeout(e);
+        } finally {
+            watchdog.close();
+        }
+    }
+
+    private String textAt(JsonNode node, String pointer) {
+        JsonNode value = node.at(pointer);
+        return value.isTextual() ? value.asText() : null;
+    }
+}
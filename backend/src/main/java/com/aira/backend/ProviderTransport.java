@@ -0,0 +1,272 @@
+package com.aira.backend;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.*;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// One tuned HttpClient per provider host.
+// Each client speaks HTTP/2 so concurrent calls to the same provider share one multiplexed connection,
+// and counts the TLS handshakes it performs so connection reuse can be checked from the stats endpoint.
+@Component
+class ProviderTransport {
+
+    @Value("${app.providers.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${app.providers.request-timeout-ms:120000}")
+    private long requestTimeoutMs;
+
+    @Value("${app.providers.warmup.enabled:false}")
+    private boolean warmupEnabled;
+
+    // HttpClient closes a connection that has been idle for jdk.httpclient.keepalive.timeout (30 s by default),
+    // so idle time plus the check interval must stay below it or the ping comes too late
+    @Value("${app.providers.keepalive-idle-ms:20000}")
+    private long keepAliveIdleMs;
+
+    @Autowired
+    private ProviderEndpoints providerEndpoints;
+
+    private final Map<String, HostPool> pools = new ConcurrentHashMap<>();
+
+    // Response handling for every client runs on virtual threads. The pool is unbounded on purpose: a bounded
+    // one must either queue or push work back onto the submitting thread, and that thread can be the client's
+    // selector, which would stall every connection of the host.
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+
+    <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        HostPool pool = pool(request.uri());
+        HttpResponse<T> response = pool.client.send(withDefaultTimeout(request), bodyHandler);
+        pool.record(response);
+        return response;
+    }
+
+    // The returned future is the client's own, so cancelling it aborts the exchange
+    <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        HostPool pool = pool(request.uri());
+        CompletableFuture<HttpResponse<T>> response = pool.client.sendAsync(withDefaultTimeout(request), bodyHandler);
+        response.thenAccept(pool::record);
+        return response;
+    }
+
+    // Opens a connection to every configured provider base URL so the first user request skips the TLS handshake
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmupEnabled) {
+            return;
+        }
+        for (String baseUrl : providerEndpoints.baseUrls()) {
+            ping(URI.create(baseUrl + "/"));
+        }
+    }
+
+    // Touches hosts that have gone quiet before the client (or the provider) closes the idle connection
+    @Scheduled(fixedDelayString = "${app.providers.keepalive-interval-ms:10000}")
+    public void keepAlive() {
+        if (!warmupEnabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (HostPool pool : pools.values()) {
+            if (now - pool.lastUsedAt >= keepAliveIdleMs) {
+                ping(pool.origin);
+            }
+        }
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> hosts = new TreeMap<>();
+        for (HostPool pool : pools.values()) {
+            long requests = pool.requests.sum();
+            long handshakes = pool.handshakes.sum();
+            Map<String, Object> hostStats = new LinkedHashMap<>();
+            hostStats.put("requests", requests);
+            hostStats.put("tlsHandshakes", handshakes);
+            hostStats.put("reusedConnections", Math.max(0, requests - handshakes));
+            hostStats.put("http2Responses", pool.http2Responses.sum());
+            hostStats.put("keepAlivePings", pool.pings.sum());
+            hostStats.put("lastUsedAt", pool.lastUsedAt);
+            hosts.put(pool.host, hostStats);
+        }
+        return Map.of(
+            "hosts", hosts,
+            "executorActiveTasks", activeTasks.get()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void ping(URI origin) {
+        HostPool pool = pool(origin);
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(origin)
+            .timeout(Duration.ofMillis(requestTimeoutMs))
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .build();
+
+        // Any status will do, the point is the open connection
+        pool.client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .thenAccept(response -> {
+                pool.pings.increment();
+                pool.lastUsedAt = System.currentTimeMillis();
+            });
+    }
+
+    private HttpRequest withDefaultTimeout(HttpRequest request) {
+        if (request.timeout().isPresent()) {
+            return request;
+        }
+        return HttpRequest.newBuilder(request, (name, value) -> true)
+            .timeout(Duration.ofMillis(requestTimeoutMs))
+            .build();
+    }
+
+    private HostPool pool(URI uri) {
+        return pools.computeIfAbsent(uri.getHost(), host -> createPool(host, uri.resolve("/")));
+    }
+
+    private void execute(Runnable task) {
+        executor.execute(() -> {
+            activeTasks.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                activeTasks.decrementAndGet();
+            }
+        });
+    }
+
+    private HostPool createPool(String host, URI origin) {
+        LongAdder handshakes = new LongAdder();
+        SSLContext sslContext;
+        try {
+            sslContext = new CountingSSLContext(SSLContext.getDefault(), handshakes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No default SSL context available", e);
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(this::execute)
+            .sslContext(sslContext)
+            .build();
+
+        return new HostPool(host, origin, client, handshakes);
+    }
+
+    private static final class HostPool {
+        final String host;
+        // Scheme, host and port that keep-alive pings go to
+        final URI origin;
+        final HttpClient client;
+        final LongAdder handshakes;
+        final LongAdder requests = new LongAdder();
+        final LongAdder http2Responses = new LongAdder();
+        final LongAdder pings = new LongAdder();
+        volatile long lastUsedAt = System.currentTimeMillis();
+
+        HostPool(String host, URI origin, HttpClient client, LongAdder handshakes) {
+            this.host = host;
+            this.origin = origin;
+            this.client = client;
+            this.handshakes = handshakes;
+        }
+
+        void record(HttpResponse<?> response) {
+            requests.increment();
+            if (response.version() == HttpClient.Version.HTTP_2) {
+                http2Responses.increment();
+            }
+            lastUsedAt = System.currentTimeMillis();
+        }
+    }
+
+    // HttpClient creates one SSLEngine per new TLS connection, so counting engines counts handshakes
+    private static final class CountingSSLContext extends SSLContext {
+        CountingSSLContext(SSLContext delegate, LongAdder handshakes) {
+            super(new CountingSSLContextSpi(delegate, handshakes), delegate.getProvider(), delegate.getProtocol());
+        }
+    }
+
+    private static final class CountingSSLContextSpi extends SSLContextSpi {
+        private final SSLContext delegate;
+        private final LongAdder handshakes;
+
+        CountingSSLContextSpi(SSLContext delegate, LongAdder handshakes) {
+            this.delegate = delegate;
+            this.handshakes = handshakes;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom random) throws KeyManagementException {
+            delegate.init(km, tm, random);
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            handshakes.increment();
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            handshakes.increment();
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.aira.backend;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+// Exposes per-host connection reuse and per-provider limiter state at /actuator/providers
+@Component
+@Endpoint(id = "providers")
+public class ProviderTransportEndpoint {
+
+    @Autowired
+    private ProviderTransport providerTransport;
+
+    @Autowired
+    private ProviderLimiter providerLimiter;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(providerTransport.stats());
+        stats.put("limits", providerLimiter.stats());
+        return stats;
+    }
+}
@@ -0,0 +1,462 @@
+package com.aira.backend;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Pairwise skill ratings from arena matches.
+// Every /api/select-winner updates Elo incrementally: the winner beats each other competing model once.
+// A full Bradley-Terry fit over the whole match log runs in the background: pair counts are aggregated
+// with fork-join over partitions of the log, fitted with the MM algorithm, and bootstrapped for
+// 95% confidence intervals. Elo is rebuilt by replaying the log during the same pass.
+@Component
+class RatingEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingEngine.class);
+
+    // Pair entries aggregated by a single fork-join leaf
+    private static final int PARTITION_SIZE = 50_000;
+
+    @Value("${app.ratings.initial-rating:1000}")
+    private double initialRating;
+
+    @Value("${app.ratings.elo-k-factor:32}")
+    private double kFactor;
+
+    @Value("${app.ratings.bt-max-iterations:200}")
+    private int maxIterations;
+
+    @Value("${app.ratings.bt-tolerance:1e-7}")
+    private double tolerance;
+
+    @Value("${app.ratings.bootstrap-samples:200}")
+    private int bootstrapSamples;
+
+    // How long a recompute waits for the write-behind queue before reading the match log
+    @Value("${app.ratings.flush-timeout-ms:10000}")
+    private long flushTimeoutMs;
+
+    @Autowired
+    private WinnerSelectionRepository winnerRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private WriteBehindWriter writeBehindWriter;
+
+    private final ForkJoinPool pool;
+    private final AtomicBoolean recomputing = new AtomicBoolean();
+
+    // Guarded by this
+    private Map<String, EloRating> elo = new HashMap<>();
+    private List<PendingMatch> pendingMatches;
+
+    private volatile Map<String, Object> bradleyTerry = Map.of("models", List.of(), "matches", 0);
+
+    RatingEngine(@Value("${app.ratings.parallelism:0}") int parallelism) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    // A match applied to the live Elo while a recompute is reading the log, with the row that records it
+    private record PendingMatch(String[] match, WinnerSelection selection) {}
+
+    private static final class EloRating {
+        double rating;
+        long games;
+
+        EloRating(double rating) {
+            this.rating = rating;
+        }
+    }
+
+    // Match log flattened into parallel int arrays of (winner, loser) model indexes
+    private static final class MatchLog {
+        final List<String> models = new ArrayList<>();
+        final Map<String, Integer> index = new HashMap<>();
+        int[] winners = new int[1024];
+        int[] losers = new int[1024];
+        int pairs;
+        long matches;
+
+        int indexOf(String model) {
+            return index.computeIfAbsent(model, key -> {
+                models.add(key);
+                return models.size() - 1;
+            });
+        }
+
+        void add(int winner, int loser) {
+            if (pairs == winners.length) {
+                winners = Arrays.copyOf(winners, pairs * 2);
+                losers = Arrays.copyOf(losers, pairs * 2);
+            }
+            winners[pairs] = winner;
+            losers[pairs] = loser;
+            pairs++;
+        }
+    }
+
+    // Competitors are model keys; the winner may or may not be among them. selection is the row recording the
+    // match, already submitted to the write-behind queue.
+    synchronized void recordMatch(String winnerKey, Collection<String> competitorKeys, WinnerSelection selection) {
+        String[] match = toMatch(winnerKey, competitorKeys);
+        applyElo(elo, match);
+        if (pendingMatches != null) {
+            pendingMatches.add(new PendingMatch(match, selection));
+        }
+    }
+
+    synchronized List<Map<String, Object>> eloStandings() {
+        List<Map<String, Object>> standings = new ArrayList<>(elo.size());
+        for (Map.Entry<String, EloRating> entry : elo.entrySet()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("model", entry.getKey());
+            row.put("rating", Math.round(entry.getValue().rating * 10) / 10.0);
+            row.put("games", entry.getValue().games);
+            standings.add(row);
+        }
+        standings.sort(Comparator.comparingDouble((Map<String, Object> row) -> (Double) row.get("rating")).reversed());
+        return standings;
+    }
+
+    Map<String, Object> bradleyTerry() {
+        return bradleyTerry;
+    }
+
+    boolean isRecomputing() {
+        return recomputing.get();
+    }
+
+    // Returns false when a recompute is already running
+    boolean recomputeAsync() {
+        if (!recomputing.compareAndSet(false, true)) {
+            return false;
+        }
+        // Runs outside the pool so the fork-join stages below can use every worker
+        Thread.ofPlatform().daemon().name("rating-recompute").start(() -> {
+            try {
+                recompute();
+            } catch (Exception e) {
+                log.error("Rating recompute failed", e);
+            } finally {
+                // A failed recompute must not leave matches piling up for a swap that will not happen
+                synchronized (this) {
+                    pendingMatches = null;
+                }
+                recomputing.set(false);
+            }
+        });
+        return true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        recomputeAsync();
+    }
+
+    @Scheduled(initialDelayString = "${app.ratings.recompute-interval-ms:3600000}",
+               fixedDelayString = "${app.ratings.recompute-interval-ms:3600000}")
+    public void scheduledRecompute() {
+        recomputeAsync();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void recompute() throws Exception {
+        long startTime = System.currentTimeMillis();
+
+        synchronized (this) {
+            pendingMatches = new ArrayList<>();
+        }
+
+        // Matches recorded before this point are only in the live Elo until their rows leave the write-behind
+        // queue; the log has to include them, or the swap below would lose them
+        if (!writeBehindWriter.flush(flushTimeoutMs)) {
+            log.warn("Write-behind queue not flushed within {} ms, recent matches may be missing", flushTimeoutMs);
+        }
+
+        Map<String, EloRating> replayedElo = new HashMap<>();
+        MatchLog matchLog = loadMatchLog(replayedElo);
+
+        int m = matchLog.models.size();
+        long[] wins = pool.submit(new PairCountTask(matchLog, 0, matchLog.pairs)).get();
+
+        double[] ratings = toRatings(fit(wins, m));
+
+        double[][] samples = pool.submit(() -> IntStream.range(0, bootstrapSamples)
+            .parallel()
+            .mapToObj(sample -> toRatings(fit(resample(wins, m, new SplittableRandom(sample * 0x9E3779B97F4A7C15L)), m)))
+            .toArray(double[][]::new)).get();
+
+        List<Map<String, Object>> models = new ArrayList<>(m);
+        for (int i = 0; i < m; i++) {
+            double[] column = new double[samples.length];
+            for (int b = 0; b < samples.length; b++) {
+                column[b] = samples[b][i];
+            }
+            Arrays.sort(column);
+
+            long modelWins = 0;
+            long games = 0;
+            for (int j = 0; j < m; j++) {
+                modelWins += wins[i * m + j];
+                games += wins[i * m + j] + wins[j * m + i];
+            }
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("model", matchLog.models.get(i));
+            row.put("rating", round(ratings[i]));
+            row.put("ciLower", column.length == 0 ? null : round(percentile(column, 0.025)));
+            row.put("ciUpper", column.length == 0 ? null : round(percentile(column, 0.975)));
+            row.put("wins", modelWins);
+            row.put("games", games);
+            models.add(row);
+        }
+        models.sort(Comparator.comparingDouble((Map<String, Object> row) -> (Double) row.get("rating")).reversed());
+
+        long durationMs = System.currentTimeMillis() - startTime;
+        bradleyTerry = Map.of(
+            "models", models,
+            "matches", matchLog.matches,
+            "pairs", matchLog.pairs,
+            "bootstrapSamples", bootstrapSamples,
+            "computedAt", new Date(),
+            "durationMs", durationMs
+        );
+        log.info("Recomputed ratings for {} models over {} matches in {} ms", m, matchLog.matches, durationMs);
+    }
+
+    // Streams the match log and swaps in the replayed Elo. The read runs on one snapshot (repeatable read), so
+    // matches recorded meanwhile can be told apart: replayed on top unless their row is in that snapshot.
+    private MatchLog loadMatchLog(Map<String, EloRating> replayedElo) {
+        MatchLog matchLog = new MatchLog();
+        TransactionTemplate snapshot = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshot.setReadOnly(true);
+        snapshot.executeWithoutResult(status -> {
+            try (Stream<WinnerSelectionRepository.MatchView> rows = winnerRepository.streamMatches()) {
+                rows.forEach(row -> {
+                    String winnerKey = ModelIdentifiers.modelKey(row.getModelIdentifier());
+                    String[] match = toMatch(winnerKey, Arrays.asList(row.getCompetitors()));
+                    if (match.length < 2) {
+                        return;
+                    }
+                    applyElo(replayedElo, match);
+
+                    int winner = matchLog.indexOf(match[0]);
+                    for (int i = 1; i < match.length; i++) {
+                        matchLog.add(winner, matchLog.indexOf(match[i]));
+                    }
+                    matchLog.matches++;
+                });
+            }
+
+            // Ids are read once: the writer thread sets them, and clears them again to retry a failed batch
+            Long[] ids;
+            synchronized (this) {
+                ids = new Long[pendingMatches.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = pendingMatches.get(i).selection().getId();
+                }
+            }
+            // Queried without the lock so recordMatch does not wait on the database
+            List<Long> assigned = new ArrayList<>(ids.length);
+            for (Long id : ids) {
+                if (id != null) {
+                    assigned.add(id);
+                }
+            }
+            Set<Long> streamed = new HashSet<>();
+            if (!assigned.isEmpty()) {
+                streamed.addAll(winnerRepository.findExistingIds(assigned));
+            }
+
+            synchronized (this) {
+                for (int i = 0; i < pendingMatches.size(); i++) {
+                    // Matches recorded after the ids were read are newer than the snapshot
+                    if (i >= ids.length || ids[i] == null || !streamed.contains(ids[i])) {
+                        applyElo(replayedElo, pendingMatches.get(i).match());
+                    }
+                }
+                pendingMatches = null;
+                elo = replayedElo;
+            }
+        });
+        return matchLog;
+    }
+
+    // match[0] is the winner, the rest are the distinct losers
+    private String[] toMatch(String winnerKey, Collection<String> competitorKeys) {
+        LinkedHashSet<String> losers = new LinkedHashSet<>();
+        for (String competitor : competitorKeys) {
+            String key = competitor.trim();
+            if (!key.isEmpty() && !key.equals(winnerKey)) {
+                losers.add(key);
+            }
+        }
+        String[] match = new String[losers.size() + 1];
+        match[0] = winnerKey;
+        int i = 1;
+        for (String loser : losers) {
+            match[i++] = loser;
+        }
+        return match;
+    }
+
+    private void applyElo(Map<String, EloRating> ratings, String[] match) {
+        EloRating winner = ratings.computeIfAbsent(match[0], key -> new EloRating(initialRating));
+        for (int i = 1; i < match.length; i++) {
+            EloRating loser = ratings.computeIfAbsent(match[i], key -> new EloRating(initialRating));
+            double expected = 1.0 / (1.0 + Math.pow(10, (loser.rating - winner.rating) / 400.0));
+            double delta = kFactor * (1.0 - expected);
+            winner.rating += delta;
+            loser.rating -= delta;
+            winner.games++;
+            loser.games++;
+        }
+    }
+
+    // Sums the m x m win matrix (row beat column) over a slice of the pair arrays
+    private static final class PairCountTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        // Tasks only run inside the pool and are never serialized
+        private final transient MatchLog matchLog;
+        private final int from;
+        private final int to;
+
+        PairCountTask(MatchLog matchLog, int from, int to) {
+            this.matchLog = matchLog;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            int m = matchLog.models.size();
+            if (to - from <= PARTITION_SIZE) {
+                long[] counts = new long[m * m];
+                for (int p = from; p < to; p++) {
+                    counts[matchLog.winners[p] * m + matchLog.losers[p]]++;
+                }
+                return counts;
+            }
+
+            int middle = (from + to) >>> 1;
+            PairCountTask left = new PairCountTask(matchLog, from, middle);
+            left.fork();
+            long[] right = new PairCountTask(matchLog, middle, to).compute();
+            long[] counts = left.join();
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += right[i];
+            }
+            return counts;
+        }
+    }
+
+    // Bradley-Terry strengths by the MM algorithm (Hunter 2004). Each model also plays one virtual win and one
+    // virtual loss against an opponent of strength 1, which keeps strengths finite for unbeaten or winless models
+    // and anchors the scale: a model with an even record stays at the initial rating.
+    double[] fit(long[] wins, int m) {
+        double[] strength = new double[m];
+        Arrays.fill(strength, 1.0);
+        double[] totalWins = new double[m];
+        for (int i = 0; i < m; i++) {
+            totalWins[i] = 1.0;
+            for (int j = 0; j < m; j++) {
+                totalWins[i] += wins[i * m + j];
+            }
+        }
+
+        double[] next = new double[m];
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            for (int i = 0; i < m; i++) {
+                double denominator = 2.0 / (strength[i] + 1.0);
+                for (int j = 0; j < m; j++) {
+                    long games = wins[i * m + j] + wins[j * m + i];
+                    if (i != j && games > 0) {
+                        denominator += games / (strength[i] + strength[j]);
+                    }
+                }
+                next[i] = totalWins[i] / denominator;
+            }
+
+            double maxChange = 0;
+            for (int i = 0; i < m; i++) {
+                maxChange = Math.max(maxChange, Math.abs(next[i] - strength[i]));
+                strength[i] = next[i];
+            }
+            if (maxChange < tolerance) {
+                break;
+            }
+        }
+        return strength;
+    }
+
+    // Pair-level bootstrap: keeps the number of games per pair and redraws who won them
+    private long[] resample(long[] wins, int m, SplittableRandom random) {
+        long[] sample = new long[m * m];
+        for (int i = 0; i < m; i++) {
+            for (int j = i + 1; j < m; j++) {
+                long games = wins[i * m + j] + wins[j * m + i];
+                if (games == 0) {
+                    continue;
+                }
+                long drawn = binomial(games, (double) wins[i * m + j] / games, random);
+                sample[i * m + j] = drawn;
+                sample[j * m + i] = games - drawn;
+            }
+        }
+        return sample;
+    }
+
+    private long binomial(long trials, double p, SplittableRandom random) {
+        if (trials <= 64) {
+            long successes = 0;
+            for (long t = 0; t < trials; t++) {
+                if (random.nextDouble() < p) {
+                    successes++;
+                }
+            }
+            return successes;
+        }
+        // Normal approximation is accurate enough at these counts
+        double draw = trials * p + Math.sqrt(trials * p * (1 - p)) * random.nextGaussian();
+        return Math.max(0, Math.min(trials, Math.round(draw)));
+    }
+
+    double[] toRatings(double[] strength) {
+        double[] ratings = new double[strength.length];
+        for (int i = 0; i < strength.length; i++) {
+            ratings[i] = initialRating + 400.0 * Math.log10(strength[i]);
+        }
+        return ratings;
+    }
+
+    private double percentile(double[] sorted, double quantile) {
+        int position = (int) Math.round(quantile * (sorted.length - 1));
+        return sorted[position];
+    }
+
+    private double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
@@ -0,0 +1,183 @@
+package com.aira.backend;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+// Opt-in reply cache in front of callAiApi, keyed by (provider, model, normalized prompt).
+// Tier 1 is a bounded in-memory LRU with per-model TTLs.
+// Tier 2 reuses replies already stored in chat_history, and promotes what it finds into tier 1.
+// Tier 3 (opt-in) offers the reply to a near-duplicate prompt for the same model, found by SimHash.
+@Component
+class ResponseCache {
+
+    static final String TIER_MEMORY = "memory";
+    static final String TIER_HISTORY = "history";
+    static final String TIER_NEAR_DUPLICATE = "near-duplicate";
+
+    @Value("${app.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.cache.history-lookup:true}")
+    private boolean historyLookup;
+
+    @Value("${app.cache.ttl-seconds:3600}")
+    private long defaultTtlSeconds;
+
+    @Autowired
+    private ChatHistoryRepository chatHistoryRepository;
+
+    @Autowired
+    private ContentStore contentStore;
+
+    @Autowired
+    private NearDuplicateIndex nearDuplicateIndex;
+
+    private final Map<String, Long> modelTtlSeconds = new HashMap<>();
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder historyHits = new LongAdder();
+    private final LongAdder nearDuplicateHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    ResponseCache(@Value("${app.cache.max-entries:1000}") int maxEntries,
+                  @Value("${app.cache.model-ttl-seconds:}") List<String> modelTtls) {
+        // Entries look like "gpt-4o=600"
+        for (String modelTtl : modelTtls) {
+            String[] parts = modelTtl.split("=");
+            if (parts.length == 2) {
+                modelTtlSeconds.put(parts[0].trim(), Long.parseLong(parts[1].trim()));
+            }
+        }
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    record Hit(String reply, String tier) {}
+
+    private record Entry(String reply, long expiresAt) {}
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    Optional<Hit> lookup(String provider, String model, String prompt) {
+        String key = key(provider, model, prompt);
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt() > now) {
+                    memoryHits.increment();
+                    return Optional.of(new Hit(entry.reply(), TIER_MEMORY));
+                }
+                entries.remove(key);
+                expirations.increment();
+            }
+        }
+
+        if (historyLookup) {
+            Optional<String> stored = lookupHistory(provider, model, prompt, now);
+            if (stored.isPresent()) {
+                historyHits.increment();
+                remember(provider, model, prompt, stored.get());
+                return Optional.of(new Hit(stored.get(), TIER_HISTORY));
+            }
+        }
+
+        if (nearDuplicateIndex.isEnabled()) {
+            Optional<String> similar = lookupNearDuplicate(provider, model, prompt, now);
+            if (similar.isPresent()) {
+                nearDuplicateHits.increment();
+                remember(provider, model, prompt, similar.get());
+                return Optional.of(new Hit(similar.get(), TIER_NEAR_DUPLICATE));
+            }
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    // A fresh provider reply: cached, and indexed for near-duplicate prompts
+    void put(String provider, String model, String prompt, String reply) {
+        if (reply == null || reply.isEmpty()) {
+            return;
+        }
+        remember(provider, model, prompt, reply);
+        nearDuplicateIndex.add(modelKey(provider, model), prompt, ContentStore.hash(reply), System.currentTimeMillis());
+    }
+
+    Map<String, Object> stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return Map.of(
+            "enabled", enabled,
+            "size", size,
+            "memoryHits", memoryHits.sum(),
+            "historyHits", historyHits.sum(),
+            "nearDuplicateHits", nearDuplicateHits.sum(),
+            "misses", misses.sum(),
+            "evictions", evictions.sum(),
+            "expirations", expirations.sum(),
+            "nearDuplicate", nearDuplicateIndex.stats()
+        );
+    }
+
+    // Tier 1 only. Replies found in tiers 2 and 3 are not re-indexed, so a reply cannot outlive its TTL by
+    // being handed from one near-duplicate prompt to the next.
+    private void remember(String provider, String model, String prompt, String reply) {
+        long expiresAt = System.currentTimeMillis() + ttlSeconds(model) * 1000;
+        synchronized (entries) {
+            entries.put(key(provider, model, prompt), new Entry(reply, expiresAt));
+        }
+    }
+
+    static String normalize(String prompt) {
+        return prompt.trim().replaceAll("\\s+", " ");
+    }
+
+    // Keyed like tier 1, on the normalized prompt
+    private Optional<String> lookupHistory(String provider, String model, String prompt, long now) {
+        Date since = new Date(now - ttlSeconds(model) * 1000);
+        List<ChatHistory> replies = chatHistoryRepository.findCachedReplies(
+            ContentStore.hash(normalize(prompt)), modelKey(provider, model), since, PageRequest.of(0, 1));
+        return replies.isEmpty() ? Optional.empty() : contentStore.get(replies.get(0).getResponseHash());
+    }
+
+    // The reply text comes back from the content store; a hit whose row is still in the write-behind queue misses
+    private Optional<String> lookupNearDuplicate(String provider, String model, String prompt, long now) {
+        long notBefore = now - ttlSeconds(model) * 1000;
+        return nearDuplicateIndex.match(modelKey(provider, model), prompt, notBefore)
+            .flatMap(match -> contentStore.get(match.replyHash()));
+    }
+
+    private static String modelKey(String provider, String model) {
+        return provider.toLowerCase() + "-" + model;
+    }
+
+    private long ttlSeconds(String model) {
+        return modelTtlSeconds.getOrDefault(model, defaultTtlSeconds);
+    }
+
+    private String key(String provider, String model, String prompt) {
+        return provider.toLowerCase() + '\u0000' + model + '\u0000' + normalize(prompt);
+    }
+}
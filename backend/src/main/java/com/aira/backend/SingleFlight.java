@@ -0,0 +1,98 @@
+package com.aira.backend;
+
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Coalesces identical in-flight provider calls, keyed by (provider, model, prompt, API key).
+// The first caller runs the upstream call; everyone arriving before it finishes waits on the same future.
+// Keys are SHA-256 digests, so neither prompts nor API keys are held in the map.
+@Component
+class SingleFlight {
+
+    @Value("${app.single-flight.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder upstreamCalls = new LongAdder();
+    private final LongAdder coalescedCalls = new LongAdder();
+
+    record Result(String reply, boolean shared) {}
+
+    Result execute(String provider, String model, String prompt, String apiKey, Deadline deadline,
+                   Callable<String> upstream) throws Exception {
+        if (!enabled) {
+            upstreamCalls.increment();
+            return new Result(upstream.call(), false);
+        }
+
+        String key = key(provider, model, prompt, apiKey);
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalescedCalls.increment();
+            return new Result(await(existing, deadline), true);
+        }
+
+        upstreamCalls.increment();
+        try {
+            String reply = upstream.call();
+            flight.complete(reply);
+            return new Result(reply, false);
+        } catch (Exception e) {
+            // Waiters see the same failure instead of retrying all at once
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    Map<String, Object> stats() {
+        return Map.of(
+            "enabled", enabled,
+            "inFlight", inFlight.size(),
+            "upstreamCalls", upstreamCalls.sum(),
+            "savedCalls", coalescedCalls.sum()
+        );
+    }
+
+    // Waiters give up at their own deadline without disturbing the shared call
+    private String await(CompletableFuture<String> flight, Deadline deadline) throws Exception {
+        try {
+            return flight.get(deadline.remainingMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new HttpTimeoutException("Request deadline exceeded");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String key(String provider, String model, String prompt, String apiKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[] { provider.toLowerCase(), model, prompt, apiKey }) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.aira.backend;
+
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+// Exposes coalesced provider call counters at /actuator/singleflight
+@Component
+@Endpoint(id = "singleflight")
+public class SingleFlightEndpoint {
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return singleFlight.stats();
+    }
+}
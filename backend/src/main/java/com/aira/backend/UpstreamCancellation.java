@@ -0,0 +1,63 @@
+package com.aira.backend;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+// Lets the SSE side of a stream abort the provider exchange once nobody is listening any more: before the
+// response headers by cancelling the HttpClient future, afterwards by closing the body, which fails the read
+// blocked on it. Either may be registered after cancel() and is then aborted straight away.
+final class UpstreamCancellation {
+
+    private CompletableFuture<?> exchange;
+    private Closeable body;
+    private boolean cancelled;
+
+    void exchange(CompletableFuture<?> exchange) {
+        synchronized (this) {
+            this.exchange = exchange;
+            if (!cancelled) {
+                return;
+            }
+        }
+        exchange.cancel(true);
+    }
+
+    void body(Closeable body) {
+        synchronized (this) {
+            this.body = body;
+            if (!cancelled) {
+                return;
+            }
+        }
+        closeQuietly(body);
+    }
+
+    void cancel() {
+        CompletableFuture<?> pendingExchange;
+        Closeable openBody;
+        synchronized (this) {
+            cancelled = true;
+            pendingExchange = exchange;
+            openBody = body;
+        }
+        if (pendingExchange != null) {
+            pendingExchange.cancel(true);
+        }
+        if (openBody != null) {
+            closeQuietly(openBody);
+        }
+    }
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    private static void closeQuietly(Closeable body) {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // Closing is all that is needed, the reader reports the failure
+        }
+    }
+}
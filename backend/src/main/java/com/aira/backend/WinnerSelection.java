@@ -2,24 +2,41 @@ package com.aira.backend;
 
 import jakarta.persistence.*;
 import java.util.Date;
+import org.hibernate.annotations.ColumnTransformer;
 
 // WinnerSelection Entity
 @Entity
 @Table(name = "winner_selections")
 class WinnerSelection {
+    // Sequence ids (allocated 50 at a time) let Hibernate batch inserts, IDENTITY would not
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "winner_selections_seq")
+    @SequenceGenerator(name = "winner_selections_seq", sequenceName = "winner_selections_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(name = "model_identifier", nullable = false)
     private String modelIdentifier;
     
-    @Column(nullable = false, columnDefinition = "TEXT")
+    // SHA-256 of the prompt text, which is stored once in content_blobs (see ContentStore)
+    @Column(name = "prompt_hash", nullable = false, length = 64)
+    private String promptHash;
+    
+    @Column(name = "response_hash", nullable = false, length = 64)
+    private String responseHash;
+    
+    // Texts of a row built for writing; rows read back carry only the hashes
+    @Transient
     private String prompt;
     
-    @Column(nullable = false, columnDefinition = "TEXT")
+    @Transient
     private String response;
     
+    // Prompt and response, stored as to_tsvector for /api/search. Write-only: reads select NULL instead
+    // of the vector, since nothing in Java needs it back.
+    @Column(name = "search_vector", columnDefinition = "TSVECTOR")
+    @ColumnTransformer(read = "NULL", write = "to_tsvector('english', ?)")
+    private String searchDocument;
+    
     @Column(name = "selected_at")
     @Temporal(TemporalType.TIMESTAMP)
     private Date selectedAt = new Date();
@@ -27,6 +44,10 @@ class WinnerSelection {
     @Column(name = "session_id")
     private String sessionId;
     
+    // Model keys of every model shown in this round, winner included
+    @Column(columnDefinition = "TEXT[]")
+    private String[] competitors;
+    
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -34,15 +55,36 @@ class WinnerSelection {
     public String getModelIdentifier() { return modelIdentifier; }
     public void setModelIdentifier(String modelIdentifier) { this.modelIdentifier = modelIdentifier; }
     
+    public String getPromptHash() { return promptHash; }
+    public void setPromptHash(String promptHash) { this.promptHash = promptHash; }
+    
+    public String getResponseHash() { return responseHash; }
+    public void setResponseHash(String responseHash) { this.responseHash = responseHash; }
+    
     public String getPrompt() { return prompt; }
-    public void setPrompt(String prompt) { this.prompt = prompt; }
+    public void setPrompt(String prompt) {
+        this.prompt = prompt;
+        this.promptHash = prompt == null ? null : ContentStore.hash(prompt);
+        updateSearchDocument();
+    }
     
     public String getResponse() { return response; }
-    public void setResponse(String response) { this.response = response; }
+    public void setResponse(String response) {
+        this.response = response;
+        this.responseHash = response == null ? null : ContentStore.hash(response);
+        updateSearchDocument();
+    }
+    
+    private void updateSearchDocument() {
+        searchDocument = response == null ? prompt : prompt == null ? response : prompt + "\n" + response;
+    }
     
     public Date getSelectedAt() { return selectedAt; }
     public void setSelectedAt(Date selectedAt) { this.selectedAt = selectedAt; }
     
     public String getSessionId() { return sessionId; }
     public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    
+    public String[] getCompetitors() { return competitors; }
+    public void setCompetitors(String[] competitors) { this.competitors = competitors; }
 }
\ No newline at end of file
@@ -1,13 +1,62 @@
 package com.aira.backend;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import jakarta.persistence.QueryHint;
 import java.util.Optional;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 @Repository
 interface WinnerSelectionRepository extends JpaRepository<WinnerSelection, Long> {
-    List<WinnerSelection> findBySessionId(String sessionId);
-    List<WinnerSelection> findByModelIdentifier(String modelIdentifier);
+    
+    // Match log for the rating engine: only the two columns it needs, read through a server-side cursor
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT w.modelIdentifier AS modelIdentifier, w.competitors AS competitors FROM WinnerSelection w " +
+           "WHERE w.competitors IS NOT NULL ORDER BY w.id")
+    Stream<MatchView> streamMatches();
+    
+    @Query("SELECT w.id FROM WinnerSelection w WHERE w.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+    
+    // Full-text search over winning answers; same columns as ChatHistoryRepository.SearchHit.
+    // Winner rows have no model_key column, so it is derived from the identifier (model_key_of, V1 migration).
+    String SEARCH = "SELECT w.id AS id, w.model_identifier AS modelIdentifier, w.prompt_hash AS promptHash, " +
+                    "w.response_hash AS responseHash, w.selected_at AS createdAt, " +
+                    "ts_rank_cd(w.search_vector, q) AS rank, querytree(q) AS terms " +
+                    "FROM winner_selections w, websearch_to_tsquery('english', :query) q " +
+                    "WHERE w.search_vector @@ q " +
+                    "AND (CAST(:modelKey AS text) IS NULL OR model_key_of(w.model_identifier) = CAST(:modelKey AS text)) ";
+    String SEARCH_ORDER = "ORDER BY rank DESC, w.selected_at DESC, w.id DESC LIMIT :limit OFFSET :offset";
+    
+    @Query(value = SEARCH + "AND w.session_id = :sessionId " + SEARCH_ORDER, nativeQuery = true)
+    List<ChatHistoryRepository.SearchHit> searchSession(@Param("query") String query,
+                                                        @Param("sessionId") String sessionId,
+                                                        @Param("modelKey") String modelKey,
+                                                        @Param("limit") int limit,
+                                                        @Param("offset") int offset);
+    
+    @Query(value = "SELECT w.id AS id, w.selected_at AS createdAt, w.prompt_hash AS promptHash, " +
+                   "w.response_hash AS responseHash FROM winner_selections w WHERE w.search_vector IS NULL LIMIT :limit",
+           nativeQuery = true)
+    List<ChatHistoryRepository.UnindexedRow> findUnindexed(@Param("limit") int limit);
+    
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE winner_selections SET search_vector = COALESCE(to_tsvector('english', CAST(:text AS text)), " +
+                   "CAST('' AS tsvector)) WHERE id = :id",
+           nativeQuery = true)
+    int index(@Param("id") Long id, @Param("text") String text);
+    
+    interface MatchView {
+        String getModelIdentifier();
+        String[] getCompetitors();
+    }
 }
@@ -0,0 +1,21 @@
+package com.aira.backend;
+
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+// Exposes write-behind queue depth and batch counters at /actuator/writebehind
+@Component
+@Endpoint(id = "writebehind")
+public class WriteBehindEndpoint {
+
+    @Autowired
+    private WriteBehindWriter writeBehindWriter;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return writeBehindWriter.stats();
+    }
+}
@@ -0,0 +1,264 @@
+package com.aira.backend;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Write-behind pipeline for ChatHistory and WinnerSelection rows.
+// Requests only enqueue; a single writer thread flushes the queue in JDBC batches when a batch fills up
+// or the flush interval passes, whichever comes first. When the queue is full the caller waits briefly
+// and then writes its own row, so nothing is dropped under load. A batch that fails is retried row by row,
+// and only the rows that fail on their own are dropped (logged and counted as failures).
+@Component
+class WriteBehindWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindWriter.class);
+
+    @Value("${app.write-behind.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${app.write-behind.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${app.write-behind.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    @Autowired
+    private ChatHistoryRepository chatHistoryRepository;
+
+    @Autowired
+    private WinnerSelectionRepository winnerRepository;
+
+    @Autowired
+    private ContentStore contentStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ProviderMetrics providerMetrics;
+
+    private final BlockingQueue<Object> queue;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder callerWrites = new LongAdder();
+    private final LongAdder batchRetries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    WriteBehindWriter(@Value("${app.write-behind.capacity:10000}") int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::run, "write-behind");
+        this.writerThread.setDaemon(true);
+    }
+
+    @PostConstruct
+    void start() {
+        writerThread.start();
+    }
+
+    void submit(ChatHistory history) {
+        enqueue(history);
+    }
+
+    void submit(WinnerSelection winner) {
+        enqueue(winner);
+    }
+
+    void submitAll(Collection<ChatHistory> histories) {
+        for (ChatHistory history : histories) {
+            enqueue(history);
+        }
+    }
+
+    // Waits until everything submitted before the call has been written (or dropped); false on timeout
+    boolean flush(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        CountDownLatch flushed = new CountDownLatch(1);
+        if (!running || !queue.offer(flushed, timeoutMs, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        return flushed.await(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    Map<String, Object> stats() {
+        return Map.of(
+            "queued", queue.size(),
+            "enqueued", enqueued.sum(),
+            "written", written.sum(),
+            "batches", batches.sum(),
+            "callerWrites", callerWrites.sum(),
+            "batchRetries", batchRetries.sum(),
+            "failures", failures.sum()
+        );
+    }
+
+    // Stops the flush loop and writes whatever is still queued before JPA shuts down
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(shutdownTimeoutMs);
+        if (!queue.isEmpty()) {
+            log.warn("Write-behind queue still holds {} records at shutdown", queue.size());
+        }
+    }
+
+    private void enqueue(Object record) {
+        try {
+            if (running && queue.offer(record, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                enqueued.increment();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Backpressure: the queue is full (or shutting down), so this caller pays for its own insert
+        callerWrites.increment();
+        write(List.of(record), "caller");
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>(batchSize);
+        List<CountDownLatch> flushes = new ArrayList<>();
+        long batchStartedAt = 0;
+
+        while (running || !queue.isEmpty()) {
+            try {
+                long waitMs = batch.isEmpty()
+                    ? flushIntervalMs
+                    : Math.max(0, flushIntervalMs - (System.currentTimeMillis() - batchStartedAt));
+                Object record = running ? queue.poll(waitMs, TimeUnit.MILLISECONDS) : queue.poll();
+
+                if (record != null) {
+                    if (batch.isEmpty()) {
+                        batchStartedAt = System.currentTimeMillis();
+                    }
+                    int start = batch.size();
+                    batch.add(record);
+                    queue.drainTo(batch, batchSize - batch.size());
+                    // flush() markers are not rows: pulled out, and released once the batch holding them is written
+                    for (Iterator<Object> it = batch.listIterator(start); it.hasNext(); ) {
+                        if (it.next() instanceof CountDownLatch flushed) {
+                            flushes.add(flushed);
+                            it.remove();
+                        }
+                    }
+                }
+
+                boolean full = batch.size() >= batchSize;
+                boolean due = !batch.isEmpty() && System.currentTimeMillis() - batchStartedAt >= flushIntervalMs;
+                if (full || due || !flushes.isEmpty() || (!running && !batch.isEmpty())) {
+                    if (!batch.isEmpty()) {
+                        write(batch, "batch");
+                        batch = new ArrayList<>(batchSize);
+                    }
+                    flushes.forEach(CountDownLatch::countDown);
+                    flushes.clear();
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested: keep looping until the queue is drained
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            write(batch, "batch");
+        }
+        flushes.forEach(CountDownLatch::countDown);
+    }
+
+    private void write(List<Object> records, String path) {
+        Timer.Sample sample = providerMetrics.start();
+        try {
+            insert(records);
+            written.add(records.size());
+            batches.increment();
+        } catch (Exception e) {
+            if (records.size() == 1) {
+                deadLetter(records.get(0), e);
+            } else {
+                batchRetries.increment();
+                log.warn("Failed to write batch of {} records, retrying them one by one", records.size(), e);
+                for (Object record : records) {
+                    retry(record);
+                }
+            }
+        } finally {
+            providerMetrics.recordPersistence(sample, path);
+        }
+    }
+
+    private void retry(Object record) {
+        // The failed attempt already took ids from the sequence; cleared, so save() inserts instead of merging
+        if (record instanceof ChatHistory history) {
+            history.setId(null);
+        } else if (record instanceof WinnerSelection winner) {
+            winner.setId(null);
+        }
+        try {
+            insert(List.of(record));
+            written.increment();
+        } catch (Exception e) {
+            deadLetter(record, e);
+        }
+    }
+
+    // Identifies the row without logging prompt or response text
+    private void deadLetter(Object record, Exception e) {
+        failures.increment();
+        if (record instanceof ChatHistory history) {
+            log.error("Dropped chat_history row for session {} and model {}", history.getSessionId(),
+                history.getModelIdentifier(), e);
+        } else if (record instanceof WinnerSelection winner) {
+            log.error("Dropped winner_selections row for session {} and model {}", winner.getSessionId(),
+                winner.getModelIdentifier(), e);
+        }
+    }
+
+    private void insert(List<Object> records) {
+        List<ChatHistory> histories = new ArrayList<>();
+        List<WinnerSelection> winners = new ArrayList<>();
+        List<String> texts = new ArrayList<>(records.size() * 2);
+        for (Object record : records) {
+            if (record instanceof ChatHistory history) {
+                histories.add(history);
+                texts.add(history.getPrompt());
+                texts.add(history.getResponse());
+            } else if (record instanceof WinnerSelection winner) {
+                winners.add(winner);
+                texts.add(winner.getPrompt());
+                texts.add(winner.getResponse());
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Blob rows go in the same transaction, so no row ever points at a text that was not stored
+            contentStore.storeAll(texts);
+            if (!histories.isEmpty()) {
+                chatHistoryRepository.saveAll(histories);
+            }
+            if (!winners.isEmpty()) {
+                winnerRepository.saveAll(winners);
+            }
+        });
+    }
+}
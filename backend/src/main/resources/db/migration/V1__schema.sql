@@ -0,0 +1,452 @@
+-- =========================================================
+-- Database schema for AI Reply Arena / Backend
+-- PostgreSQL compatible
+--
+-- Applied by Flyway when the backend starts. Written to be
+-- idempotent, so it also brings databases created by
+-- Hibernate (ddl-auto=update) or by an older copy of this
+-- script up to date; those are baselined at version 0.
+-- Later changes go in new V<n>__*.sql files.
+-- =========================================================
+
+-- =========================
+-- API Keys table
+-- =========================
+CREATE TABLE IF NOT EXISTS api_keys (
+    id BIGSERIAL PRIMARY KEY,
+    session_id VARCHAR(255) NOT NULL,
+    provider VARCHAR(100) NOT NULL,
+    encrypted_key TEXT NOT NULL,
+    created_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+-- =========================
+-- Winner Selections table
+-- =========================
+CREATE TABLE IF NOT EXISTS winner_selections (
+    id BIGSERIAL PRIMARY KEY,
+    model_identifier VARCHAR(255) NOT NULL,
+    prompt_hash VARCHAR(64) NOT NULL,
+    response_hash VARCHAR(64) NOT NULL,
+    search_vector TSVECTOR,
+    selected_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    session_id VARCHAR(255),
+    -- Model keys of every panel in the round
+    competitors TEXT[]
+);
+
+-- =========================
+-- Chat History table
+-- (range-partitioned by month on created_at, see
+--  chat_history_create_partitions below; the primary key
+--  has to include the partition column)
+-- =========================
+CREATE SEQUENCE IF NOT EXISTS chat_history_id_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS chat_history (
+    id BIGINT NOT NULL DEFAULT nextval('chat_history_id_seq'),
+    session_id VARCHAR(255) NOT NULL,
+    model_identifier VARCHAR(255) NOT NULL,
+    model_key VARCHAR(255),
+    prompt_hash VARCHAR(64) NOT NULL,
+    response_hash VARCHAR(64),
+    search_vector TSVECTOR,
+    created_at TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    response_time_ms INT,
+    time_to_first_token_ms INT,
+    -- SHA-256 of the whitespace-normalized prompt (see ResponseCache)
+    prompt_key VARCHAR(64),
+    -- Reply served from the reply cache rather than by the provider
+    cached BOOLEAN NOT NULL DEFAULT FALSE,
+    -- Reply to a prompt sent with earlier conversation turns; the
+    -- reply cache never serves these (see ChatHistoryRepository)
+    has_context BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- =========================
+-- Content Blobs table
+-- (prompt and response texts, stored once per SHA-256;
+--  codec 0 = UTF-8 as is, 1 = raw deflate)
+-- =========================
+CREATE TABLE IF NOT EXISTS content_blobs (
+    hash VARCHAR(64) PRIMARY KEY,
+    body BYTEA NOT NULL,
+    codec SMALLINT NOT NULL,
+    raw_length INT NOT NULL,
+    created_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    -- Last time a row referencing the blob was written. ContentBlob's
+    -- insert bumps it when an old text is stored again, which also
+    -- locks the blob against a concurrent collection.
+    last_stored_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+-- =========================
+-- Model Leaderboard table
+-- (checkpoint of the in-memory win/appearance counters)
+-- =========================
+CREATE TABLE IF NOT EXISTS model_leaderboard (
+    model_key VARCHAR(255) PRIMARY KEY,
+    wins BIGINT NOT NULL DEFAULT 0,
+    appearances BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+-- =========================
+-- Model Hourly Stats table
+-- (per model and hour call counts and response times,
+--  rolled up from chat_history for dashboards)
+-- =========================
+CREATE TABLE IF NOT EXISTS model_hourly_stats (
+    hour_start TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    model_key VARCHAR(255) NOT NULL,
+    calls BIGINT NOT NULL,
+    replies BIGINT NOT NULL,
+    timed_calls BIGINT NOT NULL,
+    total_response_time_ms BIGINT NOT NULL,
+    max_response_time_ms INT,
+    updated_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (hour_start, model_key)
+);
+
+-- =========================================================
+-- Columns added since the first release
+-- (tables created by Hibernate or an older copy of this script)
+-- =========================================================
+
+ALTER TABLE chat_history ADD COLUMN IF NOT EXISTS model_key VARCHAR(255);
+ALTER TABLE chat_history ADD COLUMN IF NOT EXISTS time_to_first_token_ms INT;
+ALTER TABLE chat_history ADD COLUMN IF NOT EXISTS has_context BOOLEAN NOT NULL DEFAULT FALSE;
+-- Older rows have no prompt_key and are simply never served from
+-- history; normalizing in SQL would not match Java's trim/\s exactly,
+-- and replies older than the cache TTL are not served anyway
+ALTER TABLE chat_history ADD COLUMN IF NOT EXISTS prompt_key VARCHAR(64);
+ALTER TABLE chat_history ADD COLUMN IF NOT EXISTS cached BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE content_blobs ADD COLUMN IF NOT EXISTS last_stored_at TIMESTAMP WITHOUT TIME ZONE DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE winner_selections ADD COLUMN IF NOT EXISTS competitors TEXT[];
+
+-- =========================================================
+-- Chat history partition maintenance
+-- (also run by the backend on a schedule, see HistoryMaintenance)
+-- =========================================================
+
+-- Monthly partitions chat_history_YYYY_MM from first_month through
+-- months_ahead months past the current one, plus a default
+-- partition so a row outside every range is never rejected
+CREATE OR REPLACE FUNCTION chat_history_create_partitions(first_month DATE, months_ahead INT)
+RETURNS INT AS $$
+DECLARE
+    partition_month DATE := date_trunc('month', first_month);
+    last_month DATE := date_trunc('month', CURRENT_DATE) + make_interval(months => months_ahead);
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    WHILE partition_month <= last_month LOOP
+        partition_name := 'chat_history_' || to_char(partition_month, 'YYYY_MM');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF chat_history FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, partition_month, partition_month + INTERVAL '1 month');
+            created := created + 1;
+        END IF;
+        partition_month := partition_month + INTERVAL '1 month';
+    END LOOP;
+    CREATE TABLE IF NOT EXISTS chat_history_default PARTITION OF chat_history DEFAULT;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Drops (or detaches, leaving a standalone table to archive) every
+-- monthly partition that ends before the last keep_months months
+CREATE OR REPLACE FUNCTION chat_history_drop_partitions(keep_months INT, detach_only BOOLEAN)
+RETURNS SETOF TEXT AS $$
+DECLARE
+    cutoff DATE := date_trunc('month', CURRENT_DATE) - make_interval(months => keep_months);
+    partition_name TEXT;
+BEGIN
+    FOR partition_name IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'chat_history'::regclass AND c.relname ~ '^chat_history_[0-9]{4}_[0-9]{2}$'
+        ORDER BY c.relname
+    LOOP
+        IF to_date(substring(partition_name from 14), 'YYYY_MM') + INTERVAL '1 month' <= cutoff THEN
+            IF detach_only THEN
+                EXECUTE format('ALTER TABLE chat_history DETACH PARTITION %I', partition_name);
+            ELSE
+                EXECUTE format('DROP TABLE %I', partition_name);
+            END IF;
+            RETURN NEXT partition_name;
+        END IF;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- =========================================================
+-- Content blob garbage collection
+-- (retention drops chat_history partitions, but their texts
+--  live in content_blobs and would otherwise stay forever;
+--  run by the backend on a schedule, see HistoryMaintenance)
+-- =========================================================
+
+-- Deletes blobs no longer referenced by chat_history, winner_selections
+-- or a partition detached by retention (those keep their texts until the
+-- archived table is dropped) and not stored again within min_age.
+-- One anti-join over all references rather than a lookup per blob,
+-- since response_hash is not indexed.
+CREATE OR REPLACE FUNCTION content_blobs_delete_orphans(min_age INTERVAL)
+RETURNS INT AS $$
+DECLARE
+    referenced TEXT := 'SELECT prompt_hash FROM chat_history UNION ALL SELECT response_hash FROM chat_history '
+                    || 'UNION ALL SELECT prompt_hash FROM winner_selections '
+                    || 'UNION ALL SELECT response_hash FROM winner_selections';
+    archive_name TEXT;
+    deleted INT;
+BEGIN
+    FOR archive_name IN
+        SELECT c.relname FROM pg_class c
+        WHERE c.relkind = 'r' AND NOT c.relispartition
+          AND c.relnamespace = (SELECT relnamespace FROM pg_class WHERE oid = 'chat_history'::regclass)
+          AND c.relname ~ '^chat_history_[0-9]{4}_[0-9]{2}$'
+        ORDER BY c.relname
+    LOOP
+        referenced := referenced
+                   || format(' UNION ALL SELECT prompt_hash FROM %I UNION ALL SELECT response_hash FROM %I',
+                             archive_name, archive_name);
+    END LOOP;
+    EXECUTE 'DELETE FROM content_blobs b WHERE b.last_stored_at < CURRENT_TIMESTAMP - $1 '
+         || 'AND NOT EXISTS (SELECT 1 FROM (' || referenced || ') r(hash) WHERE r.hash = b.hash)'
+    USING min_age;
+    GET DIAGNOSTICS deleted = ROW_COUNT;
+    RETURN deleted;
+END;
+$$ LANGUAGE plpgsql;
+
+-- =========================================================
+-- Backfill model_key for rows written before the column existed
+-- (provider-model: identifier without the trailing panel suffix)
+-- =========================================================
+
+-- provider-model key of an identifier, as ModelIdentifiers.modelKey
+-- computes it; NULL when there is no suffix to strip. Older frontends
+-- sent provider-model-timestamp-index-random, folded here into one
+-- suffix first so that it is stripped whole.
+CREATE OR REPLACE FUNCTION model_key_of(model_identifier TEXT)
+RETURNS TEXT AS $$
+    SELECT CASE WHEN folded ~ '^[^-]+-.+-[^-]+$'
+                THEN lower(split_part(folded, '-', 1)) || '-' ||
+                     regexp_replace(substring(folded from position('-' in folded) + 1), '-[^-]*$', '')
+           END
+    FROM (SELECT regexp_replace(model_identifier, '-([0-9]{13,})-([0-9]+)-([0-9a-z]*)$', '-\1\2\3') AS folded) id
+$$ LANGUAGE sql IMMUTABLE;
+
+UPDATE chat_history
+SET model_key = model_key_of(model_identifier)
+WHERE model_key IS NULL;
+
+-- =========================================================
+-- Move prompt/response text into content_blobs
+-- (databases created before content_blobs existed; the texts
+--  are copied uncompressed and left to TOAST, new rows are
+--  deflated by the application)
+-- =========================================================
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'chat_history' AND column_name = 'prompt') THEN
+        DROP INDEX IF EXISTS idx_chat_history_prompt_hash;
+        ALTER TABLE chat_history ADD COLUMN IF NOT EXISTS prompt_hash VARCHAR(64);
+        ALTER TABLE chat_history ADD COLUMN IF NOT EXISTS response_hash VARCHAR(64);
+
+        INSERT INTO content_blobs (hash, body, codec, raw_length)
+        SELECT DISTINCT ON (hash) hash, body, 0, length(body)
+        FROM (
+            SELECT encode(sha256(convert_to(prompt, 'UTF8')), 'hex') AS hash, convert_to(prompt, 'UTF8') AS body
+            FROM chat_history WHERE prompt IS NOT NULL
+            UNION ALL
+            SELECT encode(sha256(convert_to(response, 'UTF8')), 'hex'), convert_to(response, 'UTF8')
+            FROM chat_history WHERE response IS NOT NULL
+        ) texts
+        ON CONFLICT (hash) DO NOTHING;
+
+        UPDATE chat_history
+        SET prompt_hash = encode(sha256(convert_to(prompt, 'UTF8')), 'hex'),
+            response_hash = CASE WHEN response IS NULL THEN NULL
+                                 ELSE encode(sha256(convert_to(response, 'UTF8')), 'hex') END;
+
+        ALTER TABLE chat_history ALTER COLUMN prompt_hash SET NOT NULL;
+        ALTER TABLE chat_history DROP COLUMN prompt;
+        ALTER TABLE chat_history DROP COLUMN response;
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'winner_selections' AND column_name = 'prompt') THEN
+        ALTER TABLE winner_selections ADD COLUMN IF NOT EXISTS prompt_hash VARCHAR(64);
+        ALTER TABLE winner_selections ADD COLUMN IF NOT EXISTS response_hash VARCHAR(64);
+
+        INSERT INTO content_blobs (hash, body, codec, raw_length)
+        SELECT DISTINCT ON (hash) hash, body, 0, length(body)
+        FROM (
+            SELECT encode(sha256(convert_to(prompt, 'UTF8')), 'hex') AS hash, convert_to(prompt, 'UTF8') AS body
+            FROM winner_selections
+            UNION ALL
+            SELECT encode(sha256(convert_to(response, 'UTF8')), 'hex'), convert_to(response, 'UTF8')
+            FROM winner_selections
+        ) texts
+        ON CONFLICT (hash) DO NOTHING;
+
+        UPDATE winner_selections
+        SET prompt_hash = encode(sha256(convert_to(prompt, 'UTF8')), 'hex'),
+            response_hash = encode(sha256(convert_to(response, 'UTF8')), 'hex');
+
+        ALTER TABLE winner_selections ALTER COLUMN prompt_hash SET NOT NULL;
+        ALTER TABLE winner_selections ALTER COLUMN response_hash SET NOT NULL;
+        ALTER TABLE winner_selections DROP COLUMN prompt;
+        ALTER TABLE winner_selections DROP COLUMN response;
+    END IF;
+END $$;
+
+-- =========================================================
+-- Convert an unpartitioned chat_history (databases created
+-- before partitioning) by copying it into monthly partitions
+-- =========================================================
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE relname = 'chat_history' AND relkind = 'r') THEN
+        ALTER TABLE chat_history RENAME TO chat_history_unpartitioned;
+        -- The BIGSERIAL sequence would otherwise be dropped with the old table
+        ALTER SEQUENCE chat_history_id_seq OWNED BY NONE;
+        UPDATE chat_history_unpartitioned SET created_at = CURRENT_TIMESTAMP WHERE created_at IS NULL;
+
+        CREATE TABLE chat_history (LIKE chat_history_unpartitioned INCLUDING DEFAULTS)
+            PARTITION BY RANGE (created_at);
+        ALTER TABLE chat_history ALTER COLUMN created_at SET NOT NULL;
+
+        PERFORM chat_history_create_partitions(
+            COALESCE((SELECT min(created_at) FROM chat_history_unpartitioned)::DATE, CURRENT_DATE), 3);
+        INSERT INTO chat_history SELECT * FROM chat_history_unpartitioned;
+        DROP TABLE chat_history_unpartitioned;
+        -- Added after the drop, which frees the chat_history_pkey name
+        ALTER TABLE chat_history ADD PRIMARY KEY (id, created_at);
+    END IF;
+END $$;
+
+SELECT chat_history_create_partitions(CURRENT_DATE, 3);
+
+-- =========================================================
+-- Full-text search vectors
+-- (to_tsvector('english', prompt || newline || response),
+--  written by the backend on insert; older rows are indexed
+--  here when their blobs are uncompressed, and by the backend
+--  otherwise)
+-- =========================================================
+
+ALTER TABLE chat_history ADD COLUMN IF NOT EXISTS search_vector TSVECTOR;
+ALTER TABLE winner_selections ADD COLUMN IF NOT EXISTS search_vector TSVECTOR;
+
+UPDATE chat_history h
+SET search_vector = to_tsvector('english', concat_ws(E'\n',
+        (SELECT convert_from(b.body, 'UTF8') FROM content_blobs b WHERE b.hash = h.prompt_hash),
+        (SELECT convert_from(b.body, 'UTF8') FROM content_blobs b WHERE b.hash = h.response_hash)))
+WHERE h.search_vector IS NULL
+  AND NOT EXISTS (SELECT 1 FROM content_blobs b
+                  WHERE b.hash IN (h.prompt_hash, h.response_hash) AND b.codec <> 0);
+
+UPDATE winner_selections w
+SET search_vector = to_tsvector('english', concat_ws(E'\n',
+        (SELECT convert_from(b.body, 'UTF8') FROM content_blobs b WHERE b.hash = w.prompt_hash),
+        (SELECT convert_from(b.body, 'UTF8') FROM content_blobs b WHERE b.hash = w.response_hash)))
+WHERE w.search_vector IS NULL
+  AND NOT EXISTS (SELECT 1 FROM content_blobs b
+                  WHERE b.hash IN (w.prompt_hash, w.response_hash) AND b.codec <> 0);
+
+-- =========================================================
+-- Indexes (performance-critical)
+-- =========================================================
+
+-- API keys lookup
+CREATE INDEX IF NOT EXISTS idx_api_keys_session_provider
+    ON api_keys(session_id, provider);
+
+-- Chat history lookups (keyset pagination on created_at, id)
+CREATE INDEX IF NOT EXISTS idx_chat_history_session_created
+    ON chat_history(session_id, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_chat_history_model_key_created
+    ON chat_history(model_key, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_chat_history_model
+    ON chat_history(model_identifier);
+
+-- Conversation window rebuild (latest turns of one session and model)
+CREATE INDEX IF NOT EXISTS idx_chat_history_session_model
+    ON chat_history(session_id, model_key, created_at);
+
+-- Reply cache second tier (exact prompt match on the content hash)
+CREATE INDEX IF NOT EXISTS idx_chat_history_prompt
+    ON chat_history(prompt_hash, created_at DESC);
+
+-- Reply cache history tier (normalized prompt within the TTL)
+CREATE INDEX IF NOT EXISTS idx_chat_history_prompt_key
+    ON chat_history(prompt_key, created_at);
+
+-- Hourly rollup (time range scans within the current partition)
+CREATE INDEX IF NOT EXISTS idx_chat_history_created_brin
+    ON chat_history USING brin (created_at);
+
+-- Full-text search
+CREATE INDEX IF NOT EXISTS idx_chat_history_search
+    ON chat_history USING gin (search_vector);
+
+CREATE INDEX IF NOT EXISTS idx_winner_selections_search
+    ON winner_selections USING gin (search_vector);
+
+-- Winner selections lookup
+CREATE INDEX IF NOT EXISTS idx_winner_selections_session
+    ON winner_selections(session_id);
+
+-- =========================================================
+-- Backfill hourly stats for history written before the rollup
+-- existed (the backend keeps recent hours up to date)
+-- =========================================================
+
+INSERT INTO model_hourly_stats (hour_start, model_key, calls, replies, timed_calls,
+                                total_response_time_ms, max_response_time_ms)
+SELECT date_trunc('hour', created_at), model_key, count(*), count(response_hash),
+       count(response_time_ms), COALESCE(sum(response_time_ms), 0), max(response_time_ms)
+FROM chat_history
+WHERE model_key IS NOT NULL
+GROUP BY 1, 2
+ON CONFLICT (hour_start, model_key) DO NOTHING;
+
+-- =========================================================
+-- Id sequences
+-- Hibernate allocates chat_history and winner_selections ids
+-- 50 at a time (pooled optimizer) so inserts can be batched
+-- =========================================================
+
+ALTER SEQUENCE chat_history_id_seq INCREMENT BY 50;
+ALTER SEQUENCE winner_selections_id_seq INCREMENT BY 50;
+
+-- =========================================================
+-- Trigger to auto-update updated_at column
+-- =========================================================
+
+CREATE OR REPLACE FUNCTION update_updated_at_column()
+RETURNS TRIGGER AS $$
+BEGIN
+    NEW.updated_at = CURRENT_TIMESTAMP;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_update_api_keys_updated_at ON api_keys;
+CREATE TRIGGER trg_update_api_keys_updated_at
+BEFORE UPDATE ON api_keys
+FOR EACH ROW
+EXECUTE FUNCTION update_updated_at_column();
+
+-- =========================================================
+-- End of schema
+-- =========================================================
@@ -0,0 +1,126 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class ContentStoreTest {
+
+    private static final String SHORT = "What is the capital of France?";
+    private static final String LONG = "The capital of France is Paris. ".repeat(20);
+
+    private final ContentBlobRepository contentBlobRepository = mock(ContentBlobRepository.class);
+    private final Map<String, ContentBlob> rows = new HashMap<>();
+    private final ContentStore store = new ContentStore(100, 100);
+
+    ContentStoreTest() {
+        ReflectionTestUtils.setField(store, "contentBlobRepository", contentBlobRepository);
+        when(contentBlobRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            List<ContentBlob> saved = new ArrayList<>();
+            invocation.<Iterable<ContentBlob>>getArgument(0).forEach(blob -> {
+                rows.put(blob.getHash(), blob);
+                saved.add(blob);
+            });
+            return saved;
+        });
+        when(contentBlobRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<ContentBlob> found = new ArrayList<>();
+            invocation.<Iterable<String>>getArgument(0).forEach(hash -> {
+                if (rows.containsKey(hash)) {
+                    found.add(rows.get(hash));
+                }
+            });
+            return found;
+        });
+    }
+
+    @Test
+    void hashesAreHexSha256OfTheUtf8Bytes() {
+        assertThat(ContentStore.hash("abc"))
+            .isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    @Test
+    void onlyTextsThatShrinkAreDeflated() {
+        store.storeAll(List.of(SHORT, LONG));
+
+        ContentBlob shortBlob = rows.get(ContentStore.hash(SHORT));
+        ContentBlob longBlob = rows.get(ContentStore.hash(LONG));
+        assertThat(shortBlob.getCodec()).isEqualTo(ContentBlob.CODEC_NONE);
+        assertThat(longBlob.getCodec()).isEqualTo(ContentBlob.CODEC_DEFLATE);
+        assertThat(longBlob.getBody().length).isLessThan(longBlob.getRawLength());
+        assertThat(store.stats()).containsEntry("blobsWritten", 2L);
+        assertThat((Double) store.stats().get("compressionRatio")).isGreaterThan(1.0);
+    }
+
+    @Test
+    void storedTextsReadBackUnchanged() {
+        String unicode = "Größe und Maß: 東京 ".repeat(10);
+        store.storeAll(List.of(SHORT, LONG, unicode));
+
+        assertThat(store.getAll(List.of(ContentStore.hash(SHORT), ContentStore.hash(LONG), ContentStore.hash(unicode))))
+            .containsValues(SHORT, LONG, unicode)
+            .hasSize(3);
+        assertThat(store.get(ContentStore.hash(LONG))).contains(LONG);
+    }
+
+    @Test
+    void duplicatesAreWrittenOnce() {
+        List<String> texts = new ArrayList<>(List.of(SHORT, SHORT, LONG));
+        texts.add(null);
+        store.storeAll(texts);
+        store.storeAll(List.of(SHORT, LONG));
+
+        verify(contentBlobRepository, times(1)).saveAll(anyIterable());
+        assertThat(store.stats()).containsEntry("blobsWritten", 2L).containsEntry("duplicatesSkipped", 3L);
+    }
+
+    @Test
+    void hashesCountAsStoredOnlyOnceTheTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.storeAll(List.of(SHORT));
+            // Not committed yet, so a second writer still offers the text
+            store.storeAll(List.of(SHORT));
+            verify(contentBlobRepository, times(2)).saveAll(anyIterable());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            store.storeAll(List.of(SHORT));
+            verify(contentBlobRepository, times(2)).saveAll(anyIterable());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void decodedTextsAreServedFromTheCache() {
+        store.storeAll(List.of(SHORT));
+        String hash = ContentStore.hash(SHORT);
+        assertThat(store.get(hash)).contains(SHORT);
+        rows.clear();
+
+        assertThat(store.get(hash)).contains(SHORT);
+        verify(contentBlobRepository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    void missingHashesAreLeftOutOfTheResult() {
+        store.storeAll(List.of(SHORT));
+
+        assertThat(store.getAll(List.of(ContentStore.hash(SHORT), ContentStore.hash("never stored"))))
+            .containsOnlyKeys(ContentStore.hash(SHORT));
+        assertThat(store.get(null)).isEmpty();
+    }
+}
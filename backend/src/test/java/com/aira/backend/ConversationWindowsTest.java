@@ -0,0 +1,183 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ConversationWindowsTest {
+
+    private static final String SESSION = "session-1";
+    private static final String MODEL = "openai-gpt-4o";
+
+    private final ChatHistoryRepository chatHistoryRepository = mock(ChatHistoryRepository.class);
+    private final ContentStore contentStore = mock(ContentStore.class);
+    private final Map<String, String> blobs = new HashMap<>();
+    private final ConversationWindows windows = new ConversationWindows(100);
+
+    ConversationWindowsTest() {
+        ReflectionTestUtils.setField(windows, "chatHistoryRepository", chatHistoryRepository);
+        ReflectionTestUtils.setField(windows, "contentStore", contentStore);
+        ReflectionTestUtils.setField(windows, "enabled", true);
+        ReflectionTestUtils.setField(windows, "maxTokens", 100);
+        ReflectionTestUtils.setField(windows, "maxTurns", 20);
+        ReflectionTestUtils.setField(windows, "idleSeconds", 1800L);
+        when(chatHistoryRepository.findConversationTurns(anyString(), anyString(), any(Pageable.class)))
+            .thenReturn(List.of());
+        when(contentStore.getAll(anyCollection())).thenAnswer(invocation -> {
+            Map<String, String> texts = new HashMap<>();
+            for (Object hash : invocation.getArgument(0, Collection.class)) {
+                if (blobs.containsKey(hash)) {
+                    texts.put((String) hash, blobs.get(hash));
+                }
+            }
+            return texts;
+        });
+    }
+
+    @Test
+    void estimatesFourCharactersPerToken() {
+        assertThat(ConversationWindows.estimateTokens(null)).isZero();
+        assertThat(ConversationWindows.estimateTokens("")).isZero();
+        assertThat(ConversationWindows.estimateTokens("abcd")).isEqualTo(1);
+        assertThat(ConversationWindows.estimateTokens("abcde")).isEqualTo(2);
+    }
+
+    @Test
+    void dropsTheOldestTurnsOverTheTurnLimit() {
+        ReflectionTestUtils.setField(windows, "maxTurns", 3);
+        assertThat(windows.history(SESSION, MODEL, "first")).isEmpty();
+        for (int i = 1; i <= 5; i++) {
+            windows.append(SESSION, MODEL, "q" + i, "a" + i);
+        }
+
+        assertThat(windows.history(SESSION, MODEL, "next"))
+            .containsExactly(turn(3), turn(4), turn(5));
+        assertThat(windows.stats()).containsEntry("trimmedTurns", 2L).containsEntry("hits", 1L);
+    }
+
+    @Test
+    void dropsTheOldestTurnsOverTheTokenLimit() {
+        ReflectionTestUtils.setField(windows, "maxTokens", 10);
+        windows.history(SESSION, MODEL, "first");
+        // Each turn is 2 + 2 tokens
+        for (int i = 1; i <= 3; i++) {
+            windows.append(SESSION, MODEL, "prompt " + i, "reply " + i);
+        }
+
+        assertThat(windows.history(SESSION, MODEL, ""))
+            .containsExactly(new ConversationWindows.Turn("prompt 2", "reply 2"),
+                             new ConversationWindows.Turn("prompt 3", "reply 3"));
+    }
+
+    @Test
+    void theNewPromptCountsAgainstTheBudget() {
+        ReflectionTestUtils.setField(windows, "maxTokens", 20);
+        windows.history(SESSION, MODEL, "first");
+        for (int i = 1; i <= 4; i++) {
+            windows.append(SESSION, MODEL, "prompt " + i, "reply " + i);
+        }
+
+        assertThat(windows.history(SESSION, MODEL, "x".repeat(12))).hasSize(4);
+        assertThat(windows.history(SESSION, MODEL, "x".repeat(24)))
+            .containsExactly(new ConversationWindows.Turn("prompt 2", "reply 2"),
+                             new ConversationWindows.Turn("prompt 3", "reply 3"),
+                             new ConversationWindows.Turn("prompt 4", "reply 4"));
+        assertThat(windows.history(SESSION, MODEL, "x".repeat(80))).isEmpty();
+    }
+
+    @Test
+    void rebuildStopsAtTheTurnThatStartedTheConversation() {
+        // Newest first, as the repository returns them; turn 2 was sent without context
+        when(chatHistoryRepository.findConversationTurns(anyString(), anyString(), any(Pageable.class)))
+            .thenReturn(List.of(stored(4, true), stored(3, true), stored(2, false), stored(1, true)));
+
+        assertThat(windows.history(SESSION, MODEL, "next"))
+            .containsExactly(turn(2), turn(3), turn(4));
+        assertThat(windows.stats()).containsEntry("rebuilds", 1L);
+    }
+
+    @Test
+    void rebuildSkipsTurnsWhoseTextsAreGone() {
+        when(chatHistoryRepository.findConversationTurns(anyString(), anyString(), any(Pageable.class)))
+            .thenReturn(List.of(stored(3, true), stored(2, true), stored(1, false)));
+        blobs.remove("reply-hash-2");
+
+        assertThat(windows.history(SESSION, MODEL, "next")).containsExactly(turn(1), turn(3));
+    }
+
+    @Test
+    void resetStartsAnEmptyWindowWithoutReadingHistory() {
+        windows.reset(SESSION, MODEL);
+        windows.append(SESSION, MODEL, "q1", "a1");
+
+        assertThat(windows.history(SESSION, MODEL, "next")).containsExactly(turn(1));
+        verify(chatHistoryRepository, never()).findConversationTurns(anyString(), anyString(), any(Pageable.class));
+    }
+
+    @Test
+    void appendIgnoresWindowsThatAreNotCached() {
+        windows.append(SESSION, MODEL, "q1", "a1");
+
+        assertThat(windows.stats()).containsEntry("windows", 0);
+    }
+
+    @Test
+    void idleWindowsExpireAndAreRebuilt() throws InterruptedException {
+        windows.history(SESSION, MODEL, "first");
+        windows.append(SESSION, MODEL, "q1", "a1");
+        ReflectionTestUtils.setField(windows, "idleSeconds", 0L);
+        Thread.sleep(5);
+        windows.expireIdle();
+
+        assertThat(windows.stats()).containsEntry("windows", 0).containsEntry("expirations", 1L);
+        assertThat(windows.history(SESSION, MODEL, "next")).isEmpty();
+        assertThat(windows.stats()).containsEntry("rebuilds", 2L);
+    }
+
+    @Test
+    void noContextWithoutASessionOrWhenDisabled() {
+        assertThat(windows.history(null, MODEL, "prompt")).isEmpty();
+        ReflectionTestUtils.setField(windows, "enabled", false);
+        assertThat(windows.history(SESSION, MODEL, "prompt")).isEmpty();
+
+        verify(chatHistoryRepository, never()).findConversationTurns(anyString(), anyString(), any(Pageable.class));
+    }
+
+    private static ConversationWindows.Turn turn(int i) {
+        return new ConversationWindows.Turn("q" + i, "a" + i);
+    }
+
+    private ChatHistoryRepository.ConversationTurn stored(int i, boolean hasContext) {
+        blobs.put("prompt-hash-" + i, "q" + i);
+        blobs.put("reply-hash-" + i, "a" + i);
+        return new ChatHistoryRepository.ConversationTurn() {
+            @Override
+            public String getPromptHash() {
+                return "prompt-hash-" + i;
+            }
+
+            @Override
+            public String getResponseHash() {
+                return "reply-hash-" + i;
+            }
+
+            @Override
+            public boolean isHasContext() {
+                return hasContext;
+            }
+        };
+    }
+}
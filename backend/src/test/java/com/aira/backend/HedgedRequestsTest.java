@@ -0,0 +1,159 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class HedgedRequestsTest {
+
+    private static final String PROVIDER = "openai";
+    private static final String MODEL = "gpt-4o";
+    private static final HttpRequest REQUEST = HttpRequest.newBuilder(URI.create("https://api.openai.com/v1/chat/completions")).build();
+
+    private final HedgedRequests hedgedRequests = new HedgedRequests();
+    private final ProviderTransport transport = mock(ProviderTransport.class);
+    private final ProviderMetrics metrics = mock(ProviderMetrics.class);
+    private final ProviderLimiter limiter = new ProviderLimiter(List.of(), List.of());
+    private final CompletableFuture<HttpResponse<InputStream>> primary = new CompletableFuture<>();
+    private final CompletableFuture<HttpResponse<InputStream>> hedge = new CompletableFuture<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    HedgedRequestsTest() {
+        ReflectionTestUtils.setField(hedgedRequests, "hedgedProviders", Set.of(PROVIDER));
+        ReflectionTestUtils.setField(hedgedRequests, "minDelayMs", 10L);
+        ReflectionTestUtils.setField(hedgedRequests, "minSamples", 20L);
+        ReflectionTestUtils.setField(hedgedRequests, "providerTransport", transport);
+        ReflectionTestUtils.setField(hedgedRequests, "providerLimiter", limiter);
+        ReflectionTestUtils.setField(hedgedRequests, "providerMetrics", metrics);
+        ReflectionTestUtils.setField(limiter, "defaultMaxConcurrent", 16);
+        ReflectionTestUtils.setField(limiter, "defaultRatePerSecond", 10.0);
+        ReflectionTestUtils.setField(limiter, "minRatePerSecond", 0.5);
+        ReflectionTestUtils.setField(limiter, "queueSize", 64);
+        ReflectionTestUtils.setField(limiter, "queueTimeoutMs", 10_000L);
+
+        when(metrics.upstreamPercentileMs(anyString(), anyString(), anyDouble(), anyLong())).thenReturn(OptionalDouble.of(10));
+        when(transport.<InputStream>sendAsync(any(), any())).thenReturn(primary).thenReturn(hedge);
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void theHedgeWinsWhenThePrimaryIsSlow() throws Exception {
+        Future<HttpResponse<InputStream>> call = send();
+        awaitHedge();
+        HttpResponse<InputStream> hedgeResponse = response(200);
+        hedge.complete(hedgeResponse);
+
+        assertThat(call.get(5, TimeUnit.SECONDS)).isSameAs(hedgeResponse);
+        assertThat(primary).isCancelled();
+        verify(metrics).recordHedge(PROVIDER, MODEL, HedgedRequests.FIRED);
+        verify(metrics).recordHedge(PROVIDER, MODEL, HedgedRequests.WON);
+        assertThat(inUse()).isZero();
+    }
+
+    @Test
+    void theHedgeLosesToALaterSuccessAndItsBodyIsClosed() throws Exception {
+        Future<HttpResponse<InputStream>> call = send();
+        awaitHedge();
+        HttpResponse<InputStream> hedgeResponse = response(500);
+        HttpResponse<InputStream> primaryResponse = response(200);
+        hedge.complete(hedgeResponse);
+        primary.complete(primaryResponse);
+
+        assertThat(call.get(5, TimeUnit.SECONDS)).isSameAs(primaryResponse);
+        assertThat(closed(hedgeResponse)).isTrue();
+        assertThat(closed(primaryResponse)).isFalse();
+        verify(metrics, never()).recordHedge(PROVIDER, MODEL, HedgedRequests.WON);
+    }
+
+    @Test
+    void aPrimaryAnsweringWithinTheDelayIsNotHedged() throws Exception {
+        HttpResponse<InputStream> primaryResponse = response(200);
+        primary.complete(primaryResponse);
+
+        assertThat(send().get(5, TimeUnit.SECONDS)).isSameAs(primaryResponse);
+        verify(transport, times(1)).sendAsync(any(), any());
+        verify(metrics, never()).recordHedge(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void noHedgeWithoutAFreeLimiterToken() throws Exception {
+        ReflectionTestUtils.setField(limiter, "defaultRatePerSecond", 0.0001);
+        // Spends the only token of the bucket
+        limiter.tryAcquire(PROVIDER).orElseThrow().close();
+        Future<HttpResponse<InputStream>> call = send();
+        Thread.sleep(50);
+        HttpResponse<InputStream> primaryResponse = response(200);
+        primary.complete(primaryResponse);
+
+        assertThat(call.get(5, TimeUnit.SECONDS)).isSameAs(primaryResponse);
+        verify(transport, times(1)).sendAsync(any(), any());
+    }
+
+    private Future<HttpResponse<InputStream>> send() {
+        return executor.submit(() -> hedgedRequests.send(PROVIDER, MODEL, REQUEST, Deadline.after(5_000)));
+    }
+
+    private void awaitHedge() {
+        verify(transport, timeout(5_000).times(2)).sendAsync(any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private int inUse() {
+        return (Integer) ((Map<String, Object>) limiter.stats().get(PROVIDER)).get("inUse");
+    }
+
+    private static HttpResponse<InputStream> response(int status) {
+        @SuppressWarnings("unchecked")
+        HttpResponse<InputStream> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(status);
+        when(response.body()).thenReturn(new TrackedBody());
+        return response;
+    }
+
+    private static boolean closed(HttpResponse<InputStream> response) {
+        return ((TrackedBody) response.body()).closed;
+    }
+
+    private static final class TrackedBody extends ByteArrayInputStream {
+        volatile boolean closed;
+
+        TrackedBody() {
+            super(new byte[0]);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class KeyMaterialServiceTest {
+
+    private static final String SECRET = "YourSecretKey12345";
+    private static final String API_KEY = "sk-test-0123456789";
+
+    private final KeyMaterialService keys = new KeyMaterialService(100);
+
+    KeyMaterialServiceTest() throws GeneralSecurityException {
+        ReflectionTestUtils.setField(keys, "encryptionKey", SECRET);
+        ReflectionTestUtils.setField(keys, "keyCacheTtlSeconds", 300L);
+        keys.deriveKeys();
+    }
+
+    @Test
+    void encryptsWithGcmAndAFreshIvEachTime() throws GeneralSecurityException {
+        String first = keys.encrypt(API_KEY);
+        String second = keys.encrypt(API_KEY);
+
+        assertThat(first).startsWith("gcm:").isNotEqualTo(second);
+        assertThat(keys.decrypt(first)).isEqualTo(API_KEY);
+        assertThat(keys.decrypt(second)).isEqualTo(API_KEY);
+    }
+
+    @Test
+    void decryptsKeysSavedInTheLegacyEcbFormat() throws GeneralSecurityException {
+        assertThat(keys.decrypt(legacyEncrypt(API_KEY))).isEqualTo(API_KEY);
+    }
+
+    @Test
+    void rejectsATamperedGcmCiphertext() throws GeneralSecurityException {
+        byte[] payload = Base64.getDecoder().decode(keys.encrypt(API_KEY).substring("gcm:".length()));
+        payload[payload.length - 1] ^= 1;
+
+        assertThatThrownBy(() -> keys.decrypt("gcm:" + Base64.getEncoder().encodeToString(payload)))
+            .isInstanceOf(AEADBadTagException.class);
+    }
+
+    @Test
+    void reusesTheDecryptedKeyForTheSameSessionAndProvider() throws GeneralSecurityException {
+        String encrypted = keys.encrypt(API_KEY);
+        assertThat(keys.decryptForSession("session-1", "OpenAI", encrypted)).isEqualTo(API_KEY);
+        // A different secret would make any real decrypt fail, so success means the cache answered
+        rotateSecret();
+
+        assertThat(keys.decryptForSession("session-1", "openai", encrypted)).isEqualTo(API_KEY);
+        assertThatThrownBy(() -> keys.decryptForSession("session-2", "openai", encrypted))
+            .isInstanceOf(AEADBadTagException.class);
+    }
+
+    @Test
+    void aNewCiphertextOrAnEvictionBypassesTheCache() throws GeneralSecurityException {
+        String encrypted = keys.encrypt(API_KEY);
+        keys.decryptForSession("session-1", "openai", encrypted);
+        String replaced = keys.encrypt("sk-test-replaced");
+
+        assertThat(keys.decryptForSession("session-1", "openai", replaced)).isEqualTo("sk-test-replaced");
+        keys.evict("session-1", "openai");
+        rotateSecret();
+        assertThatThrownBy(() -> keys.decryptForSession("session-1", "openai", replaced))
+            .isInstanceOf(AEADBadTagException.class);
+    }
+
+    @Test
+    void expiredEntriesAreDecryptedAgain() throws GeneralSecurityException {
+        ReflectionTestUtils.setField(keys, "keyCacheTtlSeconds", 0L);
+        String encrypted = keys.encrypt(API_KEY);
+        keys.decryptForSession("session-1", "openai", encrypted);
+        rotateSecret();
+
+        assertThatThrownBy(() -> keys.decryptForSession("session-1", "openai", encrypted))
+            .isInstanceOf(AEADBadTagException.class);
+    }
+
+    private void rotateSecret() throws GeneralSecurityException {
+        ReflectionTestUtils.setField(keys, "encryptionKey", "AnotherSecretKey");
+        keys.deriveKeys();
+    }
+
+    // The format written before the switch to GCM: AES/ECB under the first 16 characters of the secret
+    private static String legacyEncrypt(String data) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(SECRET.substring(0, 16).getBytes(StandardCharsets.UTF_8), "AES"));
+        return Base64.getEncoder().encodeToString(cipher.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+}
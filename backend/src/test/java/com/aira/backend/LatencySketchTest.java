@@ -0,0 +1,100 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class LatencySketchTest {
+
+    private static final double[] QUANTILES = { 0.0, 0.1, 0.5, 0.9, 0.95, 0.99, 1.0 };
+
+    @Test
+    void emptySketchHasNoQuantiles() {
+        LatencySketch sketch = new LatencySketch();
+
+        assertThat(sketch.count()).isZero();
+        assertThat(sketch.quantile(0.5)).isNaN();
+    }
+
+    @Test
+    void quantilesStayWithinTheRelativeAccuracy() {
+        Random random = new Random(42);
+        long[] samples = new long[20_000];
+        LatencySketch sketch = new LatencySketch();
+        for (int i = 0; i < samples.length; i++) {
+            // Log-normal around 800 ms, like provider response times
+            samples[i] = Math.max(1, Math.round(Math.exp(Math.log(800) + 0.8 * random.nextGaussian())));
+            sketch.add(samples[i]);
+        }
+        Arrays.sort(samples);
+
+        assertThat(sketch.count()).isEqualTo(samples.length);
+        for (double q : QUANTILES) {
+            long exact = samples[(int) Math.floor(q * (samples.length - 1))];
+            assertThat(sketch.quantile(q)).isCloseTo(exact, within(exact * LatencySketch.RELATIVE_ACCURACY));
+        }
+    }
+
+    @Test
+    void mergedSketchesAnswerLikeOneSketchOverAllSamples() {
+        LatencySketch fast = new LatencySketch();
+        LatencySketch slow = new LatencySketch();
+        LatencySketch all = new LatencySketch();
+        for (long millis = 1; millis <= 5_000; millis++) {
+            (millis % 2 == 0 ? fast : slow).add(millis * 3);
+            all.add(millis * 3);
+        }
+        LatencySketch merged = new LatencySketch();
+        merged.merge(fast);
+        merged.merge(new LatencySketch());
+        merged.merge(slow);
+
+        assertThat(merged.count()).isEqualTo(all.count());
+        for (double q : QUANTILES) {
+            assertThat(merged.quantile(q)).isEqualTo(all.quantile(q));
+        }
+    }
+
+    @Test
+    void mergingGrowsTheBinRangeInBothDirections() {
+        LatencySketch middle = new LatencySketch();
+        middle.add(1_000);
+        LatencySketch low = new LatencySketch();
+        low.add(2);
+        LatencySketch high = new LatencySketch();
+        high.add(600_000);
+
+        middle.merge(high);
+        middle.merge(low);
+
+        assertThat(middle.count()).isEqualTo(3);
+        assertThat(middle.quantile(0.0)).isCloseTo(2, within(2 * LatencySketch.RELATIVE_ACCURACY));
+        assertThat(middle.quantile(0.5)).isCloseTo(1_000, within(1_000 * LatencySketch.RELATIVE_ACCURACY));
+        assertThat(middle.quantile(1.0)).isCloseTo(600_000, within(600_000 * LatencySketch.RELATIVE_ACCURACY));
+    }
+
+    @Test
+    void valuesOutsideTheRangeAreClamped() {
+        LatencySketch sketch = new LatencySketch();
+        sketch.add(0);
+        sketch.add(-5);
+        sketch.add(Long.MAX_VALUE);
+
+        assertThat(sketch.quantile(0.0)).isCloseTo(1, within(LatencySketch.RELATIVE_ACCURACY));
+        assertThat(sketch.quantile(1.0)).isCloseTo(86_400_000, within(86_400_000 * LatencySketch.RELATIVE_ACCURACY));
+    }
+
+    @Test
+    void clearEmptiesTheSketch() {
+        LatencySketch sketch = new LatencySketch();
+        sketch.add(100);
+        sketch.clear();
+        sketch.add(5);
+
+        assertThat(sketch.count()).isEqualTo(1);
+        assertThat(sketch.quantile(1.0)).isCloseTo(5, within(5 * LatencySketch.RELATIVE_ACCURACY));
+    }
+}
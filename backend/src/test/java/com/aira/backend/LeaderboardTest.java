@@ -0,0 +1,107 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class LeaderboardTest {
+
+    private static final String GPT = "openai-gpt-4o";
+    private static final String CLAUDE = "claude-claude-3-5-sonnet";
+
+    private final LeaderboardRepository leaderboardRepository = mock(LeaderboardRepository.class);
+    private final Leaderboard leaderboard = new Leaderboard();
+
+    LeaderboardTest() {
+        ReflectionTestUtils.setField(leaderboard, "leaderboardRepository", leaderboardRepository);
+    }
+
+    @Test
+    void panelsOfTheSameModelShareOneCounter() {
+        leaderboard.recordAppearance(GPT + "-17342870000000k3j9x");
+        leaderboard.recordAppearance(GPT + "-1734287000000-1-a1b2c");
+        leaderboard.recordWin(GPT + "-17342870000000k3j9x");
+
+        assertThat(leaderboard.standings()).singleElement()
+            .satisfies(row -> assertThat(row)
+                .containsEntry("model", GPT)
+                .containsEntry("wins", 1L)
+                .containsEntry("appearances", 2L)
+                .containsEntry("winRate", 0.5));
+    }
+
+    @Test
+    void standingsAreOrderedByWins() {
+        leaderboard.recordAppearance(GPT + "-1a");
+        leaderboard.recordAppearance(CLAUDE + "-1b");
+        leaderboard.recordWin(CLAUDE + "-1b");
+
+        assertThat(leaderboard.standings()).extracting(row -> row.get("model")).containsExactly(CLAUDE, GPT);
+    }
+
+    @Test
+    void checkpointWritesOnlyTheDeltasSinceTheLastOne() {
+        leaderboard.recordAppearance(GPT + "-1a");
+        leaderboard.recordWin(GPT + "-1a");
+        leaderboard.checkpoint();
+        verify(leaderboardRepository).addCounts(GPT, 1, 1);
+
+        leaderboard.recordAppearance(GPT + "-1a");
+        leaderboard.checkpoint();
+        verify(leaderboardRepository).addCounts(GPT, 0, 1);
+
+        // Nothing new, nothing written
+        leaderboard.checkpoint();
+        verify(leaderboardRepository, never()).addCounts(GPT, 0, 0);
+    }
+
+    @Test
+    void restoredTotalsAreNotWrittenAgain() {
+        when(leaderboardRepository.findAll()).thenReturn(List.of(entry(GPT, 7, 20)));
+        leaderboard.restore();
+        leaderboard.checkpoint();
+        verify(leaderboardRepository, never()).addCounts(anyString(), anyLong(), anyLong());
+
+        leaderboard.recordWin(GPT + "-1a");
+        leaderboard.checkpoint();
+        verify(leaderboardRepository).addCounts(GPT, 1, 0);
+        assertThat(leaderboard.standings().get(0)).containsEntry("wins", 8L).containsEntry("appearances", 20L);
+    }
+
+    @Test
+    void aFailedCheckpointKeepsItsDeltasForTheNextOne() {
+        leaderboard.recordAppearance(GPT + "-1a");
+        doThrow(new QueryTimeoutException("timeout")).when(leaderboardRepository).addCounts(GPT, 0, 1);
+        leaderboard.checkpoint();
+
+        leaderboard.recordAppearance(GPT + "-1a");
+        leaderboard.checkpoint();
+        verify(leaderboardRepository).addCounts(GPT, 0, 2);
+    }
+
+    @Test
+    void anEmptyLeaderboardCheckpointsNothing() {
+        leaderboard.flush();
+
+        verifyNoInteractions(leaderboardRepository);
+    }
+
+    private static LeaderboardEntry entry(String modelKey, long wins, long appearances) {
+        LeaderboardEntry entry = new LeaderboardEntry();
+        entry.setModelKey(modelKey);
+        entry.setWins(wins);
+        entry.setAppearances(appearances);
+        return entry;
+    }
+}
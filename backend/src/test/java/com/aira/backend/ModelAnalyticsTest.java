@@ -0,0 +1,84 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ModelAnalyticsTest {
+
+    private static final long MINUTE_MS = 60_000L;
+    // Midnight, so it starts a slot in every window
+    private static final long START = 20_000L * 24 * 60 * MINUTE_MS;
+    private static final String GPT = "openai-gpt-4o-17342870000000k3j9x";
+    private static final String CLAUDE = "claude-claude-3-5-sonnet-20241022-17342870000001x8q1b";
+
+    private final ModelAnalytics analytics = new ModelAnalytics();
+
+    @Test
+    void aggregatesRepliesAndWinsPerModelKey() {
+        analytics.recordReply(GPT, 100, false, START);
+        analytics.recordReply("openai-gpt-4o-1734287000000-1-a1b2c", 300, false, START + MINUTE_MS);
+        analytics.recordReply(CLAUDE, 200, false, START);
+        analytics.recordWin(GPT, START + 2 * MINUTE_MS);
+
+        List<Map<String, Object>> rows = analytics.window("hour", null, START + 3 * MINUTE_MS);
+
+        assertThat(rows).extracting(row -> row.get("model"))
+            .containsExactly("claude-claude-3-5-sonnet-20241022", "openai-gpt-4o");
+        assertThat(rows.get(1))
+            .containsEntry("appearances", 2L)
+            .containsEntry("wins", 1L)
+            .containsEntry("winRate", 0.5)
+            .containsEntry("latencySamples", 2L);
+        assertThat(analytics.window("hour", "claude-claude-3-5-sonnet-20241022", START)).hasSize(1);
+    }
+
+    @Test
+    void cachedRepliesAreAppearancesWithoutLatency() {
+        analytics.recordReply(GPT, 5, true, START);
+
+        assertThat(analytics.window("day", null, START)).singleElement().satisfies(row -> assertThat(row)
+            .containsEntry("appearances", 1L)
+            .containsEntry("latencySamples", 0L)
+            .containsEntry("p50ResponseTimeMs", null));
+    }
+
+    @Test
+    void slotsExpireOneAtATime() {
+        analytics.recordReply(GPT, 100, false, START);
+
+        // The hour window is 12 slots of 5 minutes
+        assertThat(analytics.window("hour", null, START + 59 * MINUTE_MS)).hasSize(1);
+        assertThat(analytics.window("hour", null, START + 60 * MINUTE_MS)).isEmpty();
+        assertThat(analytics.window("day", null, START + 60 * MINUTE_MS)).hasSize(1);
+        assertThat(analytics.window("day", null, START + 24 * 60 * MINUTE_MS)).isEmpty();
+        assertThat(analytics.window("week", null, START + 24 * 60 * MINUTE_MS)).hasSize(1);
+    }
+
+    @Test
+    void aSlotIsResetWhenTheRingComesBackToIt() {
+        analytics.recordReply(GPT, 100, false, START);
+        // Same hour-ring slot one lap later, but a different slot of the day ring
+        analytics.recordReply(GPT, 900, false, START + 60 * MINUTE_MS);
+
+        assertThat(analytics.window("hour", null, START + 60 * MINUTE_MS)).singleElement().satisfies(row -> {
+            assertThat(row).containsEntry("appearances", 1L).containsEntry("latencySamples", 1L);
+            assertThat((Long) row.get("p50ResponseTimeMs")).isCloseTo(900L, withinPercentage(1));
+        });
+        assertThat(analytics.window("day", null, START + 60 * MINUTE_MS)).singleElement().satisfies(row -> {
+            assertThat(row).containsEntry("appearances", 2L).containsEntry("latencySamples", 2L);
+            assertThat((Long) row.get("p50ResponseTimeMs")).isCloseTo(100L, withinPercentage(1));
+        });
+    }
+
+    @Test
+    void rejectsUnknownWindows() {
+        assertThatThrownBy(() -> analytics.window("month", null, START))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("month");
+    }
+}
@@ -0,0 +1,116 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ModelCatalogTest {
+
+    private final ProviderTransport transport = mock(ProviderTransport.class);
+    private final ModelCatalog catalog = new ModelCatalog(List.of("openai=sk-test"));
+
+    @TempDir
+    Path dir;
+
+    ModelCatalogTest() {
+        ReflectionTestUtils.setField(catalog, "catalogFile", "");
+        ReflectionTestUtils.setField(catalog, "validate", true);
+        ReflectionTestUtils.setField(catalog, "excludePattern", ".*(embed|whisper|tts).*");
+        ReflectionTestUtils.setField(catalog, "providerTransport", transport);
+        ReflectionTestUtils.setField(catalog, "providerEndpoints", new ProviderEndpoints(List.of()));
+    }
+
+    @Test
+    void validatesAgainstTheBuiltInModels() {
+        catalog.load();
+
+        assertThat(catalog.contains("openai", "gpt-4o")).isTrue();
+        assertThat(catalog.contains("OpenAI", "gpt-4o")).isTrue();
+        assertThat(catalog.contains("openai", "gpt-5-unreleased")).isFalse();
+        assertThat(catalog.models("claude")).contains("claude-3-5-sonnet-20241022");
+        assertThat(catalog.models("unknown")).isEmpty();
+    }
+
+    @Test
+    void everythingIsAcceptedWhenValidationIsOff() {
+        ReflectionTestUtils.setField(catalog, "validate", false);
+        catalog.load();
+
+        assertThat(catalog.contains("openai", "gpt-5-unreleased")).isTrue();
+    }
+
+    @Test
+    void theCatalogFileReplacesAProvidersList() throws IOException {
+        Path file = Files.writeString(dir.resolve("models.json"), "{\"OpenAI\": [\"o3-mini\"]}");
+        ReflectionTestUtils.setField(catalog, "catalogFile", file.toString());
+        catalog.load();
+
+        assertThat(catalog.models("openai")).containsExactly("o3-mini");
+        assertThat(catalog.contains("openai", "gpt-4o")).isFalse();
+        assertThat(catalog.contains("claude", "claude-3-5-sonnet-20241022")).isTrue();
+    }
+
+    @Test
+    void refreshSwapsInTheListedModelsWithANewEtag() throws Exception {
+        catalog.load();
+        ModelCatalog.Snapshot loaded = catalog.snapshot();
+        respond(200, "{\"data\": [{\"id\": \"o3-mini\"}, {\"id\": \"gpt-4o\"}, {\"id\": \"text-embed-3\"}]}");
+        catalog.refresh();
+
+        ModelCatalog.Snapshot refreshed = catalog.snapshot();
+        assertThat(refreshed).isNotSameAs(loaded);
+        assertThat(refreshed.etag()).isNotEqualTo(loaded.etag());
+        // Sorted, and filtered by the exclude pattern
+        assertThat(catalog.models("openai")).containsExactly("gpt-4o", "o3-mini");
+        assertThat(catalog.contains("openai", "gpt-4-turbo")).isFalse();
+    }
+
+    @Test
+    void anUnchangedCatalogKeepsTheSameSnapshot() throws Exception {
+        respond(200, "{\"data\": [{\"id\": \"gpt-4o\"}]}");
+        catalog.refresh();
+        ModelCatalog.Snapshot first = catalog.snapshot();
+        catalog.refresh();
+
+        assertThat(catalog.snapshot()).isSameAs(first);
+    }
+
+    @Test
+    void equalCatalogsHaveEqualEtags() {
+        catalog.load();
+        ModelCatalog other = new ModelCatalog(List.of());
+        ReflectionTestUtils.setField(other, "catalogFile", "");
+        other.load();
+
+        assertThat(other.snapshot().etag()).isEqualTo(catalog.snapshot().etag()).matches("\"[0-9a-f]{32}\"");
+    }
+
+    @Test
+    void aFailedListingKeepsTheProvidersList() throws Exception {
+        catalog.load();
+        ModelCatalog.Snapshot loaded = catalog.snapshot();
+        respond(401, "{\"error\": \"invalid key\"}");
+        catalog.refresh();
+
+        assertThat(catalog.snapshot()).isSameAs(loaded);
+        assertThat(catalog.contains("openai", "gpt-4o")).isTrue();
+    }
+
+    private void respond(int status, String body) throws Exception {
+        @SuppressWarnings("unchecked")
+        HttpResponse<String> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(status);
+        when(response.body()).thenReturn(body);
+        when(transport.<String>send(any(), any())).thenReturn(response);
+    }
+}
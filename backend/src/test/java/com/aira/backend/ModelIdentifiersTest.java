@@ -0,0 +1,37 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class ModelIdentifiersTest {
+
+    @Test
+    void stripsTheSingleSuffixOfCurrentIdentifiers() {
+        String id = "claude-claude-3-5-sonnet-20241022-17342870000001x8q1b";
+
+        assertThat(ModelIdentifiers.provider(id)).isEqualTo("claude");
+        assertThat(ModelIdentifiers.modelName(id)).isEqualTo("claude-3-5-sonnet-20241022");
+        assertThat(ModelIdentifiers.modelKey(id)).isEqualTo("claude-claude-3-5-sonnet-20241022");
+    }
+
+    @Test
+    void foldsTheDashSeparatedSuffixOfLegacyIdentifiers() {
+        assertThat(ModelIdentifiers.modelKey("openai-gpt-4o-1734287000000-0-k3j9x")).isEqualTo("openai-gpt-4o");
+        assertThat(ModelIdentifiers.modelKey("openai-gpt-4o-1734287000000-12-")).isEqualTo("openai-gpt-4o");
+        assertThat(ModelIdentifiers.modelName("gemini-gemini-1.5-pro-1734287000000-2-p2m7c"))
+            .isEqualTo("gemini-1.5-pro");
+    }
+
+    @Test
+    void everyPanelOfAModelSharesOneKey() {
+        assertThat(ModelIdentifiers.modelKey("OpenAI-gpt-4o-17342870000000k3j9x"))
+            .isEqualTo(ModelIdentifiers.modelKey("openai-gpt-4o-1734287000000-1-a1b2c"))
+            .isEqualTo("openai-gpt-4o");
+    }
+
+    @Test
+    void leavesIdentifiersWithoutASuffixAlone() {
+        assertThat(ModelIdentifiers.modelName("openai-gpt")).isEqualTo("openai-gpt");
+    }
+}
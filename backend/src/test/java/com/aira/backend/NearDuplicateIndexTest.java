@@ -0,0 +1,108 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class NearDuplicateIndexTest {
+
+    private static final String MODEL = "openai-gpt-4o";
+    private static final String PROMPT = "explain how garbage collection works in the java virtual machine";
+    private static final String EDITED = "explain how garbage collection works in the java virtual machine runtime";
+
+    @Test
+    void matchesOnlyAtOrAboveTheSimilarityThreshold() {
+        double similarity = PromptFingerprints.similarity(
+            PromptFingerprints.fingerprint(PROMPT).simHash(), PromptFingerprints.fingerprint(EDITED).simHash());
+        assertThat(similarity).isLessThan(1.0);
+
+        NearDuplicateIndex atThreshold = index(4, similarity);
+        atThreshold.add(MODEL, PROMPT, ContentStore.hash("reply"), 1000);
+        assertThat(atThreshold.match(MODEL, EDITED, 0))
+            .contains(new NearDuplicateIndex.Match(ContentStore.hash("reply"), similarity));
+
+        NearDuplicateIndex aboveThreshold = index(4, similarity + 1 / 64.0);
+        aboveThreshold.add(MODEL, PROMPT, ContentStore.hash("reply"), 1000);
+        assertThat(aboveThreshold.match(MODEL, EDITED, 0)).isEmpty();
+    }
+
+    @Test
+    void normalizedVariantsMatchExactly() {
+        NearDuplicateIndex index = index(4, 1.0);
+        index.add(MODEL, PROMPT, ContentStore.hash("reply"), 1000);
+
+        assertThat(index.match(MODEL, "Please, EXPLAIN how garbage collection works in the Java virtual machine?", 0))
+            .contains(new NearDuplicateIndex.Match(ContentStore.hash("reply"), 1.0));
+    }
+
+    @Test
+    void differentNumbersNeverMatch() {
+        NearDuplicateIndex index = index(4, 0.0);
+        index.add(MODEL, "convert 10 miles to kilometres for me", ContentStore.hash("16.1 km"), 1000);
+
+        assertThat(index.match(MODEL, "convert 12 miles to kilometres for me", 0)).isEmpty();
+        assertThat(index.match(MODEL, "convert 10 miles to kilometres for me", 0)).isPresent();
+    }
+
+    @Test
+    void matchesAreScopedToTheModelAndTheCutoff() {
+        NearDuplicateIndex index = index(4, 1.0);
+        index.add(MODEL, PROMPT, ContentStore.hash("reply"), 1000);
+
+        assertThat(index.match("claude-claude-3-5-sonnet-20241022", PROMPT, 0)).isEmpty();
+        assertThat(index.match(MODEL, PROMPT, 1001)).isEmpty();
+        assertThat(index.match(MODEL, PROMPT, 1000)).isPresent();
+    }
+
+    @Test
+    void shortPromptsAreNotIndexed() {
+        NearDuplicateIndex index = index(4, 1.0);
+        index.add(MODEL, "hi there", ContentStore.hash("hello"), 1000);
+
+        assertThat(index.stats()).containsEntry("entries", 0);
+        assertThat(index.match(MODEL, "hi there", 0)).isEmpty();
+    }
+
+    @Test
+    void aFullRingOverwritesTheOldestEntry() {
+        NearDuplicateIndex index = index(3, 1.0);
+        String[] prompts = {
+            "first prompt about sorting algorithms",
+            "second prompt about database indexes",
+            "third prompt about network sockets",
+            "fourth prompt about compiler passes"
+        };
+        for (int i = 0; i < prompts.length; i++) {
+            index.add(MODEL, prompts[i], ContentStore.hash("reply " + i), 1000 + i);
+        }
+
+        assertThat(index.stats()).containsEntry("entries", 3);
+        assertThat(index.match(MODEL, prompts[0], 0)).isEmpty();
+        for (int i = 1; i < prompts.length; i++) {
+            assertThat(index.match(MODEL, prompts[i], 0))
+                .contains(new NearDuplicateIndex.Match(ContentStore.hash("reply " + i), 1.0));
+        }
+    }
+
+    @Test
+    void aReindexedPromptIsRefreshedInPlace() {
+        NearDuplicateIndex index = index(3, 1.0);
+        index.add(MODEL, PROMPT, ContentStore.hash("old reply"), 1000);
+        index.add(MODEL, PROMPT, ContentStore.hash("new reply"), 2000);
+        // Warm-up can add an older row after a live one; it must not replace the newer reply
+        index.add(MODEL, PROMPT, ContentStore.hash("warm-up reply"), 1500);
+
+        assertThat(index.stats()).containsEntry("entries", 1);
+        assertThat(index.match(MODEL, PROMPT, 0))
+            .contains(new NearDuplicateIndex.Match(ContentStore.hash("new reply"), 1.0));
+    }
+
+    private static NearDuplicateIndex index(int capacity, double minSimilarity) {
+        NearDuplicateIndex index = new NearDuplicateIndex(capacity);
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "minSimilarity", minSimilarity);
+        ReflectionTestUtils.setField(index, "minTokens", 4);
+        return index;
+    }
+}
@@ -0,0 +1,53 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class PromptFingerprintsTest {
+
+    @Test
+    void dropsCasingPunctuationAndPoliteness() {
+        assertThat(PromptFingerprints.tokens("Please, what is the CAPITAL of France?  Thank you!"))
+            .containsExactly("what", "is", "the", "capital", "of", "france");
+        assertThat(PromptFingerprints.fingerprint("Please, what is the CAPITAL of France?  Thank you!"))
+            .isEqualTo(PromptFingerprints.fingerprint("what is the capital of france"));
+    }
+
+    @Test
+    void numbersAreHashedInOrder() {
+        PromptFingerprints.Fingerprint four = PromptFingerprints.fingerprint("what is 2 + 2");
+        PromptFingerprints.Fingerprint five = PromptFingerprints.fingerprint("what is 2 + 3");
+        PromptFingerprints.Fingerprint swapped = PromptFingerprints.fingerprint("what is 3 + 2");
+
+        assertThat(four.numbers()).isNotEqualTo(five.numbers()).isNotEqualTo(swapped.numbers());
+        assertThat(PromptFingerprints.fingerprint("what is 2 plus 2").numbers()).isEqualTo(four.numbers());
+    }
+
+    @Test
+    void wordOrderChangesTheFingerprint() {
+        assertThat(PromptFingerprints.fingerprint("the dog bit the man").simHash())
+            .isNotEqualTo(PromptFingerprints.fingerprint("the man bit the dog").simHash());
+    }
+
+    @Test
+    void similarityFallsByOneSixtyFourthPerDifferingBit() {
+        assertThat(PromptFingerprints.similarity(0x5aL, 0x5aL)).isEqualTo(1.0);
+        assertThat(PromptFingerprints.similarity(0L, 0b111L)).isEqualTo(61 / 64.0);
+        assertThat(PromptFingerprints.similarity(0L, -1L)).isEqualTo(0.0);
+    }
+
+    @Test
+    void smallEditsStayCloserThanUnrelatedPrompts() {
+        long original = PromptFingerprints.fingerprint(
+            "explain how garbage collection works in the java virtual machine").simHash();
+        long edited = PromptFingerprints.fingerprint(
+            "explain how garbage collection works in the java virtual machine runtime").simHash();
+        long unrelated = PromptFingerprints.fingerprint(
+            "write a haiku about autumn leaves falling on a quiet pond").simHash();
+
+        assertThat(PromptFingerprints.similarity(original, edited))
+            .isGreaterThan(PromptFingerprints.similarity(original, unrelated));
+        assertThat(PromptFingerprints.similarity(original, unrelated)).isLessThan(0.95);
+    }
+}
@@ -0,0 +1,111 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class ProviderJsonTest {
+
+    private final ProviderJson providerJson = new ProviderJson();
+
+    @Test
+    void decodesChatCompletionsReplies() throws IOException {
+        ProviderJson.Reply reply = decode("""
+            {"id":"chatcmpl-1","choices":[
+               {"index":0,"message":{"role":"assistant","content":"first","tool_calls":[[{"id":"a"}],[]]}},
+               {"index":1,"message":{"role":"assistant","content":"second"}}],
+             "usage":{"prompt_tokens":12,"completion_tokens":34,"total_tokens":46}}
+            """, ProviderJson.Schema.CHAT_COMPLETIONS);
+
+        assertThat(reply).isEqualTo(new ProviderJson.Reply("first", 12, 34));
+    }
+
+    @Test
+    void decodesClaudeReplies() throws IOException {
+        ProviderJson.Reply reply = decode("""
+            {"type":"message","content":[{"type":"text","text":"hello","citations":[[1,[2,3]],{"x":[]}]}],
+             "usage":{"input_tokens":"7","output_tokens":9,"cache_creation_input_tokens":0}}
+            """, ProviderJson.Schema.CLAUDE);
+
+        assertThat(reply).isEqualTo(new ProviderJson.Reply("hello", 7, 9));
+    }
+
+    @Test
+    void decodesGeminiReplies() throws IOException {
+        ProviderJson.Reply reply = decode("""
+            {"candidates":[{"content":{"parts":[{"text":"part one"},{"text":"part two"}],"role":"model"},
+                            "safetyRatings":[{"category":"HARM","probability":"NEGLIGIBLE"}]}],
+             "usageMetadata":{"promptTokenCount":3,"candidatesTokenCount":5}}
+            """, ProviderJson.Schema.GEMINI);
+
+        assertThat(reply).isEqualTo(new ProviderJson.Reply("part one", 3, 5));
+    }
+
+    @Test
+    void decodesCohereReplies() throws IOException {
+        ProviderJson.Reply reply = decode("""
+            {"text":"answer","chat_history":[{"role":"USER","message":"q"}],
+             "meta":{"api_version":{"version":"1"},"billed_units":{"input_tokens":11,"output_tokens":22}}}
+            """, ProviderJson.Schema.COHERE);
+
+        assertThat(reply).isEqualTo(new ProviderJson.Reply("answer", 11, 22));
+    }
+
+    @Test
+    void decodesQwenReplies() throws IOException {
+        ProviderJson.Reply reply = decode("""
+            {"output":{"text":"qwen says","finish_reason":"stop","choices":[[{"text":"ignored"}]]},
+             "usage":{"input_tokens":4,"output_tokens":6},"request_id":"r"}
+            """, ProviderJson.Schema.QWEN);
+
+        assertThat(reply).isEqualTo(new ProviderJson.Reply("qwen says", 4, 6));
+    }
+
+    @Test
+    void missingFieldsDecodeToEmptyTextAndUnknownCounts() throws IOException {
+        for (ProviderJson.Schema schema : ProviderJson.Schema.values()) {
+            assertThat(decode("{}", schema)).isEqualTo(new ProviderJson.Reply("", -1, -1));
+            assertThat(decode("", schema)).isEqualTo(new ProviderJson.Reply("", -1, -1));
+        }
+        assertThat(decode("{\"choices\":[]}", ProviderJson.Schema.CHAT_COMPLETIONS))
+            .isEqualTo(new ProviderJson.Reply("", -1, -1));
+        assertThat(decode("{\"content\":[{\"text\":\"only text\"}]}", ProviderJson.Schema.CLAUDE))
+            .isEqualTo(new ProviderJson.Reply("only text", -1, -1));
+    }
+
+    @Test
+    void nullTextDecodesToEmptyText() throws IOException {
+        ProviderJson.Reply reply = decode("""
+            {"choices":[{"message":{"content":null,"refusal":"no"}}],"usage":{"prompt_tokens":1,"completion_tokens":0}}
+            """, ProviderJson.Schema.CHAT_COMPLETIONS);
+
+        assertThat(reply).isEqualTo(new ProviderJson.Reply("", 1, 0));
+    }
+
+    @Test
+    void nonIntegerUsageCountsAreUnknown() throws IOException {
+        ProviderJson.Reply reply = decode("""
+            {"usage":{"input_tokens":1.5,"output_tokens":{"total":3}},"output":{"text":"x"}}
+            """, ProviderJson.Schema.QWEN);
+
+        assertThat(reply).isEqualTo(new ProviderJson.Reply("x", -1, -1));
+    }
+
+    @Test
+    void ignoresValuesOutsideTheSchemaPaths() throws IOException {
+        ProviderJson.Reply reply = decode("""
+            [{"text":"not at the root"}]
+            """, ProviderJson.Schema.COHERE);
+
+        assertThat(reply).isEqualTo(new ProviderJson.Reply("", -1, -1));
+        assertThat(decode("{\"text\":{\"nested\":\"object\"}}", ProviderJson.Schema.COHERE))
+            .isEqualTo(new ProviderJson.Reply("", -1, -1));
+    }
+
+    private ProviderJson.Reply decode(String json, ProviderJson.Schema schema) throws IOException {
+        return providerJson.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), schema);
+    }
+}
@@ -0,0 +1,157 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.net.http.HttpHeaders;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ProviderLimiterTest {
+
+    private static final HttpHeaders NO_HEADERS = headers(Map.of());
+
+    private final ProviderLimiter limiter = new ProviderLimiter(List.of("mistral=2"), List.of("mistral=4"));
+
+    ProviderLimiterTest() {
+        ReflectionTestUtils.setField(limiter, "defaultMaxConcurrent", 16);
+        ReflectionTestUtils.setField(limiter, "defaultRatePerSecond", 10.0);
+        ReflectionTestUtils.setField(limiter, "minRatePerSecond", 0.5);
+        ReflectionTestUtils.setField(limiter, "rateIncrease", 0.1);
+        ReflectionTestUtils.setField(limiter, "rateDecreaseFactor", 0.5);
+        ReflectionTestUtils.setField(limiter, "queueSize", 64);
+        ReflectionTestUtils.setField(limiter, "queueTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(limiter, "defaultRetryAfterMs", 1000L);
+    }
+
+    @Test
+    void rateIsCutMultiplicativelyOnThrottlingDownToTheMinimum() throws Exception {
+        try (ProviderLimiter.Permit permit = limiter.acquire("openai")) {
+            permit.onThrottled(0);
+            assertThat(lane("openai")).containsEntry("ratePerSecond", 5.0).containsEntry("throttled", 1L);
+
+            for (int i = 0; i < 10; i++) {
+                permit.onThrottled(0);
+            }
+        }
+        assertThat(lane("openai")).containsEntry("ratePerSecond", 0.5).containsEntry("throttled", 11L);
+    }
+
+    @Test
+    void rateGrowsAdditivelyOnSuccessUpToTheConfiguredRate() throws Exception {
+        try (ProviderLimiter.Permit permit = limiter.acquire("mistral")) {
+            permit.onThrottled(0);
+            assertThat(lane("mistral")).containsEntry("ratePerSecond", 2.0);
+
+            for (int i = 0; i < 5; i++) {
+                permit.onResponse(200, NO_HEADERS);
+            }
+            assertThat((Double) lane("mistral").get("ratePerSecond")).isCloseTo(2.5, within(1e-9));
+
+            for (int i = 0; i < 100; i++) {
+                permit.onSuccess();
+            }
+        }
+        assertThat(lane("mistral")).containsEntry("ratePerSecond", 4.0).containsEntry("maxRatePerSecond", 4.0);
+    }
+
+    @Test
+    void a429BecomesALimitExceptionThatClosesTheLaneForRetryAfter() throws Exception {
+        try (ProviderLimiter.Permit permit = limiter.acquire("claude")) {
+            assertThatThrownBy(() -> permit.onResponse(429, headers(Map.of("Retry-After", List.of("3")))))
+                .isInstanceOfSatisfying(ProviderLimiter.LimitException.class,
+                    e -> assertThat(e.retryAfterMs()).isEqualTo(3000));
+        }
+
+        assertThat((Long) lane("claude").get("closedForMs")).isBetween(2000L, 3000L);
+        assertThat(limiter.tryAcquire("claude")).isEmpty();
+        assertThatThrownBy(() -> limiter.acquire("claude", 100))
+            .isInstanceOfSatisfying(ProviderLimiter.LimitException.class,
+                e -> assertThat(e.retryAfterMs()).isGreaterThan(2000));
+        // Other providers are unaffected
+        assertThat(limiter.tryAcquire("openai")).isPresent();
+    }
+
+    @Test
+    void a503WithRetryAfterThrottlesWithoutFailingTheCall() throws Exception {
+        try (ProviderLimiter.Permit permit = limiter.acquire("gemini")) {
+            permit.onResponse(503, headers(Map.of("Retry-After", List.of("0"))));
+            permit.onResponse(503, NO_HEADERS);
+        }
+
+        assertThat(lane("gemini")).containsEntry("ratePerSecond", 5.0).containsEntry("throttled", 1L);
+    }
+
+    @Test
+    void concurrencyIsBoundedPerProvider() throws Exception {
+        ProviderLimiter.Permit first = limiter.acquire("Mistral");
+        ProviderLimiter.Permit second = limiter.acquire("mistral");
+
+        assertThat(lane("mistral")).containsEntry("maxConcurrent", 2).containsEntry("inUse", 2);
+        assertThat(limiter.tryAcquire("mistral")).isEmpty();
+        assertThatThrownBy(() -> limiter.acquire("mistral", 50))
+            .isInstanceOf(ProviderLimiter.LimitException.class)
+            .hasMessageContaining("Timed out");
+
+        first.close();
+        first.close();
+        assertThat(lane("mistral")).containsEntry("inUse", 1);
+        ProviderLimiter.Permit third = limiter.acquire("mistral", 1000);
+        assertThat(lane("mistral")).containsEntry("inUse", 2);
+        third.close();
+        second.close();
+        assertThat(lane("mistral")).containsEntry("inUse", 0).containsEntry("rejected", 1L);
+    }
+
+    @Test
+    void callersBeyondTheQueueAreShedImmediately() throws Exception {
+        ReflectionTestUtils.setField(limiter, "queueSize", 0);
+        ProviderLimiter.Permit first = limiter.acquire("mistral");
+        ProviderLimiter.Permit second = limiter.acquire("mistral");
+
+        assertThatThrownBy(() -> limiter.acquire("mistral"))
+            .isInstanceOf(ProviderLimiter.LimitException.class)
+            .hasMessageContaining("queue is full");
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void optionalCallsNeedAFreeToken() {
+        // mistral allows 4 per second with a bucket of 4
+        for (int i = 0; i < 4; i++) {
+            Optional<ProviderLimiter.Permit> permit = limiter.tryAcquire("mistral");
+            assertThat(permit).isPresent();
+            permit.get().close();
+        }
+        assertThat(limiter.tryAcquire("mistral")).isEmpty();
+        assertThat(lane("mistral")).containsEntry("inUse", 0);
+    }
+
+    @Test
+    void parsesRetryAfterAsSecondsOrAnHttpDate() {
+        String inTenSeconds = DateTimeFormatter.RFC_1123_DATE_TIME
+            .format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(10));
+
+        assertThat(limiter.retryAfterMs(headers(Map.of("Retry-After", List.of("7"))))).isEqualTo(7000);
+        assertThat(limiter.retryAfterMs(headers(Map.of("Retry-After", List.of(inTenSeconds))))).isBetween(8000L, 10_000L);
+        assertThat(limiter.retryAfterMs(headers(Map.of("Retry-After", List.of("soon"))))).isEqualTo(1000);
+        assertThat(limiter.retryAfterMs(NO_HEADERS)).isEqualTo(1000);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lane(String provider) {
+        return (Map<String, Object>) limiter.stats().get(provider);
+    }
+
+    private static HttpHeaders headers(Map<String, List<String>> values) {
+        return HttpHeaders.of(values, (name, value) -> true);
+    }
+}
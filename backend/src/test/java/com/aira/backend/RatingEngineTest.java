@@ -0,0 +1,92 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RatingEngineTest {
+
+    private final RatingEngine engine = new RatingEngine(1);
+
+    RatingEngineTest() {
+        ReflectionTestUtils.setField(engine, "initialRating", 1000.0);
+        ReflectionTestUtils.setField(engine, "maxIterations", 10_000);
+        ReflectionTestUtils.setField(engine, "tolerance", 1e-12);
+    }
+
+    @AfterEach
+    void shutdown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void fitSatisfiesTheMaximumLikelihoodEquations() {
+        // wins[i * m + j] is how often i beat j
+        long[] wins = {
+            0, 30, 12,
+            10, 0, 25,
+            4, 15, 0
+        };
+        double[] strength = engine.fit(wins, 3);
+
+        for (int i = 0; i < 3; i++) {
+            // Observed wins, plus the virtual win, equal expected wins, including the virtual pair of games
+            double observed = 1.0;
+            double expected = 2.0 * strength[i] / (strength[i] + 1.0);
+            for (int j = 0; j < 3; j++) {
+                long games = wins[i * 3 + j] + wins[j * 3 + i];
+                observed += wins[i * 3 + j];
+                if (i != j) {
+                    expected += games * strength[i] / (strength[i] + strength[j]);
+                }
+            }
+            assertThat(expected).isCloseTo(observed, within(1e-6));
+        }
+        assertThat(strength[0]).isGreaterThan(strength[1]);
+        assertThat(strength[1]).isGreaterThan(strength[2]);
+    }
+
+    @Test
+    void modelsWithoutGamesKeepTheInitialRating() {
+        double[] ratings = engine.toRatings(engine.fit(new long[] { 0, 7, 0, 2, 0, 0, 0, 0, 0 }, 3));
+
+        assertThat(ratings[0]).isGreaterThan(1000.0);
+        assertThat(ratings[1]).isLessThan(1000.0);
+        assertThat(ratings[2]).isCloseTo(1000.0, within(1e-6));
+    }
+
+    @Test
+    void evenRecordsRateEveryModelAtTheInitialRating() {
+        double[] ratings = engine.toRatings(engine.fit(new long[] { 0, 5, 5, 5, 0, 5, 5, 5, 0 }, 3));
+
+        assertThat(ratings).containsExactly(new double[] { 1000.0, 1000.0, 1000.0 }, within(1e-6));
+    }
+
+    @Test
+    void virtualGamesKeepUnbeatenModelsFinite() {
+        double[] strength = engine.fit(new long[] { 0, 50, 0, 0 }, 2);
+
+        for (double value : strength) {
+            assertThat(value).isFinite().isPositive();
+        }
+        assertThat(strength[0]).isGreaterThan(strength[1]);
+    }
+
+    @Test
+    void strengthCarriesAcrossModelsThatNeverMet() {
+        // a beat b and b beat c, but a and c never played each other
+        double[] ratings = engine.toRatings(engine.fit(new long[] { 0, 20, 0, 5, 0, 20, 0, 5, 0 }, 3));
+
+        assertThat(ratings[0]).isGreaterThan(ratings[1]);
+        assertThat(ratings[1]).isGreaterThan(ratings[2]);
+    }
+
+    @Test
+    void ratingsAreFourHundredPointsPerTenfoldStrength() {
+        assertThat(engine.toRatings(new double[] { 1.0, 10.0, 0.1 }))
+            .containsExactly(new double[] { 1000.0, 1400.0, 600.0 }, within(1e-9));
+    }
+}
@@ -0,0 +1,150 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SingleFlightTest {
+
+    private static final int WAITERS = 8;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    SingleFlightTest() {
+        ReflectionTestUtils.setField(singleFlight, "enabled", true);
+    }
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void identicalCallsInFlightShareOneUpstreamCall() throws Exception {
+        Future<SingleFlight.Result> leader = executor.submit(() -> call("key", blockingUpstream("reply"), 10_000));
+        awaitInFlight();
+        List<Future<SingleFlight.Result>> waiters = new ArrayList<>();
+        for (int i = 0; i < WAITERS; i++) {
+            waiters.add(executor.submit(() -> call("key", blockingUpstream("other"), 10_000)));
+        }
+        awaitSavedCalls(WAITERS);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result("reply", false));
+        for (Future<SingleFlight.Result> waiter : waiters) {
+            assertThat(waiter.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result("reply", true));
+        }
+        assertThat(upstreamCalls).hasValue(1);
+        assertThat(singleFlight.stats()).containsEntry("inFlight", 0).containsEntry("upstreamCalls", 1L);
+    }
+
+    @Test
+    void differentApiKeysAreNotCoalesced() throws Exception {
+        Future<SingleFlight.Result> first = executor.submit(() -> call("key-a", blockingUpstream("a"), 10_000));
+        Future<SingleFlight.Result> second = executor.submit(() -> call("key-b", blockingUpstream("b"), 10_000));
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result("a", false));
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result("b", false));
+        assertThat(upstreamCalls).hasValue(2);
+    }
+
+    @Test
+    void waitersSeeTheLeadersFailureAndTheNextCallStartsAfresh() throws Exception {
+        IOException failure = new IOException("upstream down");
+        Future<SingleFlight.Result> leader = executor.submit(() -> call("key", () -> {
+            upstreamCalls.incrementAndGet();
+            release.await();
+            throw failure;
+        }, 10_000));
+        awaitInFlight();
+        Future<SingleFlight.Result> waiter = executor.submit(() -> call("key", blockingUpstream("unused"), 10_000));
+        awaitSavedCalls(1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class).hasCause(failure);
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class).hasCause(failure);
+        assertThat(call("key", blockingUpstream("recovered"), 10_000))
+            .isEqualTo(new SingleFlight.Result("recovered", false));
+        assertThat(upstreamCalls).hasValue(2);
+    }
+
+    @Test
+    void aWaiterGivesUpAtItsOwnDeadlineWithoutCancellingTheCall() throws Exception {
+        Future<SingleFlight.Result> leader = executor.submit(() -> call("key", blockingUpstream("reply"), 10_000));
+        awaitInFlight();
+
+        assertThatThrownBy(() -> call("key", blockingUpstream("unused"), 50)).isInstanceOf(HttpTimeoutException.class);
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result("reply", false));
+    }
+
+    @Test
+    void finishedCallsAreNotReused() throws Exception {
+        release.countDown();
+
+        assertThat(call("key", blockingUpstream("first"), 10_000)).isEqualTo(new SingleFlight.Result("first", false));
+        assertThat(call("key", blockingUpstream("second"), 10_000)).isEqualTo(new SingleFlight.Result("second", false));
+        assertThat(singleFlight.stats()).containsEntry("savedCalls", 0L);
+    }
+
+    @Test
+    void everyCallGoesUpstreamWhenDisabled() throws Exception {
+        ReflectionTestUtils.setField(singleFlight, "enabled", false);
+        Future<SingleFlight.Result> first = executor.submit(() -> call("key", blockingUpstream("a"), 10_000));
+        Future<SingleFlight.Result> second = executor.submit(() -> call("key", blockingUpstream("b"), 10_000));
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).shared()).isFalse();
+        assertThat(second.get(5, TimeUnit.SECONDS).shared()).isFalse();
+        assertThat(upstreamCalls).hasValue(2);
+    }
+
+    private SingleFlight.Result call(String apiKey, Callable<String> upstream, long deadlineMs) throws Exception {
+        return singleFlight.execute("OpenAI", "gpt-4o", "What is a monad?", apiKey, Deadline.after(deadlineMs), upstream);
+    }
+
+    private Callable<String> blockingUpstream(String reply) {
+        return () -> {
+            upstreamCalls.incrementAndGet();
+            release.await();
+            return reply;
+        };
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        awaitUntil(() -> upstreamCalls.get() == 1);
+    }
+
+    private void awaitSavedCalls(long count) throws InterruptedException {
+        awaitUntil(() -> (Long) singleFlight.stats().get("savedCalls") == count);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
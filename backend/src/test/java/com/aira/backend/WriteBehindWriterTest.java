@@ -0,0 +1,125 @@
+package com.aira.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class WriteBehindWriterTest {
+
+    private final ChatHistoryRepository chatHistoryRepository = mock(ChatHistoryRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final List<String> saved = Collections.synchronizedList(new ArrayList<>());
+    private WriteBehindWriter writer;
+
+    WriteBehindWriterTest() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        doAnswer(invocation -> {
+            List<ChatHistory> rows = new ArrayList<>();
+            invocation.<Iterable<ChatHistory>>getArgument(0).forEach(rows::add);
+            if (rows.stream().anyMatch(row -> row.getSessionId().startsWith("bad"))) {
+                throw new IllegalStateException("constraint violated");
+            }
+            rows.forEach(row -> saved.add(row.getSessionId()));
+            return rows;
+        }).when(chatHistoryRepository).saveAll(any());
+    }
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        writer.shutdown();
+    }
+
+    @Test
+    void flushWaitsUntilEveryQueuedRowIsWritten() throws Exception {
+        // Neither a full batch nor the interval would write these rows before the flush
+        start(writer(100, 50, 60_000));
+        writer.submitAll(List.of(row("a"), row("b"), row("c")));
+
+        assertThat(writer.flush(5_000)).isTrue();
+        assertThat(saved).containsExactly("a", "b", "c");
+        assertThat(writer.stats()).containsEntry("written", 3L).containsEntry("batches", 1L);
+    }
+
+    @Test
+    void aFullQueueMakesTheCallerWriteItsOwnRow() {
+        // Writer thread not started, so the single queue slot stays taken
+        writer = writer(1, 50, 60_000);
+        writer.submit(row("queued"));
+        writer.submit(row("caller"));
+
+        assertThat(saved).containsExactly("caller");
+        assertThat(writer.stats())
+            .containsEntry("enqueued", 1L)
+            .containsEntry("callerWrites", 1L)
+            .containsEntry("written", 1L);
+    }
+
+    @Test
+    void aFailedBatchIsRetriedRowByRowAndOnlyTheBadRowIsDropped() throws Exception {
+        start(writer(100, 50, 60_000));
+        ChatHistory good = row("good-1");
+        good.setId(51L);
+        writer.submitAll(List.of(good, row("bad"), row("good-2")));
+
+        assertThat(writer.flush(5_000)).isTrue();
+        assertThat(saved).containsExactly("good-1", "good-2");
+        // Ids taken by the failed batch are cleared so the retry inserts
+        assertThat(good.getId()).isNull();
+        assertThat(writer.stats())
+            .containsEntry("batchRetries", 1L)
+            .containsEntry("written", 2L)
+            .containsEntry("failures", 1L);
+    }
+
+    @Test
+    void shutdownWritesWhatIsStillQueued() throws Exception {
+        start(writer(100, 50, 60_000));
+        writer.submit(row("pending"));
+        writer.shutdown();
+
+        assertThat(saved).containsExactly("pending");
+        assertThat(writer.flush(100)).isFalse();
+    }
+
+    private WriteBehindWriter writer(int capacity, int batchSize, long flushIntervalMs) {
+        WriteBehindWriter writer = new WriteBehindWriter(capacity);
+        ReflectionTestUtils.setField(writer, "batchSize", batchSize);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", flushIntervalMs);
+        ReflectionTestUtils.setField(writer, "offerTimeoutMs", 10L);
+        ReflectionTestUtils.setField(writer, "shutdownTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(writer, "chatHistoryRepository", chatHistoryRepository);
+        ReflectionTestUtils.setField(writer, "winnerRepository", mock(WinnerSelectionRepository.class));
+        ReflectionTestUtils.setField(writer, "contentStore", mock(ContentStore.class));
+        ReflectionTestUtils.setField(writer, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(writer, "providerMetrics", mock(ProviderMetrics.class));
+        return writer;
+    }
+
+    private void start(WriteBehindWriter writer) {
+        this.writer = writer;
+        writer.start();
+    }
+
+    private static ChatHistory row(String sessionId) {
+        ChatHistory history = new ChatHistory();
+        history.setSessionId(sessionId);
+        history.setModelIdentifier("openai-gpt-4o-1a");
+        history.setPrompt("prompt of " + sessionId);
+        history.setResponse("reply to " + sessionId);
+        return history;
+    }
+}
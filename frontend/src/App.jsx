@@ -14,21 +14,31 @@ const icons = Object.entries(iconModules).map(([path, module]) => {
   }
 })
 
+// The whole model catalog is fetched once per page load and shared by every provider lookup.
+// GET /api/models carries an ETag and Cache-Control, so the browser and nginx can answer it too.
+let modelCatalogRequest = null
+
+const fetchModelCatalog = () => {
+  if (!modelCatalogRequest) {
+    modelCatalogRequest = fetch('/api/models')
+      .then(response => {
+        if (!response.ok) throw new Error(`HTTP error! status: ${response.status}`);
+        return response.json();
+      })
+      .then(data => data.providers || {})
+      .catch(error => {
+        modelCatalogRequest = null;
+        throw error;
+      });
+  }
+  return modelCatalogRequest;
+};
+
 // Function to fetch available models for a provider
 const fetchProviderModels = async (providerName) => {
   try {
-    const response = await fetch('/api/models/provider', {
-      method: 'POST',
-      headers: {
-        'Content-Type': 'application/json',
-      },
-      body: JSON.stringify({ provider: providerName })
-    });
-
-    if (!response.ok) throw new Error(`HTTP error! status: ${response.status}`);
-
-    const data = await response.json();
-    return data.models || [];
+    const providers = await fetchModelCatalog();
+    return providers[providerName.toLowerCase()] || [];
   } catch (error) {
     console.error('Error fetching models:', error);
     return [];
@@ -55,23 +65,21 @@ const saveProviderApiKey = async (provider, apiKey) => {
   }
 };
 
-// Function to fetch provider API key from server
-const fetchProviderApiKey = async (provider) => {
+// Function to fetch every saved API key of this session in one request ({ provider: encryptedKey })
+const fetchSessionApiKeys = async () => {
   try {
-    const response = await fetch('/api/keys/get', {
-      method: 'POST',
-      headers: { 'Content-Type': 'application/json' },
-      credentials: 'include',
-      body: JSON.stringify({ provider })
+    const response = await fetch('/api/keys', {
+      method: 'GET',
+      credentials: 'include'
     });
 
     if (!response.ok) throw new Error(`HTTP error! status: ${response.status}`);
 
     const data = await response.json();
-    return data.apiKey || null;
+    return data.keys || {};
   } catch (error) {
-    console.error('Error fetching API key:', error);
-    return null;
+    console.error('Error fetching API keys:', error);
+    return {};
   }
 };
 
@@ -150,16 +158,16 @@ function App() {
       // CRITICAL FIX: If no models need keys, STOP here to prevent infinite loop
       if (modelsNeedingKeys.length === 0) return;
 
-      // Only fetch for the specific models that need it
-      const updatedKeys = await Promise.all(
-        modelsNeedingKeys.map(async (model) => {
-          const apiKey = await fetchProviderApiKey(model.provider);
-          return { id: model.id, key: apiKey };
-        })
-      );
+      // One request covers every panel, however many providers are open
+      const sessionKeys = await fetchSessionApiKeys();
 
       // Create a map for easy lookup
-      const keyMap = new Map(updatedKeys.map(k => [k.id, k.key]));
+      const keyMap = new Map(
+        modelsNeedingKeys
+          .filter(model => sessionKeys[model.provider])
+          .map(model => [model.id, sessionKeys[model.provider]])
+      );
+      if (keyMap.size === 0) return;
 
       // Update state functionally based on previous state
       setActiveModels(prevModels => {
@@ -265,8 +273,9 @@ function App() {
     const modelName = typeof selectedModel === 'string' ? selectedModel : selectedModel.name
 
     const newModels = Array.from({ length: instanceCount }, (_, i) => ({
-      // Added random suffix to prevent ID collision in fast loops
-      id: `${selectedProvider}-${modelName}-${Date.now()}-${i}-${Math.random().toString(36).substr(2, 5)}`,
+      // Added random suffix to prevent ID collision in fast loops.
+      // The suffix has no dashes: the backend reads everything between provider and the last dash as the model.
+      id: `${selectedProvider}-${modelName}-${Date.now()}${i}${Math.random().toString(36).substr(2, 5)}`,
       name: modelName,
       provider: selectedProvider,
       icon: icons.find(i => i.name === selectedProvider)?.path || '',
@@ -358,6 +367,7 @@ function App() {
                 encryptedApiKey={model.encryptedApiKey}
                 hideInputFooter={triggerSend > 0}
                 triggerSend={triggerSend}
+                competitorIdentifiers={activeModels.map(m => m.id)}
               />
             </div>
           ))
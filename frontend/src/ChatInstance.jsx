@@ -11,6 +11,7 @@ function ChatInstance({
   encryptedApiKey = "",
   hideInputFooter = false,
   triggerSend = 0,
+  competitorIdentifiers = [],
   onWinnerSelected = null
 }) {
   const [userPrompt, setUserPrompt] = useState(masterPrompt)
@@ -19,25 +20,10 @@ function ChatInstance({
   const [showButtons, setShowButtons] = useState(false)
   const [isLoading, setIsLoading] = useState(false)
   const [error, setError] = useState(null)
-
-    useEffect(() => {
-    const fetchApiKey = async () => {
-      try {
-        const res = await fetch('/api/keys/get', {
-          method: 'POST',
-          headers: { 'Content-Type': 'application/json' },
-          body: JSON.stringify({ provider })
-        })
-        if (res.ok) {
-          const data = await res.json()
-          if (data.apiKey) setEncryptedApiKey(data.apiKey)
-        }
-      } catch (err) {
-        console.error("Failed to load API key:", err)
-      }
-    }
-    fetchApiKey()
-  }, [provider])
+  const [fromCache, setFromCache] = useState(false)
+  // The server remembers earlier turns per session and model. A freshly loaded panel shows none of them,
+  // so its first send starts over, as does the next send after "New conversation".
+  const [startNewConversation, setStartNewConversation] = useState(true)
 
   // Update prompt when masterPrompt changes
   useEffect(() => {
@@ -58,23 +44,61 @@ function ChatInstance({
 
     setIsLoading(true)
     setError(null)
+    setFromCache(false)
 
     try {
-      const response = await fetch('/api/process', {
+      const response = await fetch('/api/process/stream', {
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify({ 
           modelIdentifier,
           prompt: userPrompt,
-          encryptedApiKey
+          encryptedApiKey,
+          newConversation: startNewConversation
         })
       })
 
-      const data = await response.json()
-      if (!response.ok) {
-        setAiResponse(data.error || "No reply received.")
-      } else {
-        setAiResponse(data.reply || "No response from AI")
+      if (!response.ok || !response.body) {
+        throw new Error(`HTTP error! status: ${response.status}`)
+      }
+      setStartNewConversation(false)
+
+      // Read the server-sent events and show tokens as they arrive
+      const reader = response.body.getReader()
+      const decoder = new TextDecoder()
+      let buffer = ''
+      let reply = ''
+
+      while (true) {
+        const { done, value } = await reader.read()
+        if (done) break
+        buffer += decoder.decode(value, { stream: true })
+
+        let boundary
+        while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+          const rawEvent = buffer.slice(0, boundary)
+          buffer = buffer.slice(boundary + 2)
+
+          let eventName = 'message'
+          let eventData = ''
+          for (const line of rawEvent.split('\n')) {
+            if (line.startsWith('event:')) eventName = line.slice(6).trim()
+            else if (line.startsWith('data:')) eventData += line.slice(5)
+          }
+          if (!eventData) continue
+
+          const data = JSON.parse(eventData)
+          if (eventName === 'token') {
+            reply += data.text
+            setAiResponse(reply)
+            setIsLoading(false)
+          } else if (eventName === 'done') {
+            setAiResponse(data.reply || "No response from AI")
+            setFromCache(Boolean(data.cached))
+          } else if (eventName === 'error') {
+            setAiResponse(data.error || "No reply received.")
+          }
+        }
       }
 
     } catch (err) {
@@ -87,6 +111,15 @@ function ChatInstance({
     }
   }
 
+  const handleNewConversation = () => {
+    setStartNewConversation(true)
+    setAiResponse("")
+    setError(null)
+    setFromCache(false)
+    setIsInputHidden(false)
+    setShowButtons(false)
+  }
+
   const handleKeyPress = (e) => {
     if (e.key === 'Enter' && !e.shiftKey) {
       e.preventDefault()
@@ -105,7 +138,8 @@ function ChatInstance({
         body: JSON.stringify({ 
           modelIdentifier: modelIdentifier,
           prompt: userPrompt,
-          response: aiResponse
+          response: aiResponse,
+          competitors: competitorIdentifiers
         })
       })
       
@@ -161,6 +195,14 @@ function ChatInstance({
     <div className="chatContainer" data-model={modelIdentifier}>
       <div className="chatHeader">
         <span className="chatbotName">{modelName}</span>
+        <button
+          className="newConversationButton"
+          onClick={handleNewConversation}
+          disabled={isLoading}
+          title="Start a new conversation: earlier turns are no longer sent to the model"
+        >
+          ↺ New conversation
+        </button>
         <button 
           className="chatbotIcon" 
           onClick={handleIconClick}
@@ -180,7 +222,10 @@ function ChatInstance({
           </div>
         )}
         {aiResponse && !isLoading && (
-          <div className="message botMessage">{aiResponse}</div>
+          <div className="message botMessage">
+            {aiResponse}
+            {fromCache && <span className="cacheBadge" title="Served from the reply cache">⚡ cached</span>}
+          </div>
         )}
         {error && !aiResponse && (
           <div className="message botMessage errorMessage">